@@ -0,0 +1,61 @@
+package org.sonarsource.java.benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.sonarsource.java.App;
+
+/**
+ * Runs the extractor with the given command line, then prints how long it took and how much memory it used.
+ * Each run needs a JVM of its own: it measures the cold startup of the command line, and the peak RSS and heap are
+ * those of the whole process, which an earlier run in the same JVM would have raised.
+ */
+public class AppProbe {
+
+  static final String RESULT_PREFIX = "probe:";
+
+  private AppProbe() {
+    // Prevent instantiation
+  }
+
+  public static void main(String[] args) throws IOException {
+    long start = System.nanoTime();
+    App.main(args);
+    long wallTime = System.nanoTime() - start;
+    System.out.printf("%s %d %d %d%n", RESULT_PREFIX, wallTime, peakRssBytes(), peakHeapBytes());
+  }
+
+  /**
+   * Sum of the peak usages of the heap pools: they don't all peak at the same time, so it is an upper bound
+   */
+  private static long peakHeapBytes() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  /**
+   * @return the high water mark of the resident set size, or -1 where /proc is not available
+   */
+  private static long peakRssBytes() throws IOException {
+    Path status = Path.of("/proc/self/status");
+    if (!Files.isReadable(status)) {
+      return -1;
+    }
+    for (String line : Files.readAllLines(status)) {
+      if (line.startsWith("VmHWM:")) {
+        // In kB, e.g. "VmHWM:    123456 kB"
+        return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+      }
+    }
+    return -1;
+  }
+
+}
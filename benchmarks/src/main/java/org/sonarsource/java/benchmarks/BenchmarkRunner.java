@@ -0,0 +1,44 @@
+package org.sonarsource.java.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmarks selected on the command line, as the JMH launcher does, always with the GC profiler so that
+ * allocation rates are reported next to the throughputs. Short default iterations keep a full run under half an
+ * hour, they can be overridden with the usual JMH options (e.g. {@code -wi 5 -i 10 -f 3}).
+ */
+public class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+    // Prevent instantiation
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    CommandLineOptions commandLine;
+    try {
+      commandLine = new CommandLineOptions(args);
+    } catch (CommandLineOptionException e) {
+      System.err.println("Error parsing command line: " + e.getMessage());
+      System.exit(1);
+      return;
+    }
+    Options options = new OptionsBuilder()
+      .parent(commandLine)
+      .forks(commandLine.getForkCount().orElse(1))
+      .warmupIterations(commandLine.getWarmupIterations().orElse(3))
+      .warmupTime(commandLine.getWarmupTime().orElse(TimeValue.seconds(1)))
+      .measurementIterations(commandLine.getMeasurementIterations().orElse(5))
+      .measurementTime(commandLine.getMeasurementTime().orElse(TimeValue.seconds(1)))
+      .addProfiler(GCProfiler.class)
+      .build();
+    new Runner(options).run();
+  }
+
+}
@@ -0,0 +1,177 @@
+package org.sonarsource.java.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Generates Java corpora of a given shape: packages of classes with fields, javadoc, and methods made of nested
+ * statements, lambdas, string literals and comments. The files compile, given they are read as UTF-8.
+ * <p>Each file only depends on the seed and on its index, so any file of a corpus can be generated on its own.
+ * Not thread-safe.</p>
+ */
+public class CorpusGenerator {
+
+  private static final int FILES_PER_PACKAGE = 100;
+  private static final String[] WORDS = {"item", "total", "count", "index", "value", "result", "buffer", "entry", "name",
+    "limit", "offset", "node", "source", "target", "cache"};
+  // Latin, Cyrillic, CJK and a supplementary character, escaped to keep this file ASCII
+  private static final String[] UNICODE_WORDS = {"donn\u00E9es", "\u0437\u043D\u0430\u0447\u0435\u043D\u0438\u0435",
+    "\u6570\u636E", "gr\u00F6\u00DFe", "\u00EDndice"};
+  private static final String UNICODE_LITERAL = "caf\u00E9 \u2192 \u6771\u4EAC \uD83D\uDE80";
+  private static final String[] TYPES = {"int", "long", "String", "List<String>", "Map<String, Integer>"};
+
+  private final CorpusSpec spec;
+  /**
+   * Suffix keeping the local variables of a method distinct
+   */
+  private int variableCount;
+
+  public CorpusGenerator(CorpusSpec spec) {
+    this.spec = spec;
+  }
+
+  public static void main(String[] args) throws IOException {
+    CorpusSpec[] spec = {CorpusSpec.DEFAULT};
+    int next = args.length == 0 ? 0 : CorpusSpec.parse(args, 1, spec);
+    if (args.length == 0 || next != args.length) {
+      System.err.println("Usage: CorpusGenerator <output_dir> [--files N] [--methods N] [--statements N] [--comments 0..1]"
+        + " [--unicode 0..1] [--seed N]");
+      System.exit(1);
+    }
+    Path outputDir = Path.of(args[0]);
+    new CorpusGenerator(spec[0]).write(outputDir);
+    System.out.println("Generated " + spec[0] + " in " + outputDir);
+  }
+
+  /**
+   * Writes the files of the corpus in {@code p<n>} package directories
+   */
+  public void write(Path outputDir) throws IOException {
+    for (int i = 0; i < spec.files(); i++) {
+      Path dir = Files.createDirectories(outputDir.resolve("p" + i / FILES_PER_PACKAGE));
+      Files.writeString(dir.resolve(className(i) + ".java"), source(i), StandardCharsets.UTF_8);
+    }
+  }
+
+  public String source(int index) {
+    SplittableRandom random = new SplittableRandom(spec.seed() * 0x9E3779B97F4A7C15L + index);
+    StringBuilder sb = new StringBuilder();
+    sb.append("package p").append(index / FILES_PER_PACKAGE).append(";\n\n");
+    sb.append("import java.util.ArrayList;\nimport java.util.List;\nimport java.util.Map;\n\n");
+    javadoc(sb, "", random);
+    sb.append("public class ").append(className(index)).append(" {\n\n");
+    for (int i = 0; i < 3; i++) {
+      sb.append("  private ").append(pick(TYPES, random)).append(' ').append(identifier(random)).append(i).append(";\n");
+    }
+    sb.append('\n');
+    for (int m = 0; m < spec.methodsPerFile(); m++) {
+      method(sb, m, random);
+    }
+    return sb.append("}\n").toString();
+  }
+
+  private static String className(int index) {
+    return "Generated" + index;
+  }
+
+  private void method(StringBuilder sb, int m, SplittableRandom random) {
+    javadoc(sb, "  ", random);
+    String returnType = random.nextBoolean() ? "int" : "String";
+    sb.append("  public ").append(returnType).append(' ').append(identifier(random)).append(m)
+      .append("(List<String> items, int limit) {\n");
+    sb.append("    int total = 0;\n");
+    variableCount = 0;
+    int statements = spec.statements() == 0 ? 0 : spec.statements() / 2 + random.nextInt(spec.statements() + 1);
+    for (int s = 0; s < statements; s++) {
+      statement(sb, "    ", 0, random);
+    }
+    sb.append("    return ").append(returnType.equals("int") ? "total" : "String.valueOf(total)").append(";\n  }\n\n");
+  }
+
+  private void statement(StringBuilder sb, String indent, int depth, SplittableRandom random) {
+    if (random.nextDouble() < spec.commentDensity()) {
+      if (random.nextBoolean()) {
+        sb.append(indent).append("// ").append(words(random)).append('\n');
+      } else {
+        sb.append(indent).append("/* ").append(words(random)).append(" */\n");
+      }
+    }
+    String name = identifier(random) + variableCount++;
+    int kind = random.nextInt(depth < 2 ? 8 : 4);
+    switch (kind) {
+      case 0 -> sb.append(indent).append("int ").append(name).append(" = items.size() * ")
+        .append(random.nextInt(100)).append(" + total;\n").append(indent).append("total += ").append(name).append(";\n");
+      case 1 -> sb.append(indent).append("total = Math.max(total, ").append(literal(random)).append(".length());\n");
+      case 2 -> sb.append(indent).append("items.add(").append(literal(random)).append(" + total);\n");
+      case 3 -> sb.append(indent).append("total += items.stream().filter(s -> s.length() > ").append(random.nextInt(20))
+        .append(").mapToInt(String::length).sum();\n");
+      case 4 -> {
+        sb.append(indent).append("if (total > limit) {\n");
+        block(sb, indent, depth, random);
+        sb.append(indent).append("} else {\n").append(indent).append("  total++;\n").append(indent).append("}\n");
+      }
+      case 5 -> {
+        sb.append(indent).append("for (String ").append(name).append(" : items) {\n");
+        block(sb, indent, depth, random);
+        sb.append(indent).append("}\n");
+      }
+      case 6 -> {
+        sb.append(indent).append("try {\n");
+        block(sb, indent, depth, random);
+        sb.append(indent).append("} catch (RuntimeException e) {\n").append(indent).append("  total = -1;\n")
+          .append(indent).append("}\n");
+      }
+      default -> sb.append(indent).append("total = switch (total % 3) {\n").append(indent).append("  case 0 -> total + ")
+        .append(random.nextInt(10)).append(";\n").append(indent).append("  case 1 -> total * 2;\n").append(indent)
+        .append("  default -> total - 1;\n").append(indent).append("};\n");
+    }
+  }
+
+  private void block(StringBuilder sb, String indent, int depth, SplittableRandom random) {
+    int statements = 1 + random.nextInt(3);
+    for (int i = 0; i < statements; i++) {
+      statement(sb, indent + "  ", depth + 1, random);
+    }
+  }
+
+  private void javadoc(StringBuilder sb, String indent, SplittableRandom random) {
+    if (random.nextDouble() >= spec.commentDensity()) {
+      return;
+    }
+    sb.append(indent).append("/**\n");
+    int lines = 1 + random.nextInt(4);
+    for (int i = 0; i < lines; i++) {
+      sb.append(indent).append(" * ").append(words(random)).append('\n');
+    }
+    sb.append(indent).append(" */\n");
+  }
+
+  private String words(SplittableRandom random) {
+    StringBuilder sb = new StringBuilder();
+    int count = 3 + random.nextInt(8);
+    for (int i = 0; i < count; i++) {
+      sb.append(i == 0 ? "" : " ").append(random.nextDouble() < spec.unicodeRatio() ? pick(UNICODE_WORDS, random)
+        : pick(WORDS, random));
+    }
+    return sb.toString();
+  }
+
+  private String identifier(SplittableRandom random) {
+    String word = random.nextDouble() < spec.unicodeRatio() ? pick(UNICODE_WORDS, random) : pick(WORDS, random);
+    String second = pick(WORDS, random);
+    return word + Character.toUpperCase(second.charAt(0)) + second.substring(1);
+  }
+
+  private String literal(SplittableRandom random) {
+    String text = random.nextDouble() < spec.unicodeRatio() ? UNICODE_LITERAL : words(random);
+    return '"' + text + '"';
+  }
+
+  private static String pick(String[] values, SplittableRandom random) {
+    return values[random.nextInt(values.length)];
+  }
+
+}
@@ -0,0 +1,66 @@
+package org.sonarsource.java.benchmarks;
+
+/**
+ * Shape of a generated corpus. The same spec always gives the same files.
+ *
+ * @param statements     average number of statements per method, the actual number varies from half to one and a
+ *                       half times as much
+ * @param commentDensity probability, between 0 and 1, for each declaration to have a javadoc and for each statement to
+ *                       be preceded by a comment
+ * @param unicodeRatio   probability, between 0 and 1, for each identifier, literal and comment to contain non-ASCII
+ *                       characters
+ */
+public record CorpusSpec(int files, int methodsPerFile, int statements, double commentDensity, double unicodeRatio,
+                         long seed) {
+
+  public static final CorpusSpec DEFAULT = new CorpusSpec(500, 20, 10, 0.3, 0.05, 42);
+
+  public CorpusSpec {
+    if (files < 0 || methodsPerFile < 0 || statements < 0) {
+      throw new IllegalArgumentException("Counts of the corpus spec must be positive");
+    }
+    if (commentDensity < 0 || commentDensity > 1 || unicodeRatio < 0 || unicodeRatio > 1) {
+      throw new IllegalArgumentException("Comment density and unicode ratio must be between 0 and 1");
+    }
+  }
+
+  /**
+   * Reads the spec options out of a command line, e.g. {@code --files 500 --comments 0.5}
+   *
+   * @return the index of the first argument which is not a spec option
+   */
+  static int parse(String[] args, int from, CorpusSpec[] spec) {
+    CorpusSpec current = spec[0];
+    int i = from;
+    for (; i + 1 < args.length; i += 2) {
+      String value = args[i + 1];
+      current = switch (args[i]) {
+        case "--files" -> new CorpusSpec(Integer.parseInt(value), current.methodsPerFile, current.statements,
+          current.commentDensity, current.unicodeRatio, current.seed);
+        case "--methods" -> new CorpusSpec(current.files, Integer.parseInt(value), current.statements, current.commentDensity,
+          current.unicodeRatio, current.seed);
+        case "--statements" -> new CorpusSpec(current.files, current.methodsPerFile, Integer.parseInt(value),
+          current.commentDensity, current.unicodeRatio, current.seed);
+        case "--comments" -> new CorpusSpec(current.files, current.methodsPerFile, current.statements,
+          Double.parseDouble(value), current.unicodeRatio, current.seed);
+        case "--unicode" -> new CorpusSpec(current.files, current.methodsPerFile, current.statements, current.commentDensity,
+          Double.parseDouble(value), current.seed);
+        case "--seed" -> new CorpusSpec(current.files, current.methodsPerFile, current.statements, current.commentDensity,
+          current.unicodeRatio, Long.parseLong(value));
+        default -> null;
+      };
+      if (current == null) {
+        break;
+      }
+      spec[0] = current;
+    }
+    return i;
+  }
+
+  @Override
+  public String toString() {
+    return "%d files, %d methods per file, %d statements per method, comment density %.2f, unicode ratio %.2f, seed %d"
+      .formatted(files, methodsPerFile, statements, commentDensity, unicodeRatio, seed);
+  }
+
+}
@@ -0,0 +1,154 @@
+package org.sonarsource.java.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.sonarsource.java.App;
+import org.sonarsource.java.daemon.ExtractionDaemon;
+
+/**
+ * Latency of an extraction job on a small generated repository, run in a fresh JVM each time, as a CI job would, versus
+ * posted to a running daemon. The first job of the daemon is reported apart: the JIT compiles the hot code along it.
+ */
+public class DaemonBenchmark {
+
+  private static final CorpusSpec SMALL_REPOSITORY = new CorpusSpec(20, 20, 10, 0.3, 0.05, 42);
+  private static final Pattern LISTENING = Pattern.compile("listening on (http://\\S+/jobs), token in (.+), running");
+
+  private DaemonBenchmark() {
+    // Prevent instantiation
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    CorpusSpec[] spec = {SMALL_REPOSITORY};
+    int runs = 10;
+    List<String> parsers = List.of("ecj", "ts");
+    int i = CorpusSpec.parse(args, 0, spec);
+    while (i < args.length) {
+      if (i + 1 >= args.length) {
+        usage();
+      }
+      String value = args[i + 1];
+      switch (args[i]) {
+        case "--runs" -> runs = Integer.parseInt(value);
+        case "--parsers" -> parsers = List.of(value.split(","));
+        default -> usage();
+      }
+      i = CorpusSpec.parse(args, i + 2, spec);
+    }
+
+    Path workDir = Files.createTempDirectory("daemon-benchmark");
+    try {
+      Path corpus = workDir.resolve("corpus");
+      System.out.println("Generating " + spec[0]);
+      new CorpusGenerator(spec[0]).write(corpus);
+      for (String parser : parsers) {
+        List<Long> cold = new ArrayList<>();
+        for (int run = 0; run < runs; run++) {
+          cold.add(runCold(List.of("--local", corpus.toString(), workDir.resolve("cold-" + run).toString(), "--" + parser)));
+          EndToEndBenchmark.delete(workDir.resolve("cold-" + run));
+        }
+        List<Long> warm = runWarm(corpus, workDir, parser, runs);
+        long first = warm.remove(0);
+        System.out.printf("%-4s cold JVM      median %6.0f ms  p90 %6.0f ms%n", parser, median(cold) / 1e6, p90(cold) / 1e6);
+        System.out.printf("%-4s warm daemon   median %6.0f ms  p90 %6.0f ms  (first job %.0f ms)%n", parser,
+          median(warm) / 1e6, p90(warm) / 1e6, first / 1e6);
+      }
+    } finally {
+      EndToEndBenchmark.delete(workDir);
+    }
+  }
+
+  private static void usage() {
+    System.err.println("Usage: DaemonBenchmark [--files N] [--methods N] [--statements N] [--comments 0..1] [--unicode 0..1]"
+      + " [--seed N] [--runs N] [--parsers ecj,ts]");
+    System.exit(1);
+  }
+
+  private static List<String> java(String... args) {
+    List<String> command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+      "-cp", System.getProperty("java.class.path"), App.class.getName()));
+    command.addAll(List.of(args));
+    return command;
+  }
+
+  private static long runCold(List<String> appArgs) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    Process process = new ProcessBuilder(java(appArgs.toArray(String[]::new)))
+      .redirectErrorStream(true)
+      .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+      .start();
+    if (process.waitFor() != 0) {
+      throw new IllegalStateException("Extraction failed: " + appArgs);
+    }
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * @return the latency of each job posted to a new daemon, in order
+   */
+  private static List<Long> runWarm(Path corpus, Path workDir, String parser, int runs) throws IOException, InterruptedException {
+    Process daemon = new ProcessBuilder(java("--daemon", "--port", "0", "--jobs", "1")).redirectErrorStream(true).start();
+    try {
+      Matcher listening = awaitListening(daemon);
+      URI jobs = URI.create(listening.group(1));
+      String token = Files.readString(Path.of(listening.group(2)));
+      HttpClient client = HttpClient.newHttpClient();
+      List<Long> latencies = new ArrayList<>();
+      // One more job than the cold runs, the first one being set apart
+      for (int run = 0; run <= runs; run++) {
+        Path outputDir = workDir.resolve("warm-" + run);
+        String body = String.join("\n", "--local", corpus.toString(), outputDir.toString(), "--" + parser);
+        long start = System.nanoTime();
+        HttpRequest request = HttpRequest.newBuilder(jobs).header(ExtractionDaemon.TOKEN_HEADER, token)
+          .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        latencies.add(System.nanoTime() - start);
+        if (response.statusCode() != 200) {
+          throw new IllegalStateException("Job failed: " + response.body());
+        }
+        EndToEndBenchmark.delete(outputDir);
+      }
+      return latencies;
+    } finally {
+      daemon.destroy();
+      daemon.waitFor();
+    }
+  }
+
+  private static Matcher awaitListening(Process daemon) throws IOException {
+    var reader = new BufferedReader(new InputStreamReader(daemon.getInputStream(), StandardCharsets.UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      Matcher matcher = LISTENING.matcher(line);
+      if (matcher.find()) {
+        // Keeps draining the output of the daemon, so that it never blocks on a full pipe
+        Thread drain = new Thread(() -> reader.lines().forEach(ignored -> { }));
+        drain.setDaemon(true);
+        drain.start();
+        return matcher;
+      }
+    }
+    throw new IllegalStateException("The daemon exited before listening");
+  }
+
+  private static double median(List<Long> values) {
+    return values.stream().sorted().toList().get(values.size() / 2);
+  }
+
+  private static double p90(List<Long> values) {
+    return values.stream().sorted().toList().get((int) Math.ceil(values.size() * 0.9) - 1);
+  }
+
+}
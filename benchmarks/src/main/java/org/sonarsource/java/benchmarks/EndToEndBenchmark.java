@@ -0,0 +1,227 @@
+package org.sonarsource.java.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Measures the throughput of the whole extraction, from the discovery of the files to the written output, on a
+ * generated corpus. Each parser is run several times in a fresh JVM and the median run is kept.
+ * <p>Results can be saved as a baseline, and compared to a saved baseline: the run fails when the throughput drops,
+ * or the memory grows, by more than the threshold.</p>
+ */
+public class EndToEndBenchmark {
+
+  private static final Pattern METHODS = Pattern.compile("Total Methods Collected: (\\d+)");
+  private static final Pattern FILES = Pattern.compile("Stage read: (\\d+) files");
+
+  record Result(String parser, long files, long methods, long wallNanos, long peakRssBytes, long peakHeapBytes) {
+
+    double filesPerSecond() {
+      return files / (wallNanos / 1e9);
+    }
+
+    double methodsPerSecond() {
+      return methods / (wallNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+      return "%-4s %8.0f files/s %10.0f methods/s %9.0f ms  peak RSS %6.0f MB  peak heap %6.0f MB".formatted(parser,
+        filesPerSecond(), methodsPerSecond(), wallNanos / 1e6, megabytes(peakRssBytes), megabytes(peakHeapBytes));
+    }
+  }
+
+  private EndToEndBenchmark() {
+    // Prevent instantiation
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    CorpusSpec[] spec = {CorpusSpec.DEFAULT};
+    Path corpus = null;
+    int runs = 3;
+    List<String> parsers = List.of("ecj", "ts");
+    Path baseline = null;
+    Path saveBaseline = null;
+    double threshold = 10;
+    List<String> appArgs = new ArrayList<>();
+    int i = CorpusSpec.parse(args, 0, spec);
+    while (i < args.length) {
+      String arg = args[i];
+      if (arg.equals("--")) {
+        appArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+        break;
+      }
+      if (i + 1 >= args.length) {
+        usage();
+      }
+      String value = args[i + 1];
+      switch (arg) {
+        case "--corpus" -> corpus = Path.of(value);
+        case "--runs" -> runs = Integer.parseInt(value);
+        case "--parsers" -> parsers = List.of(value.split(","));
+        case "--baseline" -> baseline = Path.of(value);
+        case "--save-baseline" -> saveBaseline = Path.of(value);
+        case "--threshold" -> threshold = Double.parseDouble(value);
+        default -> usage();
+      }
+      i = CorpusSpec.parse(args, i + 2, spec);
+    }
+
+    Path workDir = Files.createTempDirectory("end-to-end");
+    try {
+      if (corpus == null) {
+        corpus = workDir.resolve("corpus");
+        System.out.println("Generating " + spec[0]);
+        new CorpusGenerator(spec[0]).write(corpus);
+      }
+      String corpusName = corpus.equals(workDir.resolve("corpus")) ? spec[0].toString() : corpus.toString();
+      List<Result> results = new ArrayList<>();
+      for (String parser : parsers) {
+        results.add(measure(parser, corpus, workDir, runs, appArgs));
+      }
+      System.out.println("Corpus: " + corpusName);
+      results.forEach(System.out::println);
+      if (saveBaseline != null) {
+        saveBaseline(saveBaseline, corpusName, results);
+        System.out.println("Baseline saved to " + saveBaseline);
+      }
+      if (baseline != null && !compare(baseline, corpusName, results, threshold)) {
+        System.exit(1);
+      }
+    } finally {
+      delete(workDir);
+    }
+  }
+
+  private static void usage() {
+    System.err.println("Usage: EndToEndBenchmark [--files N] [--methods N] [--statements N] [--comments 0..1] [--unicode 0..1]"
+      + " [--seed N] [--corpus <dir>] [--runs N] [--parsers ecj,ts] [--baseline <file>] [--save-baseline <file>]"
+      + " [--threshold <percent>] [-- <extractor options>]");
+    System.exit(1);
+  }
+
+  private static Result measure(String parser, Path corpus, Path workDir, int runs, List<String> appArgs)
+    throws IOException, InterruptedException {
+    List<Result> results = new ArrayList<>();
+    for (int run = 0; run < runs; run++) {
+      Path outputDir = workDir.resolve("out-" + parser + "-" + run);
+      List<String> command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+        "-cp", System.getProperty("java.class.path"), AppProbe.class.getName(), "--local", corpus.toString(),
+        outputDir.toString(), "--" + parser));
+      command.addAll(appArgs);
+      Result result = run(parser, command, outputDir);
+      System.out.println("  run " + (run + 1) + ": " + result);
+      results.add(result);
+      delete(outputDir);
+    }
+    results.sort(Comparator.comparingLong(Result::wallNanos));
+    return results.get(results.size() / 2);
+  }
+
+  private static Result run(String parser, List<String> command, Path outputDir) throws IOException, InterruptedException {
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    String probe = null;
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(AppProbe.RESULT_PREFIX)) {
+          probe = line;
+        }
+      }
+    }
+    if (process.waitFor() != 0 || probe == null) {
+      throw new IllegalStateException("Extraction failed: " + String.join(" ", command));
+    }
+    String[] values = probe.substring(AppProbe.RESULT_PREFIX.length()).trim().split(" ");
+    String metrics = Files.readString(outputDir.resolve("performance_metrics.txt"));
+    return new Result(parser, count(FILES, metrics), count(METHODS, metrics), Long.parseLong(values[0]),
+      Long.parseLong(values[1]), Long.parseLong(values[2]));
+  }
+
+  private static long count(Pattern pattern, String metrics) {
+    Matcher matcher = pattern.matcher(metrics);
+    return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+  }
+
+  private static void saveBaseline(Path file, String corpusName, List<Result> results) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("corpus", corpusName);
+    for (Result result : results) {
+      properties.setProperty(result.parser() + ".filesPerSecond", "%.1f".formatted(result.filesPerSecond()));
+      properties.setProperty(result.parser() + ".methodsPerSecond", "%.1f".formatted(result.methodsPerSecond()));
+      properties.setProperty(result.parser() + ".peakRssMb", "%.1f".formatted(megabytes(result.peakRssBytes())));
+      properties.setProperty(result.parser() + ".peakHeapMb", "%.1f".formatted(megabytes(result.peakHeapBytes())));
+    }
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      properties.store(writer, "End-to-end benchmark baseline, only comparable on the same hardware");
+    }
+  }
+
+  /**
+   * @return false if any result regressed by more than the threshold
+   */
+  private static boolean compare(Path file, String corpusName, List<Result> results, double threshold) throws IOException {
+    Properties baseline = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      baseline.load(reader);
+    }
+    if (!corpusName.equals(baseline.getProperty("corpus"))) {
+      System.out.println("Warning: the baseline was measured on another corpus: " + baseline.getProperty("corpus"));
+    }
+    boolean ok = true;
+    System.out.printf("Compared to %s (threshold %.0f%%):%n", file, threshold);
+    for (Result result : results) {
+      ok &= check(baseline, result.parser() + ".filesPerSecond", result.filesPerSecond(), threshold, true);
+      ok &= check(baseline, result.parser() + ".methodsPerSecond", result.methodsPerSecond(), threshold, true);
+      if (result.peakRssBytes() >= 0) {
+        ok &= check(baseline, result.parser() + ".peakRssMb", megabytes(result.peakRssBytes()), threshold, false);
+      }
+      ok &= check(baseline, result.parser() + ".peakHeapMb", megabytes(result.peakHeapBytes()), threshold, false);
+    }
+    return ok;
+  }
+
+  private static boolean check(Properties baseline, String key, double value, double threshold, boolean higherIsBetter) {
+    String expected = baseline.getProperty(key);
+    if (expected == null) {
+      System.out.printf("  %-26s %10.1f  (not in the baseline)%n", key, value);
+      return true;
+    }
+    double reference = Double.parseDouble(expected);
+    double change = reference == 0 ? 0 : (value - reference) / reference * 100;
+    boolean regressed = higherIsBetter ? change < -threshold : change > threshold;
+    System.out.printf("  %-26s %10.1f  baseline %10.1f  %+6.1f%%%s%n", key, value, reference, change,
+      regressed ? "  REGRESSION" : "");
+    return !regressed;
+  }
+
+  private static double megabytes(long bytes) {
+    return bytes / (1024.0 * 1024.0);
+  }
+
+  static void delete(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(path)) {
+      for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(p);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,61 @@
+package org.sonarsource.java.benchmarks;
+
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonarsource.java.extracting.ECJFunctionExtractor;
+import org.sonarsource.java.extracting.FunctionInfo;
+import org.sonarsource.java.extracting.TSitFunctionExtractor;
+import org.sonarsource.java.extracting.TSitQueryFunctionExtractor;
+import org.sonarsource.java.parsing.AstResult;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.TSitParser;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Extraction and normalization of the methods of an already parsed file. Both Tree-sitter extractors, walking the
+ * tree or running a query, share the same tree.
+ */
+@State(Scope.Thread)
+public class ExtractorBenchmark {
+
+  @Param
+  Fixture fixture;
+
+  @Param({"false", "true"})
+  boolean oneline;
+
+  private String source;
+  private AstResult ecjAst;
+  private AstResult tsAst;
+  private final ECJFunctionExtractor ecjExtractor = new ECJFunctionExtractor();
+  private final TSitFunctionExtractor tsExtractor = new TSitFunctionExtractor();
+  private final TSitQueryFunctionExtractor tsQueryExtractor = new TSitQueryFunctionExtractor();
+  private final PerformanceMetrics metrics = new PerformanceMetrics();
+
+  @Setup
+  public void setUp() {
+    source = fixture.source();
+    ecjAst = new ECJParser().parse("A.java", source, metrics);
+    tsAst = new TSitParser().parse("A.java", source, metrics);
+  }
+
+  @Benchmark
+  public List<FunctionInfo> ecj() {
+    return ecjExtractor.extract(ecjAst, source, 0, oneline, metrics);
+  }
+
+  @Benchmark
+  public List<FunctionInfo> treeSitter() {
+    return tsExtractor.extract(tsAst, source, 0, oneline, metrics);
+  }
+
+  @Benchmark
+  public List<FunctionInfo> treeSitterQuery() {
+    return tsQueryExtractor.extract(tsAst, source, 0, oneline, metrics);
+  }
+
+}
@@ -0,0 +1,36 @@
+package org.sonarsource.java.benchmarks;
+
+/**
+ * Generated Java files of increasing size. The same seed always gives the same file, so results are comparable
+ * between runs. Files are ASCII: char and UTF-8 byte offsets are the same.
+ */
+public enum Fixture {
+
+  /**
+   * A few short methods without comments
+   */
+  SMALL(new CorpusSpec(1, 3, 3, 0, 0, 42)),
+  /**
+   * A class of a few hundred lines, with some javadoc and comments
+   */
+  TYPICAL(new CorpusSpec(1, 25, 8, 0.3, 0, 42)),
+  /**
+   * A generated-like file of tens of thousands of lines, with javadoc and comments almost everywhere
+   */
+  HUGE(new CorpusSpec(1, 2000, 12, 0.9, 0, 42));
+
+  private final CorpusSpec spec;
+  private String source;
+
+  Fixture(CorpusSpec spec) {
+    this.spec = spec;
+  }
+
+  public synchronized String source() {
+    if (source == null) {
+      source = new CorpusGenerator(spec).source(0);
+    }
+    return source;
+  }
+
+}
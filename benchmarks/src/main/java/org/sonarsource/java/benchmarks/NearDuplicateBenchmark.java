@@ -0,0 +1,224 @@
+package org.sonarsource.java.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.sonarsource.java.dedup.MinHash;
+import org.sonarsource.java.dedup.NearDuplicateClusterer;
+import org.sonarsource.java.extracting.FunctionInfo;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Signature throughput and clustering recall on a synthetic clone set: random methods, each followed by a clone
+ * with renamed identifiers, other literals and, one time out of two, an added or removed statement.
+ * <p>As in the pipeline, the band keys are computed on several threads, then the clusters are assigned in order on a
+ * single one.</p>
+ */
+public class NearDuplicateBenchmark {
+
+  private static final String[] TYPES = {"int", "long", "String", "List<String>", "Map<String, Integer>", "Object",
+    "boolean", "double"};
+  private static final String[] OPERATORS = {"+", "-", "*", "/", "%", "&&", "||", "==", "!=", "<", ">=", "&", "|", "^",
+    "<<"};
+  private static final String[] METHODS = {"size", "get", "put", "add", "remove", "contains", "isEmpty", "toString",
+    "equals", "hashCode", "stream", "apply", "close", "length", "next"};
+
+  private NearDuplicateBenchmark() {
+    // Prevent instantiation
+  }
+
+  public static void main(String[] args) throws InterruptedException, ExecutionException {
+    int methodCount = 200_000;
+    int threads = Runtime.getRuntime().availableProcessors();
+    for (int i = 0; i < args.length; i += 2) {
+      if (i + 1 >= args.length) {
+        usage();
+      }
+      switch (args[i]) {
+        case "--methods" -> methodCount = Integer.parseInt(args[i + 1]);
+        case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+        default -> usage();
+      }
+    }
+    List<FunctionInfo> functions = generate(methodCount / 2, new SplittableRandom(42));
+
+    // Warm-up
+    for (int i = 0; i < Math.min(20_000, functions.size()); i++) {
+      MinHash.signature(functions.get(i).normalizedContent());
+    }
+    long chars = 0;
+    long start = System.nanoTime();
+    for (FunctionInfo function : functions) {
+      MinHash.signature(function.normalizedContent());
+      chars += function.normalizedContent().length();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("Signatures: %d in %.2f s, %.0f signatures/s, %.1f M chars/s%n", functions.size(), seconds,
+      functions.size() / seconds, chars / seconds / 1e6);
+
+    long[][] bandKeys = new long[functions.size()][];
+    start = System.nanoTime();
+    bandKeysInParallel(functions, bandKeys, threads);
+    seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("Band keys: %d methods on %d threads in %.2f s, %.0f methods/s%n", functions.size(), threads,
+      seconds, functions.size() / seconds);
+
+    var clusterer = new NearDuplicateClusterer(512L << 20);
+    var metrics = new PerformanceMetrics();
+    start = System.nanoTime();
+    int[] clusterIds = clusterer.assign(bandKeys, metrics);
+    seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("Assignment: %d methods in order in %.2f s, %.0f methods/s%n", functions.size(), seconds,
+      functions.size() / seconds);
+
+    int recalled = 0;
+    int falseMerges = 0;
+    for (int i = 0; i < functions.size(); i += 2) {
+      if (clusterIds[i] == clusterIds[i + 1]) {
+        recalled++;
+      }
+      if (i > 0 && clusterIds[i] == clusterIds[i - 2]) {
+        falseMerges++;
+      }
+    }
+    int pairs = functions.size() / 2;
+    System.out.printf("Recall: %.2f%% of %d clone pairs in the same cluster%n", 100.0 * recalled / pairs, pairs);
+    System.out.printf("Unrelated neighbours merged: %.2f%%%n", 100.0 * falseMerges / pairs);
+    System.out.print(metrics);
+  }
+
+  private static void usage() {
+    System.err.println("Usage: NearDuplicateBenchmark [--methods N] [--threads N]");
+    System.exit(1);
+  }
+
+  private static void bandKeysInParallel(List<FunctionInfo> functions, long[][] bandKeys, int threads)
+    throws InterruptedException, ExecutionException {
+    int chunk = 1000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int from = 0; from < functions.size(); from += chunk) {
+        int start = from;
+        int end = Math.min(from + chunk, functions.size());
+        futures.add(executor.submit(() -> {
+          long[][] keys = NearDuplicateClusterer.bandKeys(functions.subList(start, end));
+          System.arraycopy(keys, 0, bandKeys, start, keys.length);
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Each method is a list of statements, rendered twice with different identifiers and literals
+   */
+  private static List<FunctionInfo> generate(int pairs, SplittableRandom random) {
+    List<FunctionInfo> functions = new ArrayList<>(pairs * 2);
+    for (int i = 0; i < pairs; i++) {
+      List<Long> statements = new ArrayList<>();
+      int count = 4 + random.nextInt(20);
+      for (int j = 0; j < count; j++) {
+        statements.add(random.nextLong());
+      }
+      functions.add(render("m" + i, statements, "a"));
+      if (random.nextBoolean()) {
+        int edited = random.nextInt(statements.size());
+        if (random.nextBoolean() || statements.size() == 1) {
+          statements.add(edited, random.nextLong());
+        } else {
+          statements.remove(edited);
+        }
+      }
+      functions.add(render("copy" + i, statements, "renamed"));
+    }
+    return functions;
+  }
+
+  private static FunctionInfo render(String name, List<Long> statements, String prefix) {
+    StringBuilder body = new StringBuilder("void ").append(name).append("(Object ").append(prefix).append("0) { ");
+    for (long seed : statements) {
+      // The statement seed decides the structure, the prefix changes the identifiers and literals
+      statement(body, new SplittableRandom(seed), new SplittableRandom(seed ^ prefix.hashCode()), prefix, 0);
+    }
+    String content = body.append('}').toString();
+    return new FunctionInfo(name, content, content, 0, content.length());
+  }
+
+  private static void statement(StringBuilder sb, SplittableRandom shape, SplittableRandom names, String prefix,
+    int depth) {
+    switch (shape.nextInt(depth < 2 ? 7 : 4)) {
+      case 0 -> sb.append(TYPES[shape.nextInt(TYPES.length)]).append(' ').append(identifier(names, prefix)).append(" = ");
+      case 1 -> sb.append(identifier(names, prefix)).append(' ').append(OPERATORS[shape.nextInt(OPERATORS.length)]).append("= ");
+      case 2 -> sb.append("return ");
+      case 3 -> { }
+      case 4 -> {
+        sb.append(shape.nextBoolean() ? "if (" : "while (");
+        expression(sb, shape, names, prefix, depth + 1);
+        sb.append(") { ");
+        statement(sb, shape, names, prefix, depth + 1);
+        sb.append("} ");
+        return;
+      }
+      case 5 -> {
+        sb.append("for (int ").append(identifier(names, prefix)).append(" = 0; ").append(identifier(names, prefix))
+          .append(" < ").append(names.nextInt(1000)).append("; i++) { ");
+        statement(sb, shape, names, prefix, depth + 1);
+        sb.append("} ");
+        return;
+      }
+      default -> {
+        sb.append("try { ");
+        statement(sb, shape, names, prefix, depth + 1);
+        sb.append("} catch (Exception ").append(identifier(names, prefix)).append(") { throw new IllegalStateException(")
+          .append(identifier(names, prefix)).append("); } ");
+        return;
+      }
+    }
+    expression(sb, shape, names, prefix, depth + 1);
+    sb.append("; ");
+  }
+
+  private static void expression(StringBuilder sb, SplittableRandom shape, SplittableRandom names, String prefix,
+    int depth) {
+    switch (shape.nextInt(depth < 4 ? 7 : 2)) {
+      case 0 -> sb.append(identifier(names, prefix));
+      case 1 -> sb.append(names.nextBoolean() ? Integer.toString(names.nextInt(1000)) : "\"" + prefix + names.nextInt() + "\"");
+      case 2, 3 -> {
+        expression(sb, shape, names, prefix, depth + 1);
+        sb.append(' ').append(OPERATORS[shape.nextInt(OPERATORS.length)]).append(' ');
+        expression(sb, shape, names, prefix, depth + 1);
+      }
+      case 4 -> {
+        sb.append(identifier(names, prefix)).append('.').append(METHODS[shape.nextInt(METHODS.length)]).append('(');
+        if (shape.nextBoolean()) {
+          expression(sb, shape, names, prefix, depth + 1);
+        }
+        sb.append(')');
+      }
+      case 5 -> {
+        sb.append("new ").append(TYPES[shape.nextInt(TYPES.length)].replace("List", "ArrayList")).append("(");
+        expression(sb, shape, names, prefix, depth + 1);
+        sb.append(')');
+      }
+      default -> {
+        sb.append("!(");
+        expression(sb, shape, names, prefix, depth + 1);
+        sb.append(')');
+      }
+    }
+  }
+
+  private static String identifier(SplittableRandom names, String prefix) {
+    return prefix + names.nextInt(10);
+  }
+
+}
@@ -0,0 +1,85 @@
+package org.sonarsource.java.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonarsource.java.extracting.CommentIndex;
+import org.sonarsource.java.extracting.ECJFunctionExtractor;
+import org.sonarsource.java.extracting.TextNormalizer;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Each {@link TextNormalizer} method over all the methods of a file: one operation normalizes the whole file
+ */
+@State(Scope.Thread)
+public class NormalizerBenchmark {
+
+  @Param
+  Fixture fixture;
+
+  private String source;
+  private byte[] sourceBytes;
+  private CommentIndex comments;
+  private int[] starts;
+  private int[] ends;
+  private String[] texts;
+
+  @Setup
+  public void setUp() {
+    source = fixture.source();
+    // Fixtures are ASCII, the char offsets found by ECJ are also the byte offsets of the Tree-sitter normalization
+    sourceBytes = source.getBytes(StandardCharsets.US_ASCII);
+    CompilationUnit cu = (CompilationUnit) new ECJParser().parse("A.java", source, new PerformanceMetrics()).ast();
+    comments = ECJFunctionExtractor.getComments(cu);
+    List<int[]> spans = new ArrayList<>();
+    cu.accept(new ASTVisitor() {
+      @Override
+      public boolean visit(MethodDeclaration node) {
+        spans.add(new int[] {node.getStartPosition(), node.getStartPosition() + node.getLength()});
+        return false;
+      }
+    });
+    starts = spans.stream().mapToInt(span -> span[0]).toArray();
+    ends = spans.stream().mapToInt(span -> span[1]).toArray();
+    texts = spans.stream().map(span -> source.substring(span[0], span[1])).toArray(String[]::new);
+  }
+
+  @Benchmark
+  public void normalizeMethodText(Blackhole blackhole) {
+    for (int i = 0; i < starts.length; i++) {
+      blackhole.consume(TextNormalizer.normalizeMethodText(source, starts[i], ends[i], comments, 0, false));
+    }
+  }
+
+  @Benchmark
+  public void normalizeMethodTextOneLine(Blackhole blackhole) {
+    for (int i = 0; i < starts.length; i++) {
+      blackhole.consume(TextNormalizer.normalizeMethodText(source, starts[i], ends[i], comments, 0, true));
+    }
+  }
+
+  @Benchmark
+  public void normalizeTSMethodText(Blackhole blackhole) {
+    for (int i = 0; i < starts.length; i++) {
+      blackhole.consume(TextNormalizer.normalizeTSMethodText(sourceBytes, starts[i], ends[i], comments, 0, false));
+    }
+  }
+
+  @Benchmark
+  public void normalizeOneLine(Blackhole blackhole) {
+    for (String text : texts) {
+      blackhole.consume(TextNormalizer.normalizeOneLine(text));
+    }
+  }
+
+}
@@ -0,0 +1,60 @@
+package org.sonarsource.java.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.sonarsource.java.extracting.ECJFunctionExtractor;
+import org.sonarsource.java.extracting.FunctionInfo;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.utils.FilesUtil;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Writing the methods of a file with {@link FilesUtil}: a single file in --oneline mode, otherwise one file per
+ * method. Files are overwritten by each operation, so the disk usage stays constant.
+ */
+@State(Scope.Thread)
+public class OutputBenchmark {
+
+  @Param
+  Fixture fixture;
+
+  @Param({"false", "true"})
+  boolean oneline;
+
+  private final Path sourcePath = Path.of("A.java");
+  private List<FunctionInfo> functions;
+  private Path outputDir;
+
+  @Setup
+  public void setUp() throws IOException {
+    String source = fixture.source();
+    PerformanceMetrics metrics = new PerformanceMetrics();
+    functions = new ECJFunctionExtractor().extract(new ECJParser().parse("A.java", source, metrics), source, 0, oneline, metrics);
+    outputDir = Files.createTempDirectory("output-benchmark");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(outputDir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Benchmark
+  public void writeMethodsToFile() throws IOException {
+    FilesUtil.writeMethodsToFile(functions, sourcePath, outputDir, oneline);
+  }
+
+}
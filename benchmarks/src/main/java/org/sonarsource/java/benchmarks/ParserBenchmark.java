@@ -0,0 +1,45 @@
+package org.sonarsource.java.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonarsource.java.parsing.AstResult;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.TSitParser;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Parsing of a whole file. Parsers are not thread-safe: each benchmark thread has its own.
+ */
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+  @Param
+  Fixture fixture;
+
+  private String source;
+  private ECJParser ecjParser;
+  private TSitParser tsParser;
+  private PerformanceMetrics metrics;
+
+  @Setup
+  public void setUp() {
+    source = fixture.source();
+    ecjParser = new ECJParser();
+    tsParser = new TSitParser();
+    metrics = new PerformanceMetrics();
+  }
+
+  @Benchmark
+  public AstResult ecj() {
+    return ecjParser.parse("A.java", source, metrics);
+  }
+
+  @Benchmark
+  public AstResult treeSitter() {
+    return tsParser.parse("A.java", source, metrics);
+  }
+
+}
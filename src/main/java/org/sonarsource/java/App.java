@@ -1,117 +1,370 @@
 package org.sonarsource.java;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Locale;
+import java.util.Map;
+import org.sonarsource.java.cache.ExtractionCache;
+import org.sonarsource.java.daemon.ExtractionDaemon;
+import org.sonarsource.java.dedup.MethodDeduplicator;
+import org.sonarsource.java.dedup.NearDuplicateClusterer;
 import org.sonarsource.java.extracting.ECJFunctionExtractor;
-import org.sonarsource.java.extracting.FunctionInfo;
 import org.sonarsource.java.extracting.IFunctionExtractor;
+import org.sonarsource.java.extracting.MethodFilter;
+import org.sonarsource.java.extracting.ScannerFunctionExtractor;
 import org.sonarsource.java.extracting.TSitFunctionExtractor;
-import org.sonarsource.java.parsing.AstResult;
+import org.sonarsource.java.extracting.TSitQueryFunctionExtractor;
+import org.sonarsource.java.output.OutputFormat;
 import org.sonarsource.java.parsing.ECJParser;
 import org.sonarsource.java.parsing.IParser;
+import org.sonarsource.java.parsing.ParserPool;
+import org.sonarsource.java.parsing.ScannerParser;
 import org.sonarsource.java.parsing.TSitParser;
-import org.sonarsource.java.utils.FilesUtil;
+import org.sonarsource.java.pipeline.DirectoryWalker;
+import org.sonarsource.java.pipeline.ExtractionPipeline;
+import org.sonarsource.java.pipeline.GitTreeSource;
+import org.sonarsource.java.pipeline.HistoryExtraction;
+import org.sonarsource.java.pipeline.IncrementalExtraction;
+import org.sonarsource.java.pipeline.PathFilter;
+import org.sonarsource.java.pipeline.PipelineOptions;
+import org.sonarsource.java.utils.CloneOptions;
 import org.sonarsource.java.utils.GitUtils;
 import org.sonarsource.java.utils.PerformanceMetrics;
 
+/**
+ * Extraction run of the command line. Each run reads its arguments into its own instance, so that the
+ * {@link ExtractionDaemon} can run several jobs at the same time, sharing the parsers it keeps warm.
+ */
 public class App {
 
-  private static boolean oneLine = false;
-  private static int minLines = 0;
-  private static IParser parser;
-  private static IFunctionExtractor functionExtractor;
+  private final Map<String, IParser> parsers;
+  private final PrintStream out;
+  private final boolean exitOnError;
+  /**
+   * The temporary clone of a remote repository, deleted at the end of the run
+   */
+  private Path clonedRepoDir;
+  private boolean oneLine = false;
+  private int minLines = 0;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private IParser parser;
+  private IFunctionExtractor functionExtractor;
+  private String parserName = "ecj";
+  private Path cacheDir;
+  private long cacheSizeMb = 1024;
+  private String baseRevision;
+  private String newRevision = "HEAD";
+  private OutputFormat outputFormat = OutputFormat.FILES;
+  private boolean gzip = false;
+  private long writeBufferBytes = ExtractionPipeline.DEFAULT_WRITE_BUFFER_BYTES;
+  private String historyRange;
+  private Integer cloneDepth;
+  private String cloneRef;
+  private long blobLimitBytes = -1;
+  private boolean dedup = false;
+  private boolean clusters = false;
+  private long clustersMemoryMb = 512;
+  private final List<String> includes = new ArrayList<>();
+  private final List<String> excludes = new ArrayList<>();
+  private boolean defaultExcludes = true;
+  private long maxFileBytes = -1;
+  private MethodFilter methodFilter = MethodFilter.ACCEPT_ALL;
+
+  /**
+   * @param parsers     the parser of each parser name, see {@link #newParsers()}
+   * @param out         where the progress messages and the performance metrics are printed
+   * @param exitOnError to exit on invalid arguments, rather than throwing an {@link IllegalArgumentException}
+   */
+  public App(Map<String, IParser> parsers, PrintStream out, boolean exitOnError) {
+    this.parsers = parsers;
+    this.out = out;
+    this.exitOnError = exitOnError;
+  }
+
+  /**
+   * @param args the arguments of {@link #run(String[])}, or {@code --daemon} followed by the options of
+   *             {@link ExtractionDaemon#main(String[])}
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length > 0 && "--daemon".equals(args[0])) {
+      ExtractionDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    new App(newParsers(), System.out, true).run(args);
+  }
+
+  /**
+   * A parser pool per parser name, both Tree-sitter extractors sharing the same parsers.
+   * <p>The parsers are only created on the first parse, and lambdas are used rather than constructor references, which
+   * would load the parser classes right away: a run only loads ECJ, or Tree-sitter and its native library, when it
+   * uses them.</p>
+   */
+  public static Map<String, IParser> newParsers() {
+    IParser treeSitter = new ParserPool(() -> new TSitParser());
+    return Map.of("ecj", new ParserPool(() -> new ECJParser()), "ts", treeSitter, "ts-query", treeSitter,
+      "fast", new ParserPool(() -> new ScannerParser()));
+  }
+
+  /**
+   * @param parserName ecj, ts, ts-query or fast, the extractor to use with the parsers of {@link #newParsers()}
+   */
+  public static IFunctionExtractor newExtractor(String parserName, MethodFilter methodFilter) {
+    return switch (parserName) {
+      case "ts" -> new TSitFunctionExtractor(methodFilter);
+      case "ts-query" -> new TSitQueryFunctionExtractor(methodFilter);
+      case "fast" -> new ScannerFunctionExtractor();
+      default -> new ECJFunctionExtractor(methodFilter);
+    };
+  }
 
   /**
    * @param args List of arguments:
-   *             <p>1st mandatory: --local or --github</p>
-   *             <p>2nd mandatory: path to local directory or GitHub repository URL</p>
+   *             <p>1st mandatory: --local, --github or --git</p>
+   *             <p>2nd mandatory: path to local directory, GitHub repository URL, or for --git a path to a local
+   *             (possibly bare) repository or a GitHub repository URL, whose files are read from the git objects
+   *             without any checkout</p>
    *             <p>3rd mandatory: output directory name</p>
    *             <p>--ml <minLines> to set the minimum number of lines for a method to be evaluated</p>
+   *             <p>--filter <terms> to extract only the methods matching all the terms, e.g. "!@Test !accessor
+   *             lines<=200", checked on the syntax tree before the method text is built, see {@link MethodFilter}.
+   *             Can be repeated, not available with --fast</p>
    *             <p>--ecj to use ECJ parser (default)</p>
    *             <p>--ts to use Tree-sitter parser</p>
+   *             <p>--ts-query to use Tree-sitter parser, extracting the methods with a single query</p>
+   *             <p>--fast to find the methods with the ECJ token scanner, without building the AST</p>
    *             <p>--oneline to write the methods as oneliners</p>
+   *             <p>--threads <count> to set the number of files parsed in parallel (default: number of processors)</p>
+   *             <p>--format <files|jsonl|binary> to write one file per method or class (default), or all the methods
+   *             into a single JSON lines or binary file</p>
+   *             <p>--gzip to compress the jsonl and binary formats</p>
+   *             <p>--write-buffer <MB> memory for the methods waiting to be written, before extraction blocks on
+   *             the disk (default: 64)</p>
+   *             <p>--dedup to write only the first of the methods with the same normalized content</p>
+   *             <p>--clusters to group the near-duplicate methods into clusters, written to clusters.tsv</p>
+   *             <p>--clusters-memory <MB> memory of the near-duplicate index, once full new clusters can't be joined
+   *             (default: 512)</p>
+   *             <p>--cache <dir> to reuse the methods extracted from identical files in previous runs</p>
+   *             <p>--cache-size <MB> to set the maximum size of the cache directory (default: 1024)</p>
+   *             <p>--base <revision> to refresh an existing output directory, extracted at the given revision, by
+   *             parsing only the .java files that changed since</p>
+   *             <p>--head <revision> the revision to extract with --git, or to refresh the output directory to with
+   *             --base (default: HEAD)</p>
+   *             <p>--history <range> to extract every commit of the range, "base..head" or a single revision for
+   *             its whole history, parsing each distinct file content once</p>
+   *             <p>--depth <commits> the number of commits of history to clone, 0 for all of them (default: 1, or 0
+   *             with --base or --history)</p>
+   *             <p>--ref <branch or tag> the only branch or tag to clone (default: the default branch)</p>
+   *             <p>--blob-limit <bytes> to not fetch larger blobs when cloning for --git, if the server allows it</p>
+   *             <p>--include <glob> to extract only the files whose path, relative to the input directory, matches
+   *             one of the given globs, can be repeated (default: **&#47;*.java)</p>
+   *             <p>--exclude <glob> to skip the files and directories matching the glob, can be repeated, excluded
+   *             directories are not walked. Version control, node_modules and generated sources directories are
+   *             excluded by default, as well as target and build directories next to a pom.xml, build.gradle or
+   *             build.xml</p>
+   *             <p>--no-default-excludes to walk the directories excluded by default</p>
+   *             <p>--max-file-size <bytes> to skip larger files</p>
    */
-  public static void main(String[] args) throws IOException {
+  public PerformanceMetrics run(String[] args) throws IOException {
     if (args.length < 3) {
-      System.err.println("Usage: java -jar app.jar --local <local_dir> <output_dir_name>");
-      System.err.println("   or: java -jar app.jar --github <github_repo_url> <output_dir_name>");
-      System.exit(1);
+      fail("""
+        Usage: java -jar app.jar --local <local_dir> <output_dir_name>
+           or: java -jar app.jar --github <github_repo_url> <output_dir_name>
+           or: java -jar app.jar --git <local_repo_dir_or_github_repo_url> <output_dir_name>
+           or: java -jar app.jar --daemon [--port <port>] [--jobs <count>] [--token-dir <directory>]""");
     }
 
     String mode = args[0];
     String inputPath = args[1];
     String outputDirName = args[2];
     checkExtraArgs(args);
-
-    var repoDir = getRepoPathByMode(mode, inputPath);
+    if (historyRange != null && baseRevision != null) {
+      fail("--history and --base cannot be used together");
+    }
+    if (baseRevision != null && outputFormat != OutputFormat.FILES) {
+      fail("--base can only refresh the files output format");
+    }
+    if (gzip && outputFormat == OutputFormat.FILES) {
+      fail("--gzip can only be used with the jsonl and binary formats");
+    }
+    if ((dedup || clusters) && baseRevision != null) {
+      fail("--dedup and --clusters cannot be used with --base, they need every method of the run");
+    }
+    if (blobLimitBytes >= 0 && !"--git".equals(mode)) {
+      fail("--blob-limit can only be used with --git, a checkout needs every blob");
+    }
+    boolean walksDirectory = historyRange == null && baseRevision == null && !"--git".equals(mode);
+    if (!walksDirectory && (!includes.isEmpty() || !excludes.isEmpty() || !defaultExcludes || maxFileBytes >= 0)) {
+      fail("--include, --exclude, --no-default-excludes and --max-file-size can only be used when "
+        + "walking a directory, with --local or --github");
+    }
+    var pathFilter = walksDirectory ? pathFilter() : null;
 
     Path outputDir = Path.of(outputDirName);
-    if (Files.exists(outputDir)) {
-      System.err.println("Provided output path " + outputDirName + " already exists");
-      System.exit(1);
+    if (baseRevision != null) {
+      if (!Files.isDirectory(outputDir)) {
+        fail("Provided output path " + outputDirName + " is not an existing directory");
+      }
+    } else if (Files.exists(outputDir)) {
+      fail("Provided output path " + outputDirName + " already exists");
     }
-    Files.createDirectories(outputDir);
 
-    var javaFiles = collectJavaFiles(repoDir);
+    var repoDir = getRepoPathByMode(mode, inputPath);
+    try {
+      return extract(repoDir, outputDir, walksDirectory, pathFilter);
+    } finally {
+      if (clonedRepoDir != null) {
+        GitUtils.deleteClone(clonedRepoDir);
+      }
+    }
+  }
+
+  private PerformanceMetrics extract(Path repoDir, Path outputDir, boolean walksDirectory, PathFilter pathFilter)
+    throws IOException {
+    Files.createDirectories(outputDir);
 
     PerformanceMetrics performanceMetrics = new PerformanceMetrics();
+    var clusterer = clusters ? new NearDuplicateClusterer(clustersMemoryMb * 1024 * 1024) : null;
+    var options = new PipelineOptions(openCache(), dir -> outputFormat.open(dir, oneLine, gzip, out), writeBufferBytes,
+      dedup ? new MethodDeduplicator() : null, clusterer, out, isConsole());
+    var pipeline = new ExtractionPipeline(parser, functionExtractor, minLines, oneLine, threads, performanceMetrics, options);
 
-    for (Path path : javaFiles) {
-      String code = Files.readString(path, StandardCharsets.UTF_8);
-      AstResult astResult = parser.parse(path.toFile().getName(), code, performanceMetrics);
-      if (astResult != null) {
-        List<FunctionInfo> functions = functionExtractor.extract(astResult, code, minLines, oneLine, performanceMetrics);
-        if (!functions.isEmpty()) {
-          FilesUtil.writeMethodsToFile(functions, path, outputDir, oneLine);
-        }
+    if (walksDirectory) {
+      try (var javaFiles = new DirectoryWalker(repoDir, pathFilter, threads, performanceMetrics)) {
+        pipeline.run(javaFiles, outputDir);
       }
+    } else {
+      runOnGitObjects(pipeline, repoDir, outputDir);
+    }
+    if (clusterer != null && clusterer.droppedBandCount() > 0) {
+      out.println("Near-duplicate index full, some clusters could not be joined: increase --clusters-memory");
     }
     savePerformanceMetricsFile(performanceMetrics, outputDir);
+    return performanceMetrics;
   }
 
-  private static Path getRepoPathByMode(String mode, String inputPath) {
+  /**
+   * @return whether the output is the console of the command line, rather than e.g. the response of a daemon job
+   */
+  private boolean isConsole() {
+    return out == System.out && System.console() != null;
+  }
+
+  /**
+   * Reports invalid arguments: the command line exits, a job of the daemon fails
+   */
+  private void fail(String message) {
+    if (!exitOnError) {
+      throw new IllegalArgumentException(message);
+    }
+    System.err.println(message);
+    System.exit(1);
+  }
+
+  private ExtractionCache openCache() throws IOException {
+    if (cacheDir == null) {
+      return null;
+    }
+    String settings = parserName + "|minLines=" + minLines + "|oneline=" + oneLine;
+    if (!methodFilter.isEmpty()) {
+      settings += "|filter=" + methodFilter;
+    }
+    return new ExtractionCache(cacheDir, cacheSizeMb * 1024 * 1024, settings);
+  }
+
+  private void runOnGitObjects(ExtractionPipeline pipeline, Path repoDir, Path outputDir) throws IOException {
+    try {
+      if (historyRange != null) {
+        new HistoryExtraction(pipeline).run(repoDir, historyRange, outputDir);
+      } else if (baseRevision != null) {
+        new IncrementalExtraction(pipeline).run(repoDir, baseRevision, newRevision, outputDir);
+      } else {
+        try (var gitTree = new GitTreeSource(repoDir, newRevision)) {
+          pipeline.run(gitTree, gitTree, outputDir);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  private Path getRepoPathByMode(String mode, String inputPath) {
     Path repoDir = null;
     switch (mode) {
       case "--local":
         repoDir = Path.of(inputPath);
         if (!Files.exists(repoDir) || !Files.isDirectory(repoDir)) {
-          System.err.println("Provided path " + inputPath + " is not an existing directory");
-          System.exit(1);
+          fail("Provided path " + inputPath + " is not an existing directory");
         }
         break;
 
       case "--github":
         if (!GitUtils.isPublicGitHubRepo(inputPath)) {
-          System.err.println("Provided URL " + inputPath + " is not a public GitHub repository");
-          System.exit(1);
+          fail("Provided URL " + inputPath + " is not a public GitHub repository");
+        }
+        repoDir = cloneRepository(inputPath, false);
+        break;
+
+      case "--git":
+        if (inputPath.contains("://")) {
+          if (inputPath.startsWith("https://github.com/") && !GitUtils.isPublicGitHubRepo(inputPath)) {
+            fail("Provided URL " + inputPath + " is not a public GitHub repository");
+          }
+          repoDir = cloneRepository(inputPath, true);
+        } else {
+          repoDir = Path.of(inputPath);
+          if (!Files.isDirectory(repoDir)) {
+            fail("Provided path " + inputPath + " is not an existing directory");
+          }
         }
-        repoDir = GitUtils.cloneRepository(inputPath);
         break;
 
       default:
-        System.err.println("Invalid mode: " + mode);
-        System.err.println("Use --local for a local directory or --github for a GitHub repository");
-        System.exit(1);
+        fail("Invalid mode: " + mode + "\nUse --local for a local directory, --github for a GitHub repository or --git "
+          + "for the objects of a git repository");
     }
     return repoDir;
   }
 
-  private static List<Path> collectJavaFiles(Path dir) throws IOException {
-    List<Path> javaFiles;
-    try (Stream<Path> paths = Files.walk(dir)) {
-      javaFiles = paths
-        .filter(Files::isRegularFile)
-        .filter(p -> p.toString().endsWith(".java"))
-        .toList();
+  private Path cloneRepository(String url, boolean bare) {
+    Path repoDir = null;
+    try {
+      repoDir = GitUtils.cloneRepository(url, bare, cloneOptions(), out);
+      clonedRepoDir = repoDir;
+    } catch (IllegalArgumentException e) {
+      fail(e.getMessage());
+    }
+    return repoDir;
+  }
+
+  /**
+   * Only the extracted revision is needed, unless the history is walked by --base or --history
+   */
+  private CloneOptions cloneOptions() {
+    boolean needsHistory = baseRevision != null || historyRange != null;
+    int depth = cloneDepth != null ? cloneDepth : (needsHistory ? 0 : 1);
+    return new CloneOptions(depth, cloneRef, blobLimitBytes);
+  }
+
+  private PathFilter pathFilter() {
+    List<String> excludedGlobs = new ArrayList<>(defaultExcludes ? PathFilter.DEFAULT_EXCLUDES : List.of());
+    excludedGlobs.addAll(excludes);
+    PathFilter filter = null;
+    try {
+      List<String> includedGlobs = includes.isEmpty() ? PathFilter.DEFAULT_INCLUDES : includes;
+      filter = new PathFilter(includedGlobs, excludedGlobs, defaultExcludes, maxFileBytes);
+    } catch (IllegalArgumentException e) {
+      fail("Invalid glob: " + e.getMessage());
     }
-    return javaFiles;
+    return filter;
   }
 
-  private static void checkExtraArgs(String[] args) {
+  private void checkExtraArgs(String[] args) {
     int index = 3;
     while (index < args.length) {
       boolean expectsValue = checkArg(args, index);
@@ -120,57 +373,229 @@ public class App {
       }
       index++;
     }
-    //Default implementation is ECJ if no parameter is provided
-    if (functionExtractor == null) {
-      functionExtractor = new ECJFunctionExtractor();
-    }
-    if (parser == null) {
-      parser = new ECJParser();
+    if (!methodFilter.isEmpty() && "fast".equals(parserName)) {
+      fail("--filter needs a syntax tree, it cannot be used with --fast");
     }
+    //Default implementation is ECJ if no parameter is provided
+    functionExtractor = newExtractor(parserName, methodFilter);
+    parser = parsers.get(parserName);
   }
 
   /**
    * @return true if the argument expects a value
    */
-  private static boolean checkArg(String[] args, int idx) {
+  private boolean checkArg(String[] args, int idx) {
     if ("--ml".equals(args[idx])) {
       if (args.length > idx + 1) {
         parseMinLines(args[idx + 1]);
         return true;
       } else {
-        System.err.println("Missing value for --ml");
-        System.exit(1);
+        fail("Missing value for --ml");
+      }
+    } else if ("--filter".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        parseMethodFilter(args[idx + 1]);
+        return true;
+      } else {
+        fail("Missing value for --filter");
+      }
+    } else if ("--threads".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        parseThreads(args[idx + 1]);
+        return true;
+      } else {
+        fail("Missing value for --threads");
+      }
+    } else if ("--format".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        parseOutputFormat(args[idx + 1]);
+        return true;
+      } else {
+        fail("Missing value for --format");
+      }
+    } else if ("--write-buffer".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        writeBufferBytes = parseNonNegative("--write-buffer", args[idx + 1]) * 1024 * 1024;
+        return true;
+      } else {
+        fail("Missing value for --write-buffer");
+      }
+    } else if ("--gzip".equals(args[idx])) {
+      gzip = true;
+    } else if ("--dedup".equals(args[idx])) {
+      dedup = true;
+    } else if ("--clusters".equals(args[idx])) {
+      clusters = true;
+    } else if ("--clusters-memory".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        clustersMemoryMb = parseNonNegative("--clusters-memory", args[idx + 1]);
+        return true;
+      } else {
+        fail("Missing value for --clusters-memory");
+      }
+    } else if ("--cache".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        cacheDir = Path.of(args[idx + 1]);
+        return true;
+      } else {
+        fail("Missing value for --cache");
+      }
+    } else if ("--cache-size".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        parseCacheSize(args[idx + 1]);
+        return true;
+      } else {
+        fail("Missing value for --cache-size");
+      }
+    } else if ("--base".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        baseRevision = args[idx + 1];
+        return true;
+      } else {
+        fail("Missing value for --base");
+      }
+    } else if ("--head".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        newRevision = args[idx + 1];
+        return true;
+      } else {
+        fail("Missing value for --head");
+      }
+    } else if ("--history".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        historyRange = args[idx + 1];
+        return true;
+      } else {
+        fail("Missing value for --history");
+      }
+    } else if ("--depth".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        cloneDepth = (int) parseNonNegative("--depth", args[idx + 1]);
+        return true;
+      } else {
+        fail("Missing value for --depth");
+      }
+    } else if ("--ref".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        cloneRef = args[idx + 1];
+        return true;
+      } else {
+        fail("Missing value for --ref");
+      }
+    } else if ("--blob-limit".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        blobLimitBytes = parseNonNegative("--blob-limit", args[idx + 1]);
+        return true;
+      } else {
+        fail("Missing value for --blob-limit");
+      }
+    } else if ("--include".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        includes.add(args[idx + 1]);
+        return true;
+      } else {
+        fail("Missing value for --include");
+      }
+    } else if ("--exclude".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        excludes.add(args[idx + 1]);
+        return true;
+      } else {
+        fail("Missing value for --exclude");
+      }
+    } else if ("--no-default-excludes".equals(args[idx])) {
+      defaultExcludes = false;
+    } else if ("--max-file-size".equals(args[idx])) {
+      if (args.length > idx + 1) {
+        maxFileBytes = parseNonNegative("--max-file-size", args[idx + 1]);
+        return true;
+      } else {
+        fail("Missing value for --max-file-size");
       }
     } else if ("--ecj".equals(args[idx])) {
-      functionExtractor = new ECJFunctionExtractor();
-      parser = new ECJParser();
+      parserName = "ecj";
     } else if ("--ts".equals(args[idx])) {
-      functionExtractor = new TSitFunctionExtractor();
-      parser = new TSitParser();
+      parserName = "ts";
+    } else if ("--ts-query".equals(args[idx])) {
+      parserName = "ts-query";
+    } else if ("--fast".equals(args[idx])) {
+      parserName = "fast";
     } else if ("--oneline".equals(args[idx])) {
       oneLine = true;
     } else {
-      System.err.println("Unknown argument: " + args[idx]);
-      System.exit(1);
+      fail("Unknown argument: " + args[idx]);
     }
     return false;
   }
 
-  private static void parseMinLines(String arg) {
+  private void parseMinLines(String arg) {
     try {
       minLines = Integer.parseInt(arg);
     } catch (NumberFormatException e) {
-      System.err.println("Invalid value for --ml: " + arg);
-      System.exit(1);
+      fail("Invalid value for --ml: " + arg);
+    }
+  }
+
+  /**
+   * Several filters are combined: the methods must match all their terms
+   */
+  private void parseMethodFilter(String arg) {
+    try {
+      methodFilter = MethodFilter.parse(methodFilter.isEmpty() ? arg : (methodFilter + " " + arg));
+    } catch (IllegalArgumentException e) {
+      fail("Invalid value for --filter: " + e.getMessage());
+    }
+  }
+
+  private void parseThreads(String arg) {
+    try {
+      threads = Integer.parseInt(arg);
+    } catch (NumberFormatException e) {
+      fail("Invalid value for --threads: " + arg);
+    }
+    if (threads < 1) {
+      fail("Invalid value for --threads: " + arg);
+    }
+  }
+
+  private void parseOutputFormat(String arg) {
+    try {
+      outputFormat = OutputFormat.valueOf(arg.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      fail("Invalid value for --format: " + arg);
+    }
+  }
+
+  private void parseCacheSize(String arg) {
+    try {
+      cacheSizeMb = Long.parseLong(arg);
+    } catch (NumberFormatException e) {
+      fail("Invalid value for --cache-size: " + arg);
+    }
+    if (cacheSizeMb < 1) {
+      fail("Invalid value for --cache-size: " + arg);
+    }
+  }
+
+  private long parseNonNegative(String flag, String arg) {
+    long value = -1;
+    try {
+      value = Long.parseLong(arg);
+    } catch (NumberFormatException e) {
+      // Reported below
+    }
+    if (value < 0) {
+      fail("Invalid value for " + flag + ": " + arg);
     }
+    return value;
   }
 
-  private static void savePerformanceMetricsFile(PerformanceMetrics metrics, Path outputDir) {
+  private void savePerformanceMetricsFile(PerformanceMetrics metrics, Path outputDir) {
     Path metricsFile = outputDir.resolve("performance_metrics.txt");
     try {
       Files.writeString(metricsFile, metrics.toString(), StandardCharsets.UTF_8);
-      System.out.println("Performance metrics saved to " + metricsFile.toAbsolutePath());
-      System.out.println(metrics);
+      out.println("Performance metrics saved to " + metricsFile.toAbsolutePath());
+      out.println(metrics);
     } catch (IOException e) {
       System.err.println("Failed to save performance metrics: " + e.getMessage());
     }
@@ -0,0 +1,49 @@
+package org.sonarsource.java;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Training run of the class-data sharing archive the build writes next to the jar: the archive holds the classes
+ * loaded by this run, already parsed and verified, so the command line started with it loads them straight from
+ * memory mapped files.
+ * <p>Extracts a directory with each parser in turn, so that the classes of every parser end up in the archive. The
+ * outputs go to a temporary directory, deleted at the end.</p>
+ */
+public final class CdsTraining {
+
+  private CdsTraining() {
+  }
+
+  /**
+   * @param args the directory of .java files to extract
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: CdsTraining <directory of .java files>");
+      System.exit(1);
+    }
+    Path outputDir = Files.createTempDirectory("cds-training-");
+    // Only the loaded classes matter, not the metrics
+    var out = new PrintStream(OutputStream.nullOutputStream());
+    try {
+      for (String parserName : List.of("ecj", "ts", "ts-query", "fast")) {
+        String parserOutput = outputDir.resolve(parserName).toString();
+        new App(App.newParsers(), out, true).run(new String[] {"--local", args[0], parserOutput, "--" + parserName});
+      }
+    } finally {
+      try (Stream<Path> paths = Files.walk(outputDir)) {
+        for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+          Files.delete(path);
+        }
+      }
+    }
+  }
+
+}
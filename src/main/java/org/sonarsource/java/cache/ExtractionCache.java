@@ -0,0 +1,260 @@
+package org.sonarsource.java.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.sonarsource.java.extracting.FunctionInfo;
+
+/**
+ * On-disk cache of the methods extracted from a file, keyed by the SHA-256 of the file content and of the settings
+ * affecting the extraction (parser, minimum number of lines, oneline).
+ * <p>Entries are written to a temporary file and atomically moved in place, so several processes can share the
+ * same cache directory: a reader sees either a complete entry or no entry at all. Reading an entry refreshes its
+ * modification time, and once the cache grows beyond its maximum size the least recently used entries are evicted
+ * by a single process at a time. A damaged entry is deleted and counts as a miss.</p>
+ */
+public class ExtractionCache {
+
+  private static final int FORMAT_VERSION = 3;
+  private static final String ENTRY_SUFFIX = ".bin";
+  private static final String LOCK_FILE = "eviction.lock";
+  /**
+   * Eviction goes below the maximum size, so that it does not run again after every single write
+   */
+  private static final double EVICTION_TARGET_RATIO = 0.9;
+  /**
+   * Two string lengths and two offsets
+   */
+  private static final int MIN_FUNCTION_BYTES = 4 * Integer.BYTES;
+
+  private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  });
+
+  private final Path directory;
+  private final long maxSizeBytes;
+  private final byte[] settings;
+  private final AtomicLong sizeBytes = new AtomicLong();
+  /**
+   * Keys being written by this process, the same key always having the same methods
+   */
+  private final Set<String> keysBeingWritten = ConcurrentHashMap.newKeySet();
+
+  /**
+   * @param settings every setting affecting the extracted methods, entries written with other settings are not
+   *                 visible
+   */
+  public ExtractionCache(Path directory, long maxSizeBytes, String settings) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.maxSizeBytes = maxSizeBytes;
+    this.settings = ("v" + FORMAT_VERSION + "|" + settings).getBytes(StandardCharsets.UTF_8);
+    sizeBytes.set(entries().stream().mapToLong(Entry::size).sum());
+  }
+
+  public String key(String code) {
+    MessageDigest digest = DIGESTS.get();
+    digest.update(settings);
+    digest.update((byte) 0);
+    return HexFormat.of().formatHex(digest.digest(code.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * @param source the code the key was computed from: entries only hold the offsets of the methods in it
+   * @return the cached methods, or null if there is no entry for the key
+   */
+  public List<FunctionInfo> get(String key, String source) {
+    Path entry = entryPath(key);
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+      List<FunctionInfo> functions = readFunctions(in, source, Files.size(entry));
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+      return functions;
+    } catch (NoSuchFileException e) {
+      // Missing, or evicted in the meantime: the entry will be written again
+      return null;
+    } catch (IOException | RuntimeException e) {
+      // Truncated or damaged, e.g. lengths or offsets out of range
+      delete(entry);
+      return null;
+    }
+  }
+
+  private void delete(Path entry) {
+    try {
+      long size = Files.size(entry);
+      if (Files.deleteIfExists(entry)) {
+        sizeBytes.addAndGet(-size);
+      }
+    } catch (IOException e) {
+      // Already deleted, or replaced by the next put
+    }
+  }
+
+  public void put(String key, List<FunctionInfo> functions) {
+    if (!keysBeingWritten.add(key)) {
+      // Another thread is writing the same methods
+      return;
+    }
+    Path entry = entryPath(key);
+    try {
+      Files.createDirectories(entry.getParent());
+      Path tempFile = Files.createTempFile(entry.getParent(), key, ".tmp");
+      try {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+          writeFunctions(out, functions);
+        }
+        long size = Files.size(tempFile);
+        // An entry written in the meantime by another process is replaced, and already counted
+        long replacedSize = Files.exists(entry) ? Files.size(entry) : 0;
+        move(tempFile, entry);
+        if (sizeBytes.addAndGet(size - replacedSize) > maxSizeBytes) {
+          evict();
+        }
+      } finally {
+        Files.deleteIfExists(tempFile);
+      }
+    } catch (IOException e) {
+      // A failing cache must not fail the extraction
+      System.err.println("Unable to write cache entry " + entry + ": " + e.getMessage());
+    } finally {
+      keysBeingWritten.remove(key);
+    }
+  }
+
+  public long sizeBytes() {
+    return sizeBytes.get();
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Deletes the least recently used entries, unless another thread or process is already doing it
+   */
+  private synchronized void evict() throws IOException {
+    if (sizeBytes.get() <= maxSizeBytes) {
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      FileLock lock = channel.tryLock()) {
+      if (lock == null) {
+        return;
+      }
+      List<Entry> entries = new ArrayList<>(entries());
+      entries.sort(Comparator.comparing(Entry::lastModified));
+      long size = entries.stream().mapToLong(Entry::size).sum();
+      long target = (long) (maxSizeBytes * EVICTION_TARGET_RATIO);
+      for (Entry entry : entries) {
+        if (size <= target) {
+          break;
+        }
+        Files.deleteIfExists(entry.path());
+        size -= entry.size();
+      }
+      sizeBytes.set(size);
+    }
+  }
+
+  private record Entry(Path path, long size, FileTime lastModified) {
+  }
+
+  private List<Entry> entries() throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    try (Stream<Path> paths = Files.walk(directory, 2)) {
+      for (Path path : paths.filter(p -> p.toString().endsWith(ENTRY_SUFFIX)).toList()) {
+        try {
+          BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+          entries.add(new Entry(path, attributes.size(), attributes.lastModifiedTime()));
+        } catch (NoSuchFileException e) {
+          // Evicted by another process in the meantime
+        }
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return entries;
+  }
+
+  private Path entryPath(String key) {
+    return directory.resolve(key.substring(0, 2)).resolve(key.substring(2) + ENTRY_SUFFIX);
+  }
+
+  private static void writeFunctions(DataOutputStream out, List<FunctionInfo> functions) throws IOException {
+    out.writeInt(functions.size());
+    for (FunctionInfo function : functions) {
+      writeString(out, function.name());
+      writeString(out, function.normalizedContent());
+      out.writeInt(function.startOffset());
+      out.writeInt(function.endOffset());
+    }
+  }
+
+  /**
+   * @param entrySize bounds the counts and lengths read, which are wrong in a damaged entry
+   */
+  private static List<FunctionInfo> readFunctions(DataInputStream in, String source, long entrySize)
+    throws IOException {
+    int count = checkLength(in.readInt(), entrySize / MIN_FUNCTION_BYTES);
+    List<FunctionInfo> functions = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      functions.add(new FunctionInfo(readString(in, entrySize), source, readString(in, entrySize), in.readInt(),
+        in.readInt()));
+    }
+    return functions;
+  }
+
+  private static int checkLength(int length, long max) throws IOException {
+    if (length < 0 || length > max) {
+      throw new IOException("Damaged cache entry, invalid length " + length);
+    }
+    return length;
+  }
+
+  /**
+   * Unlike {@link DataOutputStream#writeUTF}, not limited to 64 KB
+   */
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in, long entrySize) throws IOException {
+    byte[] bytes = new byte[checkLength(in.readInt(), entrySize)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,288 @@
+package org.sonarsource.java.daemon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sonarsource.java.App;
+import org.sonarsource.java.extracting.MethodFilter;
+import org.sonarsource.java.parsing.AstResult;
+import org.sonarsource.java.parsing.IParser;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Long-running extraction server: jobs skip the JVM startup, the loading of the parsers and of the Tree-sitter native
+ * library, and run on code already compiled by the JIT.
+ * <p>Listens on the loopback interface only. A job is posted to {@code /jobs}, with the arguments of a command line
+ * run as body, one per line. Paths are resolved against the working directory of the daemon. The response comes once
+ * the job is done: 200 with the output of the run, ending with its performance metrics, 400 for invalid arguments,
+ * 500 when the extraction or the clone of a remote repository failed. Up to {@code maxJobs} jobs run at the same
+ * time, the others wait for their turn.
+ * {@code GET /jobs} lists the running and waiting jobs.</p>
+ * <p>Any web page may send requests to the loopback interface: requests carrying an {@code Origin} header, sent by
+ * browsers, or a {@code Host} other than the loopback one, as with DNS rebinding, get 403. Every request must also send
+ * the random token of the daemon in the {@value #TOKEN_HEADER} header, written at startup to a file only readable by
+ * its user, see {@link #tokenFile()}.</p>
+ */
+public class ExtractionDaemon implements AutoCloseable {
+
+  public static final int DEFAULT_PORT = 7654;
+  public static final int DEFAULT_MAX_JOBS = 2;
+  public static final String TOKEN_HEADER = "X-Extractor-Token";
+  public static final Path DEFAULT_TOKEN_DIRECTORY = Path.of(System.getProperty("user.home"), ".java-method-extractor");
+
+  private static final Set<String> LOOPBACK_HOSTS = Set.of("127.0.0.1", "localhost", "[::1]");
+
+  private static final String WARM_UP_SOURCE = """
+    class WarmUp {
+      // comment
+      int m(int x) {
+        return x + 1;
+      }
+    }
+    """;
+
+  private final Map<String, IParser> parsers = App.newParsers();
+  private final Semaphore jobSlots;
+  private final AtomicLong lastJobId = new AtomicLong();
+  private final Map<Long, Job> jobs = new ConcurrentSkipListMap<>();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final HttpServer server;
+  private final byte[] token;
+  private final Path tokenFile;
+
+  private static final class Job {
+
+    private final long id;
+    private final List<String> args;
+    private final long submittedNanos = System.nanoTime();
+    private volatile long startedNanos = -1;
+
+    Job(long id, List<String> args) {
+      this.id = id;
+      this.args = args;
+    }
+
+    @Override
+    public String toString() {
+      long now = System.nanoTime();
+      String state = startedNanos < 0 ? "waiting" : "running";
+      long since = startedNanos < 0 ? submittedNanos : startedNanos;
+      return "%d\t%s\t%d ms\t%s".formatted(id, state, (now - since) / 1_000_000, String.join(" ", args));
+    }
+  }
+
+  /**
+   * @param port           0 for any free port, see {@link #port()}
+   * @param maxJobs        number of jobs running at the same time
+   * @param tokenDirectory where the token file is written, created if missing
+   */
+  public ExtractionDaemon(int port, int maxJobs, Path tokenDirectory) throws IOException {
+    this.jobSlots = new Semaphore(maxJobs, true);
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/jobs", this::handle);
+    server.setExecutor(executor);
+    byte[] randomBytes = new byte[32];
+    new SecureRandom().nextBytes(randomBytes);
+    String hexToken = HexFormat.of().formatHex(randomBytes);
+    this.token = hexToken.getBytes(StandardCharsets.US_ASCII);
+    this.tokenFile = tokenDirectory.resolve("daemon-" + port() + ".token");
+    writeUserOnly(tokenFile, hexToken);
+  }
+
+  /**
+   * Replaces any file left by a previous daemon, whose permissions could be wider
+   */
+  private static void writeUserOnly(Path file, String content) throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.deleteIfExists(file);
+    if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    } else {
+      Files.createFile(file);
+    }
+    Files.writeString(file, content);
+  }
+
+  /**
+   * Warms the parsers up before accepting jobs
+   */
+  public void start() {
+    warmUp();
+    server.start();
+  }
+
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * @return the file holding the token to send in the {@value #TOKEN_HEADER} header, deleted on {@link #close()}
+   */
+  public Path tokenFile() {
+    return tokenFile;
+  }
+
+  /**
+   * Loads the parser and extractor classes and the Tree-sitter native library, so that the first job does not pay for
+   * it. The JIT compiles the hot code along the first jobs.
+   */
+  private void warmUp() {
+    var metrics = new PerformanceMetrics();
+    for (String parserName : List.of("ecj", "ts", "ts-query", "fast")) {
+      AstResult ast = parsers.get(parserName).parse("WarmUp.java", WARM_UP_SOURCE, metrics);
+      App.newExtractor(parserName, MethodFilter.ACCEPT_ALL).extract(ast, WARM_UP_SOURCE, 0, false, metrics);
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      String rejection = rejection(exchange);
+      if (rejection != null) {
+        respond(exchange, 403, rejection + "\n");
+        return;
+      }
+      switch (exchange.getRequestMethod()) {
+        case "POST" -> runJob(exchange);
+        case "GET" -> respond(exchange, 200, String.join("", jobs.values().stream().map(job -> job + "\n").toList()));
+        default -> respond(exchange, 405, "POST a job to run it, GET to list the jobs\n");
+      }
+    }
+  }
+
+  /**
+   * @return why the request is refused, null when it is accepted
+   */
+  private String rejection(HttpExchange exchange) {
+    var headers = exchange.getRequestHeaders();
+    if (headers.containsKey("Origin")) {
+      return "Requests from web pages are not accepted";
+    }
+    String host = headers.getFirst("Host");
+    if (host == null || !LOOPBACK_HOSTS.contains(host.replaceFirst(":\\d+$", ""))) {
+      return "Only requests to 127.0.0.1 or localhost are accepted";
+    }
+    String requestToken = headers.getFirst(TOKEN_HEADER);
+    if (requestToken == null || !MessageDigest.isEqual(token, requestToken.getBytes(StandardCharsets.US_ASCII))) {
+      return "Missing or wrong " + TOKEN_HEADER + " header, see " + tokenFile;
+    }
+    return null;
+  }
+
+  private void runJob(HttpExchange exchange) throws IOException {
+    String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    var job = new Job(lastJobId.incrementAndGet(), body.lines().filter(line -> !line.isEmpty()).toList());
+    exchange.getResponseHeaders().set("X-Job-Id", Long.toString(job.id));
+    jobs.put(job.id, job);
+    try {
+      jobSlots.acquire();
+      try {
+        job.startedNanos = System.nanoTime();
+        var output = new ByteArrayOutputStream();
+        try (var out = new PrintStream(output, true, StandardCharsets.UTF_8)) {
+          new App(parsers, out, false).run(job.args.toArray(String[]::new));
+        }
+        respond(exchange, 200, output.toString(StandardCharsets.UTF_8));
+      } finally {
+        jobSlots.release();
+      }
+    } catch (IllegalArgumentException e) {
+      respond(exchange, 400, e.getMessage() + "\n");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      respond(exchange, 503, "Daemon stopping\n");
+    } catch (IOException | RuntimeException e) {
+      respond(exchange, 500, "Job failed: " + e + "\n");
+    } finally {
+      jobs.remove(job.id);
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+    if (bytes.length > 0) {
+      exchange.getResponseBody().write(bytes);
+    }
+  }
+
+  /**
+   * Stops accepting jobs, interrupting the running ones
+   */
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+    try {
+      Files.deleteIfExists(tokenFile);
+    } catch (IOException e) {
+      // Useless once the daemon is stopped, the next daemon on this port replaces it anyway
+    }
+  }
+
+  /**
+   * @param args <p>--port <port> to listen on, 0 for any free port (default: 7654)</p>
+   *             <p>--jobs <count> number of jobs running at the same time (default: 2)</p>
+   *             <p>--token-dir <directory> where the token file is written (default: ~/.java-method-extractor)</p>
+   */
+  public static void main(String[] args) throws IOException {
+    int port = DEFAULT_PORT;
+    int maxJobs = DEFAULT_MAX_JOBS;
+    Path tokenDirectory = DEFAULT_TOKEN_DIRECTORY;
+    for (int i = 0; i < args.length; i += 2) {
+      if (i + 1 >= args.length) {
+        System.err.println("Missing value for " + args[i]);
+        System.exit(1);
+      }
+      if ("--port".equals(args[i])) {
+        port = parsePositive(args[i], args[i + 1], 0);
+      } else if ("--jobs".equals(args[i])) {
+        maxJobs = parsePositive(args[i], args[i + 1], 1);
+      } else if ("--token-dir".equals(args[i])) {
+        tokenDirectory = Path.of(args[i + 1]);
+      } else {
+        System.err.println("Unknown argument: " + args[i]);
+        System.exit(1);
+      }
+    }
+    var daemon = new ExtractionDaemon(port, maxJobs, tokenDirectory);
+    daemon.start();
+    Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+    System.out.println("Extraction daemon listening on http://127.0.0.1:" + daemon.port() + "/jobs, token in "
+      + daemon.tokenFile() + ", running up to " + maxJobs + " jobs at a time");
+  }
+
+  private static int parsePositive(String flag, String arg, int min) {
+    int value = min - 1;
+    try {
+      value = Integer.parseInt(arg);
+    } catch (NumberFormatException e) {
+      // Reported below
+    }
+    if (value < min) {
+      System.err.println("Invalid value for " + flag + ": " + arg);
+      System.exit(1);
+    }
+    return value;
+  }
+
+}
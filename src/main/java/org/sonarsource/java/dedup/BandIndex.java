@@ -0,0 +1,155 @@
+package org.sonarsource.java.dedup;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Thread-safe map from LSH band keys to cluster ids, stored in open-addressing tables allocated off-heap.
+ * <p>Each entry takes 12 bytes, at most twice over, and the tables never grow beyond the given size: once full, new
+ * keys are dropped, so that the methods seen afterwards can only join the clusters already indexed.</p>
+ */
+class BandIndex {
+
+  static final int NOT_FOUND = -1;
+
+  private static final int SEGMENT_BITS = 6;
+  private static final int SLOT_BYTES = 12;
+  private static final int INITIAL_SLOTS = 1 << 10;
+  private static final double MAX_LOAD = 0.5;
+
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+  /**
+   * @param maxBytes off-heap memory the tables can use
+   */
+  BandIndex(long maxBytes) {
+    long maxSlots = Long.highestOneBit(Math.max(maxBytes / segments.length / SLOT_BYTES, INITIAL_SLOTS));
+    // A direct buffer is indexed by an int
+    int segmentMaxSlots = (int) Math.min(maxSlots, Integer.highestOneBit(Integer.MAX_VALUE / SLOT_BYTES));
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment(segmentMaxSlots);
+    }
+  }
+
+  int get(long key) {
+    key = nonZero(key);
+    return segment(key).get(key);
+  }
+
+  /**
+   * @return the cluster id already mapped to the key, or {@link #NOT_FOUND} if the given one was mapped, or dropped
+   * because the index is full
+   */
+  int putIfAbsent(long key, int clusterId) {
+    key = nonZero(key);
+    return segment(key).putIfAbsent(key, clusterId);
+  }
+
+  long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  long droppedCount() {
+    long dropped = 0;
+    for (Segment segment : segments) {
+      dropped += segment.dropped();
+    }
+    return dropped;
+  }
+
+  private Segment segment(long key) {
+    return segments[(int) (key >>> (Long.SIZE - SEGMENT_BITS))];
+  }
+
+  /**
+   * Zero marks the empty slots
+   */
+  private static long nonZero(long key) {
+    return key == 0 ? 1 : key;
+  }
+
+  private static final class Segment {
+
+    private final int maxSlots;
+    private ByteBuffer table = ByteBuffer.allocateDirect(INITIAL_SLOTS * SLOT_BYTES);
+    private int slots = INITIAL_SLOTS;
+    private int size = 0;
+    private long dropped = 0;
+
+    Segment(int maxSlots) {
+      this.maxSlots = maxSlots;
+    }
+
+    synchronized int get(long key) {
+      int slot = find(table, slots, key);
+      return table.getLong(slot * SLOT_BYTES) == 0 ? NOT_FOUND : table.getInt(slot * SLOT_BYTES + 8);
+    }
+
+    synchronized int putIfAbsent(long key, int clusterId) {
+      if (size >= slots * MAX_LOAD) {
+        if (slots == maxSlots) {
+          int slot = find(table, slots, key);
+          if (table.getLong(slot * SLOT_BYTES) == 0) {
+            dropped++;
+            return NOT_FOUND;
+          }
+          return table.getInt(slot * SLOT_BYTES + 8);
+        }
+        grow();
+      }
+      int offset = find(table, slots, key) * SLOT_BYTES;
+      if (table.getLong(offset) != 0) {
+        return table.getInt(offset + 8);
+      }
+      table.putLong(offset, key);
+      table.putInt(offset + 8, clusterId);
+      size++;
+      return NOT_FOUND;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    synchronized long dropped() {
+      return dropped;
+    }
+
+    private void grow() {
+      int newSlots = slots * 2;
+      ByteBuffer newTable = ByteBuffer.allocateDirect(newSlots * SLOT_BYTES);
+      for (int slot = 0; slot < slots; slot++) {
+        long key = table.getLong(slot * SLOT_BYTES);
+        if (key != 0) {
+          int offset = find(newTable, newSlots, key) * SLOT_BYTES;
+          newTable.putLong(offset, key);
+          newTable.putInt(offset + 8, table.getInt(slot * SLOT_BYTES + 8));
+        }
+      }
+      // The old table is freed once its buffer is collected
+      table = newTable;
+      slots = newSlots;
+    }
+
+    /**
+     * Linear probing, starting from the low bits: the high ones already picked the segment
+     *
+     * @return the slot holding the key, or the empty slot where it belongs
+     */
+    private static int find(ByteBuffer table, int slots, long key) {
+      int mask = slots - 1;
+      int slot = (int) key & mask;
+      while (true) {
+        long slotKey = table.getLong(slot * SLOT_BYTES);
+        if (slotKey == 0 || slotKey == key) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+  }
+
+}
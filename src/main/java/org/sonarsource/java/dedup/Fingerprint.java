@@ -0,0 +1,78 @@
+package org.sonarsource.java.dedup;
+
+/**
+ * 128-bit fingerprint of a text, with the MurmurHash3 x64 128 mixing applied directly to its UTF-16 chars, so that
+ * no byte array needs to be encoded first.
+ * <p>With 128 bits, the odds of two different methods colliding stay negligible even over billions of methods.</p>
+ */
+public record Fingerprint(long high, long low) {
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  public static Fingerprint of(CharSequence text) {
+    int length = text.length();
+    long h1 = 0;
+    long h2 = 0;
+    int i = 0;
+    // 8 chars, i.e. 16 bytes, per block
+    for (; i + 8 <= length; i += 8) {
+      long k1 = pack(text, i, 4);
+      long k2 = pack(text, i + 4, 4);
+      h1 ^= mixK1(k1);
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+      h2 ^= mixK2(k2);
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+    int tail = length - i;
+    if (tail > 4) {
+      h2 ^= mixK2(pack(text, i + 4, tail - 4));
+    }
+    if (tail > 0) {
+      h1 ^= mixK1(pack(text, i, Math.min(tail, 4)));
+    }
+    h1 ^= 2L * length;
+    h2 ^= 2L * length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix(h1);
+    h2 = fmix(h2);
+    h1 += h2;
+    h2 += h1;
+    return new Fingerprint(h1, h2);
+  }
+
+  private static long pack(CharSequence text, int start, int count) {
+    long k = 0;
+    for (int j = 0; j < count; j++) {
+      k |= (long) text.charAt(start + j) << (16 * j);
+    }
+    return k;
+  }
+
+  private static long mixK1(long k1) {
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    return k1 * C2;
+  }
+
+  private static long mixK2(long k2) {
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    return k2 * C1;
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+}
@@ -0,0 +1,129 @@
+package org.sonarsource.java.dedup;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Thread-safe set of {@link Fingerprint}s, stored as pairs of longs in open-addressing tables allocated off-heap.
+ * <p>Each fingerprint takes 16 bytes at most twice over, with no object per entry: hundreds of millions of entries
+ * fit in a few GB that the garbage collector never scans. The set is split into segments, each one with its own
+ * lock and table, so that threads adding fingerprints at the same time rarely wait for each other, and a resize
+ * only copies a single segment.</p>
+ */
+public class FingerprintSet {
+
+  private static final int SEGMENT_BITS = 6;
+  private static final int SLOT_BYTES = 16;
+  private static final int INITIAL_SLOTS = 1 << 10;
+  /**
+   * A direct buffer is indexed by an int
+   */
+  private static final int MAX_SLOTS = Integer.highestOneBit(Integer.MAX_VALUE / SLOT_BYTES);
+  private static final double MAX_LOAD = 0.5;
+
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+  public FingerprintSet() {
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  /**
+   * @return true if the fingerprint was not in the set yet
+   */
+  public boolean add(Fingerprint fingerprint) {
+    long high = fingerprint.high();
+    long low = fingerprint.low();
+    if (high == 0 && low == 0) {
+      // Zero marks the empty slots
+      low = 1;
+    }
+    return segments[(int) (high >>> (Long.SIZE - SEGMENT_BITS))].add(high, low);
+  }
+
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return the off-heap memory held by the tables
+   */
+  public long capacityBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += segment.capacityBytes();
+    }
+    return bytes;
+  }
+
+  private static final class Segment {
+
+    private ByteBuffer table = ByteBuffer.allocateDirect(INITIAL_SLOTS * SLOT_BYTES);
+    private int slots = INITIAL_SLOTS;
+    private int size = 0;
+
+    synchronized boolean add(long high, long low) {
+      if (size >= slots * MAX_LOAD) {
+        grow();
+      }
+      if (insert(table, slots, high, low)) {
+        size++;
+        return true;
+      }
+      return false;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    synchronized long capacityBytes() {
+      return (long) slots * SLOT_BYTES;
+    }
+
+    private void grow() {
+      if (slots == MAX_SLOTS) {
+        throw new IllegalStateException("Fingerprint set is full");
+      }
+      int newSlots = slots * 2;
+      ByteBuffer newTable = ByteBuffer.allocateDirect(newSlots * SLOT_BYTES);
+      for (int slot = 0; slot < slots; slot++) {
+        long high = table.getLong(slot * SLOT_BYTES);
+        long low = table.getLong(slot * SLOT_BYTES + 8);
+        if (high != 0 || low != 0) {
+          insert(newTable, newSlots, high, low);
+        }
+      }
+      // The old table is freed once its buffer is collected
+      table = newTable;
+      slots = newSlots;
+    }
+
+    /**
+     * Linear probing, starting from the low bits: the high ones already picked the segment
+     */
+    private static boolean insert(ByteBuffer table, int slots, long high, long low) {
+      int mask = slots - 1;
+      int slot = (int) low & mask;
+      while (true) {
+        int offset = slot * SLOT_BYTES;
+        long slotHigh = table.getLong(offset);
+        long slotLow = table.getLong(offset + 8);
+        if (slotHigh == 0 && slotLow == 0) {
+          table.putLong(offset, high);
+          table.putLong(offset + 8, low);
+          return true;
+        }
+        if (slotHigh == high && slotLow == low) {
+          return false;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,48 @@
+package org.sonarsource.java.dedup;
+
+import java.util.List;
+import org.sonarsource.java.extracting.FunctionInfo;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Drops the methods whose normalized content was already seen during the run, keeping only the first one.
+ * <p>One instance is shared by a whole run. Only the fingerprint of each method is kept in memory. The fingerprints
+ * can be computed by any thread with {@link #fingerprints(List)}, but they are looked up by a single thread in the
+ * order of the methods, so that the copy kept does not depend on the timing of the threads.</p>
+ */
+public class MethodDeduplicator {
+
+  private final FingerprintSet fingerprints = new FingerprintSet();
+
+  /**
+   * @return the fingerprint of each method, to look up later with {@link #firstSeen(Fingerprint[], PerformanceMetrics)}
+   */
+  public static Fingerprint[] fingerprints(List<FunctionInfo> functions) {
+    Fingerprint[] fingerprints = new Fingerprint[functions.size()];
+    for (int i = 0; i < fingerprints.length; i++) {
+      fingerprints[i] = Fingerprint.of(functions.get(i).normalizedContent());
+    }
+    return fingerprints;
+  }
+
+  /**
+   * Not thread-safe: the methods seen first are the ones kept
+   *
+   * @param methodFingerprints the {@link #fingerprints(List)} of the methods
+   * @return for each method, whether it was seen for the first time
+   */
+  public boolean[] firstSeen(Fingerprint[] methodFingerprints, PerformanceMetrics metrics) {
+    boolean[] firstSeen = new boolean[methodFingerprints.length];
+    int unique = 0;
+    for (int i = 0; i < firstSeen.length; i++) {
+      firstSeen[i] = fingerprints.add(methodFingerprints[i]);
+      if (firstSeen[i]) {
+        unique++;
+      }
+    }
+    metrics.recordUniqueMethods(unique);
+    metrics.recordDuplicateMethods(firstSeen.length - unique);
+    return firstSeen;
+  }
+
+}
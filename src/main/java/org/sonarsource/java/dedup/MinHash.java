@@ -0,0 +1,203 @@
+package org.sonarsource.java.dedup;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MinHash signatures of normalized methods, estimating how similar two methods are without comparing them.
+ * <p>Methods are split into tokens where identifiers and literals are all replaced by the same placeholder, so that
+ * methods differing only by their names or constants get the same tokens. The signature holds {@link #NUM_HASHES}
+ * values computed from the hashes of the method's shingles of {@link #SHINGLE_TOKENS} tokens: the fraction of equal
+ * values between two signatures estimates the Jaccard similarity of their shingles.</p>
+ * <p>Rather than computing {@link #NUM_HASHES} hashes per shingle, each shingle is hashed once (one permutation
+ * hashing): the top bits of the hash pick one of {@link #NUM_HASHES} bins, each keeping its minimum hash. Bins left
+ * empty, by methods with few shingles, borrow the value of the next non-empty bin (densification).</p>
+ */
+public final class MinHash {
+
+  /**
+   * Also the number of bits of a long, tracking the empty bins
+   */
+  public static final int NUM_HASHES = 64;
+  static final int SHINGLE_TOKENS = 5;
+
+  private static final long IDENTIFIER = 0x49444e54L;
+  private static final long LITERAL = 0x4c49544cL;
+  private static final int MAX_KEYWORD_LENGTH = "synchronized".length();
+  private static final List<String> KEYWORDS = List.of("abstract", "assert", "boolean", "break", "byte", "case",
+    "catch", "char", "class", "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally",
+    "float", "for", "if", "implements", "import", "instanceof", "int", "interface", "long", "new", "package",
+    "private", "protected", "public", "return", "short", "static", "super", "switch", "synchronized", "this",
+    "throw", "throws", "try", "var", "void", "volatile", "while", "yield", "record");
+  private static final List<String> LITERALS = List.of("true", "false", "null");
+  /**
+   * Keywords and word literals by {@link String#hashCode()}, looked up without creating a string for each word
+   */
+  private static final String[] WORDS = new String[128];
+  private static final long[] WORD_TOKENS = new long[WORDS.length];
+
+  private static final int BIN_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(NUM_HASHES);
+  private static final long EMPTY = Long.MAX_VALUE;
+  /**
+   * Added per bin skipped when an empty bin borrows the value of a following one
+   */
+  private static final long DENSIFICATION_OFFSET = 0x9e3779b97f4a7c15L;
+
+  static {
+    for (String keyword : KEYWORDS) {
+      addWord(keyword, keyword.hashCode());
+    }
+    for (String literal : LITERALS) {
+      addWord(literal, LITERAL);
+    }
+  }
+
+  private static void addWord(String word, long token) {
+    int slot = word.hashCode() & (WORDS.length - 1);
+    while (WORDS[slot] != null) {
+      slot = (slot + 1) & (WORDS.length - 1);
+    }
+    WORDS[slot] = word;
+    WORD_TOKENS[slot] = token;
+  }
+
+  private MinHash() {
+    // Prevent instantiation
+  }
+
+  public static long[] signature(CharSequence code) {
+    long[] signature = new long[NUM_HASHES];
+    Arrays.fill(signature, EMPTY);
+    long[] window = new long[SHINGLE_TOKENS];
+    int tokenCount = 0;
+    int length = code.length();
+    int i = 0;
+    while (i < length) {
+      char c = code.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+        continue;
+      }
+      long token;
+      int end = i + 1;
+      if (Character.isJavaIdentifierStart(c)) {
+        while (end < length && Character.isJavaIdentifierPart(code.charAt(end))) {
+          end++;
+        }
+        token = wordToken(code, i, end);
+      } else if (Character.isDigit(c)) {
+        // Also swallows the decimal point, exponent and suffix of the number
+        while (end < length && (Character.isLetterOrDigit(code.charAt(end)) || code.charAt(end) == '.')) {
+          end++;
+        }
+        token = LITERAL;
+      } else if (c == '"' || c == '\'') {
+        end = endOfQuoted(code, i, c);
+        token = LITERAL;
+      } else {
+        token = c;
+      }
+      i = end;
+      window[tokenCount % SHINGLE_TOKENS] = token;
+      tokenCount++;
+      if (tokenCount >= SHINGLE_TOKENS) {
+        update(signature, shingle(window, tokenCount));
+      }
+    }
+    if (tokenCount > 0 && tokenCount < SHINGLE_TOKENS) {
+      update(signature, shingle(window, tokenCount));
+    }
+    densify(signature);
+    return signature;
+  }
+
+  private static long wordToken(CharSequence code, int start, int end) {
+    if (end - start > MAX_KEYWORD_LENGTH) {
+      return IDENTIFIER;
+    }
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + code.charAt(i);
+    }
+    for (int slot = hash & (WORDS.length - 1); WORDS[slot] != null; slot = (slot + 1) & (WORDS.length - 1)) {
+      if (matches(WORDS[slot], code, start, end)) {
+        return WORD_TOKENS[slot];
+      }
+    }
+    return IDENTIFIER;
+  }
+
+  private static boolean matches(String word, CharSequence code, int start, int end) {
+    if (word.length() != end - start) {
+      return false;
+    }
+    for (int i = 0; i < word.length(); i++) {
+      if (word.charAt(i) != code.charAt(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int endOfQuoted(CharSequence code, int start, char quote) {
+    int end = start + 1;
+    while (end < code.length()) {
+      char c = code.charAt(end++);
+      if (c == '\\') {
+        end++;
+      } else if (c == quote) {
+        break;
+      }
+    }
+    return Math.min(end, code.length());
+  }
+
+  /**
+   * @param window the last tokens, in a ring buffer
+   */
+  private static long shingle(long[] window, int tokenCount) {
+    int size = Math.min(tokenCount, SHINGLE_TOKENS);
+    long h = 0;
+    for (int k = 0; k < size; k++) {
+      h = h * 0x100000001b3L + window[(tokenCount - size + k) % SHINGLE_TOKENS];
+    }
+    return fmix(h);
+  }
+
+  private static void update(long[] signature, long shingle) {
+    int bin = (int) (shingle >>> BIN_SHIFT);
+    if (shingle < signature[bin]) {
+      signature[bin] = shingle;
+    }
+  }
+
+  private static void densify(long[] signature) {
+    // One bit per bin
+    long filled = 0;
+    for (int bin = 0; bin < NUM_HASHES; bin++) {
+      if (signature[bin] != EMPTY) {
+        filled |= 1L << bin;
+      }
+    }
+    if (filled == 0 || filled == -1L) {
+      // No token at all, or nothing to borrow
+      return;
+    }
+    for (int bin = 0; bin < NUM_HASHES; bin++) {
+      if ((filled & (1L << bin)) == 0) {
+        int distance = Long.numberOfTrailingZeros(Long.rotateRight(filled, bin));
+        signature[bin] = signature[(bin + distance) % NUM_HASHES] + distance * DENSIFICATION_OFFSET;
+      }
+    }
+  }
+
+  static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+}
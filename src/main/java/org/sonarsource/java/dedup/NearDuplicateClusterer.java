@@ -0,0 +1,109 @@
+package org.sonarsource.java.dedup;
+
+import java.util.List;
+import org.sonarsource.java.extracting.FunctionInfo;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Groups near-duplicate methods, e.g. differing only by their identifiers or literals, into clusters, as they are
+ * extracted.
+ * <p>The {@link MinHash} signature of each method is split into {@link #BANDS} bands of {@link #ROWS} values
+ * (locality-sensitive hashing): two methods sharing a band are almost certainly similar, with a probability that
+ * rises steeply around a Jaccard similarity of {@code (1 / BANDS) ^ (1 / ROWS)}, i.e. 0.77. A method joins the cluster
+ * of the first band it shares with a method seen before, otherwise it starts a new cluster and indexes its bands.
+ * Only the bands of the first method of each cluster are kept, in a bounded {@link BandIndex}.</p>
+ * <p>One instance is shared by a whole run. The signatures of the methods, which take most of the time, can be computed
+ * by any thread with {@link #bandKeys(List)}, but the clusters are assigned by a single thread in the order of the
+ * methods, so that they do not depend on the timing of the threads.</p>
+ */
+public class NearDuplicateClusterer {
+
+  static final int BANDS = 8;
+  static final int ROWS = MinHash.NUM_HASHES / BANDS;
+
+  private final BandIndex index;
+  private int nextClusterId = 0;
+
+  /**
+   * @param maxIndexBytes off-heap memory of the band index; once full, new clusters can't be joined any more
+   */
+  public NearDuplicateClusterer(long maxIndexBytes) {
+    index = new BandIndex(maxIndexBytes);
+  }
+
+  /**
+   * @return the cluster id of each method, in the same order
+   */
+  public int[] assign(List<FunctionInfo> functions, PerformanceMetrics metrics) {
+    return assign(bandKeys(functions), metrics);
+  }
+
+  /**
+   * @return the band keys of each method, to {@link #assign(long[][], PerformanceMetrics)} later
+   */
+  public static long[][] bandKeys(List<FunctionInfo> functions) {
+    long[][] keys = new long[functions.size()][];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = bandKeys(MinHash.signature(functions.get(i).normalizedContent()));
+    }
+    return keys;
+  }
+
+  /**
+   * Not thread-safe: the methods seen first start the clusters
+   *
+   * @param bandKeys the {@link #bandKeys(List)} of the methods
+   * @return the cluster id of each method, in the same order
+   */
+  public int[] assign(long[][] bandKeys, PerformanceMetrics metrics) {
+    int[] clusterIds = new int[bandKeys.length];
+    int joined = 0;
+    for (int i = 0; i < clusterIds.length; i++) {
+      long[] keys = bandKeys[i];
+      int clusterId = find(keys);
+      if (clusterId == BandIndex.NOT_FOUND) {
+        clusterId = create(keys);
+      } else {
+        joined++;
+      }
+      clusterIds[i] = clusterId;
+    }
+    metrics.recordClusteredMethods(clusterIds.length, joined);
+    return clusterIds;
+  }
+
+  public long droppedBandCount() {
+    return index.droppedCount();
+  }
+
+  private int find(long[] keys) {
+    for (long key : keys) {
+      int clusterId = index.get(key);
+      if (clusterId != BandIndex.NOT_FOUND) {
+        return clusterId;
+      }
+    }
+    return BandIndex.NOT_FOUND;
+  }
+
+  private int create(long[] keys) {
+    int clusterId = nextClusterId++;
+    for (long key : keys) {
+      index.putIfAbsent(key, clusterId);
+    }
+    return clusterId;
+  }
+
+  static long[] bandKeys(long[] signature) {
+    long[] keys = new long[BANDS];
+    for (int band = 0; band < BANDS; band++) {
+      long h = band;
+      for (int row = 0; row < ROWS; row++) {
+        h = h * 0x100000001b3L + signature[band * ROWS + row];
+      }
+      keys[band] = MinHash.fmix(h);
+    }
+    return keys;
+  }
+
+}
@@ -0,0 +1,33 @@
+package org.sonarsource.java.events;
+
+import java.nio.file.Path;
+
+/**
+ * File being extracted by the current thread, so that the events of the parsers, extractors and normalizer can tell
+ * which file they belong to without it being passed down to them.
+ */
+public final class EventContext {
+
+  private static final ThreadLocal<Path> CURRENT_FILE = new ThreadLocal<>();
+
+  private EventContext() {
+    // Prevent instantiation
+  }
+
+  public static void enterFile(Path file) {
+    CURRENT_FILE.set(file);
+  }
+
+  public static void exitFile() {
+    CURRENT_FILE.remove();
+  }
+
+  /**
+   * @return the file being extracted by the current thread, or null outside of {@link #enterFile}/{@link #exitFile}
+   */
+  static String currentFile() {
+    Path file = CURRENT_FILE.get();
+    return file == null ? null : file.toString();
+  }
+
+}
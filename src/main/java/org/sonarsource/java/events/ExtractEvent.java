@@ -0,0 +1,11 @@
+package org.sonarsource.java.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.sonarsource.java.Extract")
+@Label("Extract")
+@Description("Extraction of the methods of a parsed file, normalization included")
+public final class ExtractEvent extends ExtractorEvent {
+}
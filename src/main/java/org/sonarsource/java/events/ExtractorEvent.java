@@ -0,0 +1,83 @@
+package org.sonarsource.java.events;
+
+import java.nio.file.Path;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event timing one phase of the extraction of a file.
+ * <p>Events are created, begun and committed around each phase whether a recording is running or not: when the event
+ * is disabled, {@link #begin()} and {@link #shouldCommit()} are no-ops the JIT removes along with the allocation, and
+ * the fields are only computed when the event is actually committed.</p>
+ */
+@Category("Java Method Extractor")
+@StackTrace(false)
+public abstract class ExtractorEvent extends Event {
+
+  @Label("File")
+  String path;
+
+  @Label("Size")
+  @Description("Size of the text processed, in UTF-8 bytes")
+  @DataAmount
+  long size;
+
+  @Label("Methods")
+  int methodCount;
+
+  /**
+   * Commits the event for the file being extracted by the current thread, see {@link EventContext}
+   *
+   * @param text the text processed, its size is only computed if the event is committed
+   */
+  public void commit(CharSequence text, int from, int to, int methodCount) {
+    if (shouldCommit()) {
+      set(EventContext.currentFile(), utf8Length(text, from, to), methodCount);
+    }
+  }
+
+  /**
+   * Commits the event for the file being extracted by the current thread, see {@link EventContext}
+   */
+  public void commit(long size, int methodCount) {
+    if (shouldCommit()) {
+      set(EventContext.currentFile(), size, methodCount);
+    }
+  }
+
+  public void commit(Path file, long size, int methodCount) {
+    if (shouldCommit()) {
+      set(file == null ? null : file.toString(), size, methodCount);
+    }
+  }
+
+  private void set(String file, long size, int methodCount) {
+    this.path = file;
+    this.size = size;
+    this.methodCount = methodCount;
+    commit();
+  }
+
+  static long utf8Length(CharSequence text, int from, int to) {
+    long length = 0;
+    for (int i = from; i < to; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+}
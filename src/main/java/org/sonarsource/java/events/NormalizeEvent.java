@@ -0,0 +1,16 @@
+package org.sonarsource.java.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Emitted for every method: by default, only the slow ones are recorded
+ */
+@Name("org.sonarsource.java.Normalize")
+@Label("Normalize")
+@Description("Normalization of the text of a single method")
+@Threshold("1 ms")
+public final class NormalizeEvent extends ExtractorEvent {
+}
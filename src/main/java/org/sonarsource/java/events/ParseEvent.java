@@ -0,0 +1,11 @@
+package org.sonarsource.java.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.sonarsource.java.Parse")
+@Label("Parse")
+@Description("Parsing of a file into a syntax tree")
+public final class ParseEvent extends ExtractorEvent {
+}
@@ -0,0 +1,28 @@
+package org.sonarsource.java.events;
+
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.sonarsource.java.extracting.FunctionInfo;
+
+@Name("org.sonarsource.java.Write")
+@Label("Write")
+@Description("Writing of the methods of a file to the output")
+public final class WriteEvent extends ExtractorEvent {
+
+  /**
+   * @param file the source file the methods were extracted from
+   */
+  public void commit(Path file, List<FunctionInfo> functions) {
+    if (shouldCommit()) {
+      long size = 0;
+      for (FunctionInfo function : functions) {
+        size += utf8Length(function.normalizedContent(), 0, function.normalizedContent().length());
+      }
+      commit(file, size, functions.size());
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+package org.sonarsource.java.extracting;
+
+import java.util.Arrays;
+
+/**
+ * The comment ranges of a compilation unit, sorted by start offset, built once per file and queried for the comments
+ * of each method in O(log n + k).
+ * <p>Offsets are whatever the parser uses, chars or UTF-8 bytes, and ends are exclusive.</p>
+ */
+public final class CommentIndex {
+
+  private int[] starts;
+  private int[] ends;
+  private int size;
+
+  public CommentIndex() {
+    this(new int[16], new int[16], 0);
+  }
+
+  /**
+   * @param starts sorted start offsets, used as is
+   * @param ends   end offsets of the same comments
+   * @param size   number of comments in the arrays
+   */
+  public CommentIndex(int[] starts, int[] ends, int size) {
+    this.starts = starts;
+    this.ends = ends;
+    this.size = size;
+  }
+
+  /**
+   * Comments must be added in source order
+   */
+  public void add(int start, int end) {
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, Math.max(16, size * 2));
+      ends = Arrays.copyOf(ends, starts.length);
+    }
+    starts[size] = start;
+    ends[size] = end;
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int start(int i) {
+    return starts[i];
+  }
+
+  public int end(int i) {
+    return ends[i];
+  }
+
+  /**
+   * @return the index of the first comment starting at or after the offset, {@link #size()} if there is none
+   */
+  public int firstFrom(int offset) {
+    int i = Arrays.binarySearch(starts, 0, size, offset);
+    if (i < 0) {
+      return -i - 1;
+    }
+    // Comments don't overlap, so no two of them start at the same offset
+    return i;
+  }
+
+}
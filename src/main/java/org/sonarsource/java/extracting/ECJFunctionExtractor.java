@@ -1,27 +1,42 @@
 package org.sonarsource.java.extracting;
 
-import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.Comment;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.sonarsource.java.events.ExtractEvent;
 import org.sonarsource.java.parsing.AstResult;
 import org.sonarsource.java.utils.PerformanceMetrics;
 
 public class ECJFunctionExtractor implements IFunctionExtractor {
 
+  private final MethodFilter filter;
+
+  public ECJFunctionExtractor() {
+    this(MethodFilter.ACCEPT_ALL);
+  }
+
+  /**
+   * @param filter evaluated on the DOM of each method, before its text is normalized
+   */
+  public ECJFunctionExtractor(MethodFilter filter) {
+    this.filter = filter;
+  }
+
   @Override
   public List<FunctionInfo> extract(AstResult astResult, String source, int minLines, boolean oneline, PerformanceMetrics metrics) {
-    Instant startTime = Instant.now();
+    ExtractEvent event = new ExtractEvent();
+    event.begin();
+    long startTime = System.nanoTime();
 
     if (!(astResult.ast() instanceof CompilationUnit cu)) {
       throw new RuntimeException("Root node is not a CompilationUnit");
     }
     List<FunctionInfo> methodList = new ArrayList<>();
-    List<Comment> comments = getComments(cu);
+    CommentIndex comments = getComments(cu);
+    MethodSelection selection = new MethodSelection(filter, minLines);
 
     cu.accept(new ASTVisitor() {
       @Override
@@ -29,36 +44,46 @@ public class ECJFunctionExtractor implements IFunctionExtractor {
         if(node.getBody() == null){
           return false; // skip methods without body
         }
+        if (!selection.accepts(new ECJMethodMetadata(cu, node))) {
+          return false;
+        }
         int start = node.getStartPosition();
         int length = node.getLength();
         String methodName = node.getName().getIdentifier();
-        String methodContent = source.substring(start, start + length);
 
-        Instant normStartTime = Instant.now();
-        String methodNormalizedContent = TextNormalizer.normalizeECJMethodText(methodContent, start, comments);
-        if (methodNormalizedContent.lines().count() < minLines) {
+        long normStartTime = System.nanoTime();
+        String methodNormalizedContent = TextNormalizer.normalizeMethodText(source, start, start + length, comments, minLines,
+          oneline);
+        if (methodNormalizedContent == null) {
+          selection.rejectShort();
           return false;
         }
-        if (oneline) {
-          methodNormalizedContent = TextNormalizer.normalizeOneLine(methodNormalizedContent);
-        }
-        Duration normProcessingTime = Duration.between(normStartTime, Instant.now());
-        metrics.recordNormalizationTime(normProcessingTime.toNanos());
+        long normProcessingTime = System.nanoTime() - normStartTime;
+        metrics.recordNormalizationTime(normProcessingTime);
 
-        methodList.add(new FunctionInfo(methodName, methodContent, methodNormalizedContent, 0));
+        methodList.add(new FunctionInfo(methodName, source, methodNormalizedContent, start, start + length));
         return false; // don't recurse inside methods
       }
     });
 
-    Duration processingTime = Duration.between(startTime, Instant.now());
-    metrics.recordExtractionTime(processingTime.toNanos());
+    long processingTime = System.nanoTime() - startTime;
+    metrics.recordExtractionTime(processingTime);
     metrics.recordMethodsCollected(methodList.size());
+    selection.report(metrics);
+    event.commit(source, 0, source.length(), methodList.size());
     return methodList;
   }
 
-  static List<Comment> getComments(CompilationUnit cu) {
-    var comments = new ArrayList<Comment>(cu.getCommentList());
-    comments.sort((a, b) -> Integer.compare(b.getStartPosition(), a.getStartPosition()));
+  /**
+   * The comment list of the DOM is already in source order
+   */
+  public static CommentIndex getComments(CompilationUnit cu) {
+    List<?> commentList = cu.getCommentList();
+    CommentIndex comments = new CommentIndex();
+    for (Object comment : commentList) {
+      Comment c = (Comment) comment;
+      comments.add(c.getStartPosition(), c.getStartPosition() + c.getLength());
+    }
     return comments;
   }
 
@@ -0,0 +1,115 @@
+package org.sonarsource.java.extracting;
+
+import java.util.List;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.Annotation;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.ReturnStatement;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.ThisExpression;
+
+/**
+ * Metadata of a method of the DOM, the line count coming from the line table of the compilation unit
+ */
+final class ECJMethodMetadata implements IMethodMetadata {
+
+  private final CompilationUnit cu;
+  private final MethodDeclaration node;
+
+  ECJMethodMetadata(CompilationUnit cu, MethodDeclaration node) {
+    this.cu = cu;
+    this.node = node;
+  }
+
+  @Override
+  public String name() {
+    return node.getName().getIdentifier();
+  }
+
+  /**
+   * The DOM node starts at the javadoc, the Tree-sitter one at the first modifier: lines are counted from the latter
+   */
+  @Override
+  public int lineCount() {
+    int end = node.getStartPosition() + Math.max(0, node.getLength() - 1);
+    return cu.getLineNumber(end) - cu.getLineNumber(declarationStart()) + 1;
+  }
+
+  private int declarationStart() {
+    if (node.getJavadoc() == null) {
+      return node.getStartPosition();
+    }
+    List<?> modifiers = node.modifiers();
+    if (!modifiers.isEmpty()) {
+      return ((ASTNode) modifiers.get(0)).getStartPosition();
+    }
+    List<?> typeParameters = node.typeParameters();
+    if (!typeParameters.isEmpty()) {
+      return ((ASTNode) typeParameters.get(0)).getStartPosition();
+    }
+    return node.getReturnType2() != null ? node.getReturnType2().getStartPosition() : node.getName().getStartPosition();
+  }
+
+  @Override
+  public boolean isConstructor() {
+    return node.isConstructor();
+  }
+
+  @Override
+  public boolean hasModifier(String keyword) {
+    for (Object modifier : node.modifiers()) {
+      if (modifier instanceof Modifier m && m.getKeyword().toString().equals(keyword)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean hasAnnotation(String simpleName) {
+    for (Object modifier : node.modifiers()) {
+      if (modifier instanceof Annotation annotation
+        && MethodFilter.simpleName(annotation.getTypeName().getFullyQualifiedName()).equals(simpleName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isTrivialAccessor() {
+    List<?> statements = node.getBody().statements();
+    if (node.isConstructor() || statements.size() != 1) {
+      return false;
+    }
+    Object statement = statements.get(0);
+    List<?> parameters = node.parameters();
+    if (parameters.isEmpty() && statement instanceof ReturnStatement returnStatement) {
+      return isField(returnStatement.getExpression());
+    }
+    if (parameters.size() == 1
+      && statement instanceof ExpressionStatement expressionStatement
+      && expressionStatement.getExpression() instanceof Assignment assignment
+      && assignment.getOperator() == Assignment.Operator.ASSIGN
+      && isField(assignment.getLeftHandSide())
+      && assignment.getRightHandSide() instanceof SimpleName value) {
+      return value.getIdentifier().equals(((SingleVariableDeclaration) parameters.get(0)).getName().getIdentifier());
+    }
+    return false;
+  }
+
+  private static boolean isField(Expression expression) {
+    return expression instanceof SimpleName
+      || (expression instanceof FieldAccess fieldAccess
+      && fieldAccess.getExpression() instanceof ThisExpression thisExpression
+      && thisExpression.getQualifier() == null);
+  }
+
+}
@@ -1,7 +1,44 @@
 package org.sonarsource.java.extracting;
 
+/**
+ * Method extracted from a source file.
+ * <p>The methods of a file all share its source, the text of each one is only copied out of it when
+ * {@link #content()} is called.</p>
+ *
+ * @param source      the whole content of the file the method belongs to
+ * @param startOffset offset of the method in the source, in characters
+ * @param endOffset   offset of the end of the method in the source, exclusive
+ */
 public record FunctionInfo(String name,
-                           String content,
+                           String source,
                            String normalizedContent,
-                           long timeMs) {
+                           int startOffset,
+                           int endOffset) {
+
+  public FunctionInfo {
+    if (startOffset < 0 || startOffset > endOffset || endOffset > source.length()) {
+      throw new IllegalArgumentException("Method span [" + startOffset + ", " + endOffset + ") is outside of its source of "
+        + source.length() + " characters");
+    }
+  }
+
+  /**
+   * @return the text of the method, as written in the source
+   */
+  public String content() {
+    return source.substring(startOffset, endOffset);
+  }
+
+  public int contentLength() {
+    return endOffset - startOffset;
+  }
+
+  /**
+   * Leaves the source out, it would repeat the whole file for each method
+   */
+  @Override
+  public String toString() {
+    return "FunctionInfo[name=" + name + ", startOffset=" + startOffset + ", endOffset=" + endOffset + "]";
+  }
+
 }
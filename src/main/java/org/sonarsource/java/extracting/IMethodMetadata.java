@@ -0,0 +1,35 @@
+package org.sonarsource.java.extracting;
+
+/**
+ * What a {@link MethodFilter} can check about a method, read from the syntax tree before any text of the method is
+ * built. Each value is only computed when a filter asks for it.
+ */
+public interface IMethodMetadata {
+
+  String name();
+
+  /**
+   * @return the number of source lines the method spans, from the line table of the parser. Comments and blank lines
+   * are counted, so it is never lower than the number of lines of the normalized text
+   */
+  int lineCount();
+
+  boolean isConstructor();
+
+  /**
+   * @param keyword e.g. {@code public} or {@code static}
+   */
+  boolean hasModifier(String keyword);
+
+  /**
+   * @param simpleName the name of the annotation without its package, e.g. {@code Test}
+   */
+  boolean hasAnnotation(String simpleName);
+
+  /**
+   * @return true for a method only returning a field, {@code return x;} or {@code return this.x;}, or only assigning
+   * its single parameter to a field, {@code x = p;} or {@code this.x = p;}
+   */
+  boolean isTrivialAccessor();
+
+}
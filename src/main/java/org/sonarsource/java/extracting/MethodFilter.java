@@ -0,0 +1,136 @@
+package org.sonarsource.java.extracting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Selects the methods to extract from their {@link IMethodMetadata}, so that rejected methods are never sliced nor
+ * normalized.
+ * <p>A filter is a list of terms separated by whitespace, all of which must hold. A term prefixed with {@code !} must
+ * not hold:</p>
+ * <ul>
+ *   <li>{@code lines>=N}, {@code lines<=N}, {@code lines>N}, {@code lines<N}, {@code lines=N}: number of source lines</li>
+ *   <li>{@code name~REGEX}: the name fully matches the regular expression</li>
+ *   <li>{@code @Name}: annotated with {@code Name}, whatever its package</li>
+ *   <li>{@code public}, {@code static}, ...: has the modifier</li>
+ *   <li>{@code constructor}, {@code method}: is a constructor, or not</li>
+ *   <li>{@code accessor}: is a trivial getter or setter</li>
+ * </ul>
+ * For instance {@code !@Test !@Generated !accessor lines<=200}.
+ */
+public final class MethodFilter {
+
+  public static final MethodFilter ACCEPT_ALL = new MethodFilter(List.of());
+
+  private static final Pattern LINES = Pattern.compile("lines(>=|<=|>|<|=)(\\d+)");
+  private static final Pattern ANNOTATION = Pattern.compile("@[\\p{javaJavaIdentifierPart}.]+");
+  private static final Set<String> MODIFIERS = Set.of("public", "protected", "private", "static", "final", "abstract",
+    "synchronized", "native", "default", "strictfp");
+
+  private record Term(String label, Predicate<IMethodMetadata> predicate) {
+  }
+
+  private final List<Term> terms;
+
+  private MethodFilter(List<Term> terms) {
+    this.terms = terms;
+  }
+
+  /**
+   * @throws IllegalArgumentException when a term is not valid
+   */
+  public static MethodFilter parse(String expression) {
+    List<Term> terms = new ArrayList<>();
+    for (String term : expression.trim().split("\\s+")) {
+      if (!term.isEmpty()) {
+        terms.add(new Term(term, parseTerm(term)));
+      }
+    }
+    if (terms.isEmpty()) {
+      throw new IllegalArgumentException("Empty method filter");
+    }
+    return new MethodFilter(terms);
+  }
+
+  private static Predicate<IMethodMetadata> parseTerm(String term) {
+    if (term.startsWith("!") && term.length() > 1) {
+      return parseTerm(term.substring(1)).negate();
+    }
+    var lines = LINES.matcher(term);
+    if (lines.matches()) {
+      return linesPredicate(lines.group(1), Integer.parseInt(lines.group(2)));
+    }
+    if (term.startsWith("name~")) {
+      try {
+        Pattern pattern = Pattern.compile(term.substring("name~".length()));
+        return method -> pattern.matcher(method.name()).matches();
+      } catch (PatternSyntaxException e) {
+        throw new IllegalArgumentException("Invalid name pattern in method filter term " + term, e);
+      }
+    }
+    if (ANNOTATION.matcher(term).matches()) {
+      String simpleName = simpleName(term.substring(1));
+      return method -> method.hasAnnotation(simpleName);
+    }
+    if (MODIFIERS.contains(term)) {
+      return method -> method.hasModifier(term);
+    }
+    return switch (term) {
+      case "constructor" -> IMethodMetadata::isConstructor;
+      case "method" -> method -> !method.isConstructor();
+      case "accessor" -> IMethodMetadata::isTrivialAccessor;
+      default -> throw new IllegalArgumentException("Unknown method filter term: " + term);
+    };
+  }
+
+  private static Predicate<IMethodMetadata> linesPredicate(String operator, int value) {
+    return switch (operator) {
+      case ">=" -> method -> method.lineCount() >= value;
+      case "<=" -> method -> method.lineCount() <= value;
+      case ">" -> method -> method.lineCount() > value;
+      case "<" -> method -> method.lineCount() < value;
+      default -> method -> method.lineCount() == value;
+    };
+  }
+
+  static String simpleName(String name) {
+    return name.substring(name.lastIndexOf('.') + 1);
+  }
+
+  public boolean isEmpty() {
+    return terms.isEmpty();
+  }
+
+  int termCount() {
+    return terms.size();
+  }
+
+  String termLabel(int term) {
+    return terms.get(term).label();
+  }
+
+  /**
+   * @return the index of the first term the method does not satisfy, -1 when it satisfies them all
+   */
+  int rejectingTerm(IMethodMetadata method) {
+    for (int i = 0; i < terms.size(); i++) {
+      if (!terms.get(i).predicate().test(method)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the terms separated by a single space, e.g. to tell apart the cache entries of different filters
+   */
+  @Override
+  public String toString() {
+    return String.join(" ", terms.stream().map(Term::label).toList());
+  }
+
+}
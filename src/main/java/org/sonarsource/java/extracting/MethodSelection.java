@@ -0,0 +1,58 @@
+package org.sonarsource.java.extracting;
+
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Applies the {@link MethodFilter} and the minimum number of lines to the methods of a single file, counting the
+ * methods each of them rejected. The counts are reported to the metrics once the file is done.
+ */
+final class MethodSelection {
+
+  private final MethodFilter filter;
+  private final int minLines;
+  // One count per filter term, then the count of methods shorter than minLines
+  private final int[] rejected;
+
+  MethodSelection(MethodFilter filter, int minLines) {
+    this.filter = filter;
+    this.minLines = minLines;
+    this.rejected = new int[filter.termCount() + 1];
+  }
+
+  int minLines() {
+    return minLines;
+  }
+
+  /**
+   * The number of source lines is an upper bound of the number of normalized lines: a method spanning fewer lines
+   * than {@code minLines} is rejected without being normalized.
+   */
+  boolean accepts(IMethodMetadata method) {
+    int term = filter.rejectingTerm(method);
+    if (term >= 0) {
+      rejected[term]++;
+      return false;
+    }
+    if (minLines > 0 && method.lineCount() < minLines) {
+      rejectShort();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Records a method whose normalized text has fewer than {@code minLines} lines
+   */
+  void rejectShort() {
+    rejected[rejected.length - 1]++;
+  }
+
+  void report(PerformanceMetrics metrics) {
+    for (int i = 0; i < rejected.length; i++) {
+      if (rejected[i] > 0) {
+        metrics.recordRejectedMethods(i < filter.termCount() ? filter.termLabel(i) : ("--ml " + minLines), rejected[i]);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,121 @@
+package org.sonarsource.java.extracting;
+
+import java.util.Arrays;
+
+/**
+ * Single-pass normalization of method texts: the text is appended piece by piece, skipping the comments, and each
+ * char goes through a small state machine that drops the blank lines, strips the trailing whitespace of the others
+ * and, in oneline mode, joins the lines and collapses whitespace runs to a single space.
+ * <p>The output is the same as the former line-by-line reading and regular expressions: lines end at {@code \n} or
+ * {@code \r}, trailing whitespace is as defined by {@link Character#isWhitespace(char)}, collapsed whitespace is
+ * {@code \s}, and the oneline text is finally {@link String#trim() trimmed}.</p>
+ * <p>Not thread-safe: the char buffer is reused from one method to the next.</p>
+ */
+final class NormalizingBuffer {
+
+  private static final int INITIAL_CAPACITY = 4096;
+  /**
+   * Larger buffers, grown by a huge method, are not kept for the next ones
+   */
+  private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+  private char[] buffer = new char[INITIAL_CAPACITY];
+  private int length;
+  private boolean oneline;
+  private int lineStart;
+  /**
+   * End of the current line once its trailing whitespace is stripped
+   */
+  private int lineContentEnd;
+  private boolean inWhitespaceRun;
+  private int lineCount;
+
+  void reset(boolean oneline) {
+    this.oneline = oneline;
+    if (buffer.length > MAX_RETAINED_CAPACITY) {
+      buffer = new char[INITIAL_CAPACITY];
+    }
+    length = 0;
+    lineStart = 0;
+    lineContentEnd = 0;
+    inWhitespaceRun = false;
+    lineCount = 0;
+  }
+
+  void append(CharSequence text, int from, int to) {
+    ensureCapacity(to - from);
+    for (int i = from; i < to; i++) {
+      char c = text.charAt(i);
+      if (c == '\n' || c == '\r') {
+        endLine();
+      } else if (oneline && isRegexWhitespace(c)) {
+        if (!inWhitespaceRun) {
+          inWhitespaceRun = true;
+          buffer[length++] = ' ';
+        }
+      } else {
+        inWhitespaceRun = false;
+        buffer[length++] = c;
+        if (!Character.isWhitespace(c)) {
+          lineContentEnd = length;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the number of non-blank lines appended so far
+   */
+  int lineCount() {
+    endLine();
+    return lineCount;
+  }
+
+  String finish() {
+    endLine();
+    if (!oneline) {
+      // No line separator after the last line
+      return new String(buffer, 0, Math.max(length - 1, 0));
+    }
+    int start = 0;
+    int end = length;
+    while (start < end && buffer[start] <= ' ') {
+      start++;
+    }
+    while (end > start && buffer[end - 1] <= ' ') {
+      end--;
+    }
+    return new String(buffer, start, end - start);
+  }
+
+  /**
+   * Ending a line twice, or an empty line, changes nothing
+   */
+  private void endLine() {
+    length = lineContentEnd;
+    if (length > lineStart) {
+      lineCount++;
+      if (!oneline) {
+        ensureCapacity(1);
+        buffer[length++] = '\n';
+      }
+    }
+    lineStart = length;
+    lineContentEnd = length;
+    inWhitespaceRun = false;
+  }
+
+  private void ensureCapacity(int extra) {
+    if (length + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+    }
+  }
+
+  /**
+   * The {@code \s} class of regular expressions, without the line terminators handled before
+   */
+  private static boolean isRegexWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\u000B' || c == '\f';
+  }
+
+}
@@ -0,0 +1,51 @@
+package org.sonarsource.java.extracting;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.sonarsource.java.events.ExtractEvent;
+import org.sonarsource.java.parsing.AstResult;
+import org.sonarsource.java.parsing.ScannedMethod;
+import org.sonarsource.java.parsing.ScannedUnit;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Extracts the methods found by the {@link org.sonarsource.java.parsing.ScannerParser}.
+ * Produces the same output as the {@link ECJFunctionExtractor}, without the cost of building the DOM.
+ */
+public class ScannerFunctionExtractor implements IFunctionExtractor {
+
+  @Override
+  public List<FunctionInfo> extract(AstResult astResult, String source, int minLines, boolean oneline, PerformanceMetrics metrics) {
+    ExtractEvent event = new ExtractEvent();
+    event.begin();
+    long startTime = System.nanoTime();
+
+    if (!(astResult.ast() instanceof ScannedUnit unit)) {
+      throw new RuntimeException("Root node is not a ScannedUnit");
+    }
+    List<FunctionInfo> methodList = new ArrayList<>();
+    CommentIndex comments = new CommentIndex(unit.commentStarts(), unit.commentEnds(), unit.commentStarts().length);
+    MethodSelection selection = new MethodSelection(MethodFilter.ACCEPT_ALL, minLines);
+    for (ScannedMethod method : unit.methods()) {
+      long normStartTime = System.nanoTime();
+      String methodNormalizedContent = TextNormalizer.normalizeMethodText(source, method.start(), method.end(), comments,
+        minLines, oneline);
+      if (methodNormalizedContent == null) {
+        selection.rejectShort();
+        continue;
+      }
+      long normProcessingTime = System.nanoTime() - normStartTime;
+      metrics.recordNormalizationTime(normProcessingTime);
+
+      methodList.add(new FunctionInfo(method.name(), source, methodNormalizedContent, method.start(), method.end()));
+    }
+
+    long processingTime = System.nanoTime() - startTime;
+    metrics.recordExtractionTime(processingTime);
+    metrics.recordMethodsCollected(methodList.size());
+    selection.report(metrics);
+    event.commit(source, 0, source.length(), methodList.size());
+    return methodList;
+  }
+
+}
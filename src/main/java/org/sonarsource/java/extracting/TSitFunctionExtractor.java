@@ -1,62 +1,77 @@
 package org.sonarsource.java.extracting;
 
-import java.time.Duration;
-import java.time.Instant;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import org.sonarsource.java.events.ExtractEvent;
 import org.sonarsource.java.parsing.AstResult;
+import org.sonarsource.java.parsing.TSitParser;
 import org.sonarsource.java.utils.PerformanceMetrics;
 import org.treesitter.TSNode;
+import org.treesitter.TSQuery;
+import org.treesitter.TSQueryCapture;
+import org.treesitter.TSQueryCursor;
+import org.treesitter.TSQueryMatch;
 
+/**
+ * Tree-sitter offsets are UTF-8 byte offsets: methods are sliced and normalized on the UTF-8 source bytes,
+ * only the resulting texts are decoded.
+ */
 public class TSitFunctionExtractor implements IFunctionExtractor {
 
+  private static final TSQuery COMMENTS_QUERY = new TSQuery(TSitParser.language(), "[(line_comment) (block_comment)] @comment");
+  private static final ThreadLocal<TSQueryCursor> CURSORS = ThreadLocal.withInitial(TSQueryCursor::new);
+
+  private final MethodFilter filter;
+
+  public TSitFunctionExtractor() {
+    this(MethodFilter.ACCEPT_ALL);
+  }
+
+  /**
+   * @param filter evaluated on the node of each method, before its text is normalized
+   */
+  public TSitFunctionExtractor(MethodFilter filter) {
+    this.filter = filter;
+  }
+
   @Override
   public List<FunctionInfo> extract(AstResult astResult, String source, int minLines, boolean oneline, PerformanceMetrics metrics) {
-    Instant startTime = Instant.now();
+    ExtractEvent event = new ExtractEvent();
+    event.begin();
+    long startTime = System.nanoTime();
     if (!(astResult.ast() instanceof TSNode rootNode)) {
       throw new RuntimeException("Root node is not a TSNode");
     }
+    byte[] sourceBytes = astResult.source() != null ? astResult.source() : source.getBytes(StandardCharsets.UTF_8);
     List<FunctionInfo> list = new ArrayList<>();
-    traverse(rootNode, source, list, minLines, oneline, metrics);
+    MethodSelection selection = new MethodSelection(filter, minLines);
+    traverse(rootNode, source, sourceBytes, TSitMethodMetadata.rowsAreLines(sourceBytes),
+      new Utf8CharOffsets(sourceBytes, source.length()), getComments(rootNode), list, selection, oneline, metrics);
 
-    Duration processingTime = Duration.between(startTime, Instant.now());
-    metrics.recordExtractionTime(processingTime.toNanos());
+    long processingTime = System.nanoTime() - startTime;
+    metrics.recordExtractionTime(processingTime);
     metrics.recordMethodsCollected(list.size());
+    selection.report(metrics);
+    event.commit(sourceBytes.length, list.size());
     return list;
   }
 
-  private static void traverse(TSNode node, String source, List<FunctionInfo> out, int minLines, boolean oneline, PerformanceMetrics metrics) {
+  private static void traverse(TSNode node, String source, byte[] sourceBytes, boolean rowsAreLines, Utf8CharOffsets charOffsets,
+    CommentIndex comments, List<FunctionInfo> out, MethodSelection selection, boolean oneline, PerformanceMetrics metrics) {
     String type = node.getType();
     if ("method_declaration".equals(type) || "constructor_declaration".equals(type)) {
-      if(node.getChild(4).isNull()){
+      TSNode body = node.getChildByFieldName("body");
+      if (body == null || body.isNull()) {
         return; // skip methods without body
       }
-      int start = node.getStartByte();
-      int end = node.getEndByte();
-      String content = source.substring(start, Math.min(end, source.length()));
-
-      String name = extractNameViaTree(node, source);
-      int lineCount = (int) content.lines().count();
-      if (lineCount >= minLines) {
-        var comments = new ArrayList<TSNode>();
-        getComments(node, source.getBytes(), comments);
-        comments.sort(Comparator.comparingInt(TSNode::getStartByte));
-
-        Instant normStartTime = Instant.now();
-        String normalizedContent = TextNormalizer.normalizeTSMethodText(content, node.getStartByte(), comments);
-        if (normalizedContent.lines().count() < minLines) {
-          return;
-        }
-        if (oneline) {
-          normalizedContent = TextNormalizer.normalizeOneLine(normalizedContent);
-        }
-
-        Duration normProcessingTime = Duration.between(normStartTime, Instant.now());
-        metrics.recordNormalizationTime(normProcessingTime.toNanos());
-
-        out.add(new FunctionInfo(name, content, normalizedContent, 0));
+      String name = extractNameViaTree(node, sourceBytes);
+      if (!selection.accepts(new TSitMethodMetadata(node, sourceBytes, name, rowsAreLines))) {
+        return;
       }
+      int start = node.getStartByte();
+      int end = Math.min(node.getEndByte(), sourceBytes.length);
+      addFunction(source, sourceBytes, start, end, charOffsets, name, comments, out, selection, oneline, metrics);
       return; // don't recurse inside methods
     }
 
@@ -64,41 +79,66 @@ public class TSitFunctionExtractor implements IFunctionExtractor {
     for (int i = 0; i < childCnt; i++) {
       TSNode child = node.getChild(i);
       if (child != null) {
-        traverse(child, source, out, minLines, oneline, metrics);
+        traverse(child, source, sourceBytes, rowsAreLines, charOffsets, comments, out, selection, oneline, metrics);
       }
     }
   }
 
+  /**
+   * @param source      the decoded source, shared by the methods
+   * @param sourceBytes its UTF-8 bytes, which {@code start} and {@code end} refer to
+   * @param comments    the comments of the compilation unit, with byte offsets
+   * @param selection   the method was already accepted by it, only the normalized lines are left to check
+   */
+  static void addFunction(String source, byte[] sourceBytes, int start, int end, Utf8CharOffsets charOffsets, String name,
+    CommentIndex comments, List<FunctionInfo> out, MethodSelection selection, boolean oneline, PerformanceMetrics metrics) {
+    long normStartTime = System.nanoTime();
+    // Removing comments never adds lines: the normalized text alone decides whether the method is long enough
+    String normalizedContent = TextNormalizer.normalizeTSMethodText(sourceBytes, start, end, comments, selection.minLines(),
+      oneline);
+    if (normalizedContent == null) {
+      selection.rejectShort();
+      return;
+    }
+
+    long normProcessingTime = System.nanoTime() - normStartTime;
+    metrics.recordNormalizationTime(normProcessingTime);
+
+    // Methods do not overlap, so the offsets are converted in increasing order
+    out.add(new FunctionInfo(name, source, normalizedContent, charOffsets.toCharOffset(start), charOffsets.toCharOffset(end)));
+  }
+
   /**
    * Extracts the name of a method/constructor purely via the Tree-sitter AST.
    * No regex fallback – if Tree-sitter doesn't give us a name we label it "anonymous".
    */
-  private static String extractNameViaTree(TSNode methodNode, String source) {
+  static String extractNameViaTree(TSNode methodNode, byte[] source) {
     TSNode nameNode = methodNode.getChildByFieldName("name");
     if (nameNode != null) {
       int start = nameNode.getStartByte();
       int end = nameNode.getEndByte();
-      if (start >= 0 && end <= source.length() && start < end) {
-        return source.substring(start, end);
+      if (start >= 0 && end <= source.length && start < end) {
+        return new String(source, start, end - start, StandardCharsets.UTF_8);
       }
     }
     return "anonymous";
   }
 
-  public static void getComments(TSNode node, byte[] sourceBytes, List<TSNode> comments) {
-    if (node == null) {
-      return;
-    }
-
-    String nodeType = node.getType();
-    if ("line_comment".equals(nodeType) || "block_comment".equals(nodeType)) {
-      comments.add(node);
-    } else {
-      for (int i = 0; i < node.getChildCount(); i++) {
-        TSNode child = node.getChild(i);
-        getComments(child, sourceBytes, comments);
+  /**
+   * Collects all the comments of the tree in one native pass, rather than walking each method again
+   */
+  private static CommentIndex getComments(TSNode rootNode) {
+    CommentIndex comments = new CommentIndex();
+    TSQueryCursor cursor = CURSORS.get();
+    cursor.exec(COMMENTS_QUERY, rootNode);
+    TSQueryMatch match = new TSQueryMatch();
+    while (cursor.nextMatch(match)) {
+      for (TSQueryCapture capture : match.getCaptures()) {
+        // Comments are leaves, so their matches come in source order
+        comments.add(capture.getNode().getStartByte(), capture.getNode().getEndByte());
       }
     }
+    return comments;
   }
 
 }
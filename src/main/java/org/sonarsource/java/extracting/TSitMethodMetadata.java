@@ -0,0 +1,188 @@
+package org.sonarsource.java.extracting;
+
+import java.nio.charset.StandardCharsets;
+import org.treesitter.TSNode;
+
+/**
+ * Metadata of a {@code method_declaration} or {@code constructor_declaration} node, the line count coming from the
+ * rows of the node. Tree-sitter only starts a row after {@code \n}: in the rare files having lines ended by a lone
+ * {@code \r}, the line terminators of the method are counted instead.
+ */
+final class TSitMethodMetadata implements IMethodMetadata {
+
+  private final TSNode node;
+  private final byte[] source;
+  private final String name;
+  private final boolean rowsAreLines;
+
+  /**
+   * @param rowsAreLines whether the source has no lone {@code \r}, see {@link #rowsAreLines(byte[])}
+   */
+  TSitMethodMetadata(TSNode node, byte[] source, String name, boolean rowsAreLines) {
+    this.node = node;
+    this.source = source;
+    this.name = name;
+    this.rowsAreLines = rowsAreLines;
+  }
+
+  static boolean rowsAreLines(byte[] source) {
+    for (int i = 0; i < source.length; i++) {
+      if (source[i] == '\r' && (i + 1 == source.length || source[i + 1] != '\n')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public int lineCount() {
+    if (rowsAreLines) {
+      return node.getEndPoint().getRow() - node.getStartPoint().getRow() + 1;
+    }
+    int lines = 1;
+    int end = Math.min(node.getEndByte(), source.length);
+    for (int i = node.getStartByte(); i < end; i++) {
+      if (source[i] == '\n' || (source[i] == '\r' && (i + 1 == source.length || source[i + 1] != '\n'))) {
+        lines++;
+      }
+    }
+    return lines;
+  }
+
+  @Override
+  public boolean isConstructor() {
+    return "constructor_declaration".equals(node.getType());
+  }
+
+  @Override
+  public boolean hasModifier(String keyword) {
+    TSNode modifiers = modifiers();
+    if (modifiers != null) {
+      for (int i = 0; i < modifiers.getChildCount(); i++) {
+        if (keyword.equals(modifiers.getChild(i).getType())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean hasAnnotation(String simpleName) {
+    TSNode modifiers = modifiers();
+    if (modifiers != null) {
+      for (int i = 0; i < modifiers.getNamedChildCount(); i++) {
+        TSNode annotationName = modifiers.getNamedChild(i).getChildByFieldName("name");
+        if (isPresent(annotationName) && MethodFilter.simpleName(text(annotationName)).equals(simpleName)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The modifiers node is not a field of the declaration, it comes before the name
+   */
+  private TSNode modifiers() {
+    for (int i = 0; i < node.getNamedChildCount(); i++) {
+      TSNode child = node.getNamedChild(i);
+      if ("modifiers".equals(child.getType())) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean isTrivialAccessor() {
+    if (isConstructor()) {
+      return false;
+    }
+    TSNode statement = singleNamedChild(node.getChildByFieldName("body"));
+    TSNode parameters = node.getChildByFieldName("parameters");
+    int parameterCount = isPresent(parameters) ? countNonComments(parameters) : 0;
+    if (statement == null) {
+      return false;
+    }
+    if (parameterCount == 0 && "return_statement".equals(statement.getType())) {
+      return isField(singleNamedChild(statement));
+    }
+    if (parameterCount == 1 && "expression_statement".equals(statement.getType())) {
+      TSNode assignment = singleNamedChild(statement);
+      TSNode parameterName = firstNonComment(parameters).getChildByFieldName("name");
+      if (assignment == null || !"assignment_expression".equals(assignment.getType()) || !isPresent(parameterName)) {
+        return false;
+      }
+      TSNode operator = assignment.getChildByFieldName("operator");
+      TSNode value = assignment.getChildByFieldName("right");
+      return isPresent(operator) && "=".equals(operator.getType())
+        && isField(assignment.getChildByFieldName("left"))
+        && isPresent(value) && "identifier".equals(value.getType())
+        && text(value).equals(text(parameterName));
+    }
+    return false;
+  }
+
+  private static boolean isField(TSNode expression) {
+    if (!isPresent(expression)) {
+      return false;
+    }
+    if ("identifier".equals(expression.getType())) {
+      return true;
+    }
+    if (!"field_access".equals(expression.getType())) {
+      return false;
+    }
+    TSNode object = expression.getChildByFieldName("object");
+    return isPresent(object) && "this".equals(object.getType());
+  }
+
+  /**
+   * @return the only named child which is not a comment, null if there are none or several
+   */
+  private static TSNode singleNamedChild(TSNode parent) {
+    if (!isPresent(parent) || countNonComments(parent) != 1) {
+      return null;
+    }
+    return firstNonComment(parent);
+  }
+
+  private static int countNonComments(TSNode parent) {
+    int count = 0;
+    for (int i = 0; i < parent.getNamedChildCount(); i++) {
+      if (!isComment(parent.getNamedChild(i))) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static TSNode firstNonComment(TSNode parent) {
+    for (int i = 0; i < parent.getNamedChildCount(); i++) {
+      TSNode child = parent.getNamedChild(i);
+      if (!isComment(child)) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isComment(TSNode node) {
+    return "line_comment".equals(node.getType()) || "block_comment".equals(node.getType());
+  }
+
+  private static boolean isPresent(TSNode node) {
+    return node != null && !node.isNull();
+  }
+
+  private String text(TSNode node) {
+    return new String(source, node.getStartByte(), node.getEndByte() - node.getStartByte(), StandardCharsets.UTF_8);
+  }
+
+}
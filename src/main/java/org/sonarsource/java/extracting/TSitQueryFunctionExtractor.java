@@ -0,0 +1,128 @@
+package org.sonarsource.java.extracting;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.sonarsource.java.events.ExtractEvent;
+import org.sonarsource.java.parsing.AstResult;
+import org.sonarsource.java.parsing.TSitParser;
+import org.sonarsource.java.utils.PerformanceMetrics;
+import org.treesitter.TSNode;
+import org.treesitter.TSQuery;
+import org.treesitter.TSQueryCapture;
+import org.treesitter.TSQueryCursor;
+import org.treesitter.TSQueryMatch;
+
+/**
+ * Tree-sitter extractor running a single query over the tree instead of walking it node by node.
+ * The query captures the methods and constructors having a body, their names and all the comments in one native pass.
+ * It is compiled once and shared by all threads, each thread reusing its own query cursor.
+ * <p>Produces the same output as the {@link TSitFunctionExtractor}.</p>
+ */
+public class TSitQueryFunctionExtractor implements IFunctionExtractor {
+
+  private static final TSQuery QUERY = new TSQuery(TSitParser.language(), """
+    (method_declaration name: (identifier) @name body: (block)) @method
+    (constructor_declaration name: (identifier) @name body: (constructor_body)) @method
+    [(line_comment) (block_comment)] @comment
+    """);
+  private static final int METHOD_CAPTURE = captureId("method");
+  private static final int NAME_CAPTURE = captureId("name");
+  private static final int COMMENT_CAPTURE = captureId("comment");
+
+  private static final ThreadLocal<TSQueryCursor> CURSORS = ThreadLocal.withInitial(TSQueryCursor::new);
+
+  private final MethodFilter filter;
+
+  public TSitQueryFunctionExtractor() {
+    this(MethodFilter.ACCEPT_ALL);
+  }
+
+  /**
+   * @param filter evaluated on the node of each method, before its text is normalized
+   */
+  public TSitQueryFunctionExtractor(MethodFilter filter) {
+    this.filter = filter;
+  }
+
+  private record MethodMatch(TSNode node, int start, int end, int nameStart, int nameEnd) {
+  }
+
+  @Override
+  public List<FunctionInfo> extract(AstResult astResult, String source, int minLines, boolean oneline, PerformanceMetrics metrics) {
+    ExtractEvent event = new ExtractEvent();
+    event.begin();
+    long startTime = System.nanoTime();
+    if (!(astResult.ast() instanceof TSNode rootNode)) {
+      throw new RuntimeException("Root node is not a TSNode");
+    }
+    byte[] sourceBytes = astResult.source() != null ? astResult.source() : source.getBytes(StandardCharsets.UTF_8);
+
+    List<MethodMatch> methods = new ArrayList<>();
+    CommentIndex comments = new CommentIndex();
+
+    TSQueryCursor cursor = CURSORS.get();
+    cursor.exec(QUERY, rootNode);
+    TSQueryMatch match = new TSQueryMatch();
+    while (cursor.nextMatch(match)) {
+      TSNode methodNode = null;
+      int start = -1;
+      int end = -1;
+      int nameStart = -1;
+      int nameEnd = -1;
+      for (TSQueryCapture capture : match.getCaptures()) {
+        TSNode node = capture.getNode();
+        if (capture.getIndex() == METHOD_CAPTURE) {
+          methodNode = node;
+          start = node.getStartByte();
+          end = node.getEndByte();
+        } else if (capture.getIndex() == NAME_CAPTURE) {
+          nameStart = node.getStartByte();
+          nameEnd = node.getEndByte();
+        } else if (capture.getIndex() == COMMENT_CAPTURE) {
+          // Comments are leaves, so their matches come in source order
+          comments.add(node.getStartByte(), node.getEndByte());
+        }
+      }
+      if (start >= 0) {
+        methods.add(new MethodMatch(methodNode, start, Math.min(end, sourceBytes.length), nameStart, nameEnd));
+      }
+    }
+
+    methods.sort(Comparator.comparingInt(MethodMatch::start));
+    List<FunctionInfo> list = new ArrayList<>();
+    MethodSelection selection = new MethodSelection(filter, minLines);
+    boolean rowsAreLines = TSitMethodMetadata.rowsAreLines(sourceBytes);
+    Utf8CharOffsets charOffsets = new Utf8CharOffsets(sourceBytes, source.length());
+    int lastMethodEnd = -1;
+    for (MethodMatch method : methods) {
+      if (method.start() < lastMethodEnd) {
+        continue; // skip methods declared inside other methods
+      }
+      lastMethodEnd = method.end();
+      String name = new String(sourceBytes, method.nameStart(), method.nameEnd() - method.nameStart(), StandardCharsets.UTF_8);
+      if (selection.accepts(new TSitMethodMetadata(method.node(), sourceBytes, name, rowsAreLines))) {
+        TSitFunctionExtractor.addFunction(source, sourceBytes, method.start(), method.end(), charOffsets, name, comments, list,
+          selection, oneline, metrics);
+      }
+    }
+
+    long processingTime = System.nanoTime() - startTime;
+    metrics.recordExtractionTime(processingTime);
+    metrics.recordMethodsCollected(list.size());
+    selection.report(metrics);
+    event.commit(sourceBytes.length, list.size());
+    return list;
+  }
+
+  private static int captureId(String name) {
+    for (int i = 0; i < QUERY.getCaptureCount(); i++) {
+      if (name.equals(QUERY.getCaptureNameForId(i))) {
+        return i;
+      }
+    }
+    throw new IllegalStateException("Missing capture @" + name + " in the methods query");
+  }
+
+}
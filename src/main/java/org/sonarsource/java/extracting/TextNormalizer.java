@@ -1,99 +1,136 @@
 package org.sonarsource.java.extracting;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
-import java.util.List;
-import org.eclipse.jdt.core.dom.Comment;
+import java.nio.charset.StandardCharsets;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.sonarsource.java.events.NormalizeEvent;
 import org.sonarsource.java.parsing.ECJParser;
 import org.sonarsource.java.utils.PerformanceMetrics;
-import org.treesitter.TSNode;
 
 public class TextNormalizer {
 
+  /**
+   * Extraction workers normalize many methods in a row: each one reuses the same buffer
+   */
+  private static final ThreadLocal<NormalizingBuffer> BUFFERS = ThreadLocal.withInitial(NormalizingBuffer::new);
+
   private TextNormalizer() {
     // Prevent instantiation
   }
 
-  public static String normalizeECJMethodText(String methodText, int methodStartOffset, List<Comment> comments) {
-    if (methodText == null) return "";
-    StringBuilder cleaned = new StringBuilder(methodText);
-    for (Comment comment : comments) {
-      int commentStart = comment.getStartPosition();
-      int commentEnd = commentStart + comment.getLength();
-
-      // Only include comments that fall within the method's bounds
-      if (commentStart >= methodStartOffset && commentEnd <= methodStartOffset + methodText.length()) {
-        int relativeStart = commentStart - methodStartOffset;
-        int relativeEnd = commentEnd - methodStartOffset;
-
-        cleaned.delete(relativeStart, relativeEnd);
+  /**
+   * Normalizes the method spanning {@code [methodStartOffset, methodEndOffset)} of the source, without copying it out
+   * first.
+   *
+   * @param comments the comments of the compilation unit, with char offsets
+   * @return the normalized text, or null if it has fewer than {@code minLines} non-blank lines
+   */
+  public static String normalizeMethodText(String source, int methodStartOffset, int methodEndOffset, CommentIndex comments,
+    int minLines, boolean oneline) {
+    NormalizeEvent event = new NormalizeEvent();
+    event.begin();
+    NormalizingBuffer buffer = BUFFERS.get();
+    buffer.reset(oneline);
+    int currentOffset = methodStartOffset;
+    for (int i = comments.firstFrom(methodStartOffset); i < comments.size() && comments.start(i) < methodEndOffset; i++) {
+      // Only remove comments that fall within the method's bounds
+      if (comments.end(i) <= methodEndOffset) {
+        buffer.append(source, currentOffset, comments.start(i));
+        currentOffset = comments.end(i);
       }
     }
-    return cleanJavaCode(cleaned.toString());
+    buffer.append(source, currentOffset, methodEndOffset);
+    String normalized = buffer.lineCount() < minLines ? null : buffer.finish();
+    event.commit(source, methodStartOffset, methodEndOffset, normalized == null ? 0 : 1);
+    return normalized;
   }
 
-  public static String normalizeTSMethodText(String methodText, int methodStartOffset, List<TSNode> comments) {
-    if (methodText == null) return "";
-    StringBuilder cleaned = new StringBuilder();
-    int currentOffset = 0;
+  /**
+   * Removes the comments strictly inside the method, working on the UTF-8 source bytes the Tree-sitter offsets
+   * refer to. Only the resulting text is decoded.
+   *
+   * @param comments the comments of the compilation unit, with byte offsets
+   * @return the normalized text, or null if it has fewer than {@code minLines} lines
+   */
+  public static String normalizeTSMethodText(byte[] source, int methodStartOffset, int methodEndOffset, CommentIndex comments,
+    int minLines, boolean oneline) {
+    NormalizeEvent event = new NormalizeEvent();
+    event.begin();
+    String normalized = removeComments(source, methodStartOffset, methodEndOffset, comments);
+    if (normalized.lines().count() < minLines) {
+      normalized = null;
+    } else if (oneline) {
+      normalized = normalizeOneLine(normalized);
+    }
+    event.commit(methodEndOffset - methodStartOffset, normalized == null ? 0 : 1);
+    return normalized;
+  }
 
-    for (var comment : comments) {
-      if (comment.getStartByte() > methodStartOffset && comment.getEndByte() < methodStartOffset + methodText.length()) {
-        int relativeStart = comment.getStartByte() - methodStartOffset;
-        int relativeEnd = comment.getEndByte() - methodStartOffset;
-        if (relativeStart > currentOffset) {
-          cleaned.append(methodText, currentOffset, relativeStart);
+  private static String removeComments(byte[] source, int methodStartOffset, int methodEndOffset, CommentIndex comments) {
+    byte[] cleaned = new byte[methodEndOffset - methodStartOffset];
+    int length = 0;
+    int currentOffset = methodStartOffset;
+
+    for (int i = comments.firstFrom(methodStartOffset + 1); i < comments.size() && comments.start(i) < methodEndOffset; i++) {
+      int commentStart = comments.start(i);
+      int commentEnd = comments.end(i);
+      if (commentEnd < methodEndOffset) {
+        if (commentStart > currentOffset) {
+          System.arraycopy(source, currentOffset, cleaned, length, commentStart - currentOffset);
+          length += commentStart - currentOffset;
         }
-        currentOffset = relativeEnd;
+        currentOffset = commentEnd;
       }
     }
 
-    if (currentOffset < methodText.length()) {
-      cleaned.append(methodText.substring(currentOffset));
+    if (currentOffset < methodEndOffset) {
+      System.arraycopy(source, currentOffset, cleaned, length, methodEndOffset - currentOffset);
+      length += methodEndOffset - currentOffset;
     }
 
-    return cleaned.toString();
+    return new String(cleaned, 0, length, StandardCharsets.UTF_8);
   }
 
+  /**
+   * Removes the line breaks and collapses whitespace runs to a single space, in one pass. Unlike the oneline mode of
+   * the other methods, the trailing whitespace of each line is not stripped first.
+   */
   public static String normalizeOneLine(String text) {
-    return text
-      .replaceAll("[\\n\\r]+", "")
-      .replaceAll("\\s+", " ")
-      .trim();
-  }
-
-  static String cleanJavaCode(String codeString) {
-    StringBuilder cleanedCode = new StringBuilder();
-    try (BufferedReader reader = new BufferedReader(new StringReader(codeString))) {
-      String line;
-      while ((line = reader.readLine()) != null) {
-        String trimmedLine = line.stripTrailing();
-        if (!trimmedLine.isEmpty()) {
-          cleanedCode.append(trimmedLine).append("\n");
+    char[] chars = new char[text.length()];
+    int length = 0;
+    boolean inWhitespaceRun = false;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '\n' || c == '\r') {
+        // Removed before whitespace is collapsed: the runs on both sides are joined
+        continue;
+      }
+      if (c == ' ' || c == '\t' || c == '\u000B' || c == '\f') {
+        if (!inWhitespaceRun) {
+          inWhitespaceRun = true;
+          chars[length++] = ' ';
         }
+      } else {
+        inWhitespaceRun = false;
+        chars[length++] = c;
       }
-    } catch (IOException e) {
-      System.err.println(e.getMessage());
-      return null; // Fallback: return original string on error
     }
-    if (!cleanedCode.isEmpty()) {
-      cleanedCode.setLength(cleanedCode.length() - 1);
+    int start = 0;
+    while (start < length && chars[start] <= ' ') {
+      start++;
     }
-    return cleanedCode.toString();
+    while (length > start && chars[length - 1] <= ' ') {
+      length--;
+    }
+    return new String(chars, start, length - start);
   }
 
   //for testing purposes
   protected static String testNormalizedMethodText(ECJParser parser, String methodText, boolean oneline) {
+    if (methodText == null) return "";
     String compilationUnitSourceCode = "class C { " + methodText + " }";
     var ast = parser.parse("C", compilationUnitSourceCode, new PerformanceMetrics());
     var comments = ECJFunctionExtractor.getComments((CompilationUnit) ast.ast());
-    var text = normalizeECJMethodText(methodText, 10, comments);
-    if (oneline) {
-      text = normalizeOneLine(text);
-    }
-    return text;
+    return normalizeMethodText(compilationUnitSourceCode, 10, 10 + methodText.length(), comments, 0, oneline);
   }
 
 }
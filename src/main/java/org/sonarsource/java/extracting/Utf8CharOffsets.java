@@ -0,0 +1,45 @@
+package org.sonarsource.java.extracting;
+
+/**
+ * Converts UTF-8 byte offsets of a source into offsets in its decoded String.
+ * <p>Conversions are expected in increasing order, as methods are found in a file: each one only scans the bytes
+ * since the previous one, so converting all the methods of a file is linear in its size.</p>
+ */
+class Utf8CharOffsets {
+
+  private final byte[] source;
+  private final boolean ascii;
+  private int bytePosition = 0;
+  private int charPosition = 0;
+
+  /**
+   * @param charCount length of the decoded source: when equal to the number of bytes, offsets are the same
+   */
+  Utf8CharOffsets(byte[] source, int charCount) {
+    this.source = source;
+    this.ascii = source.length == charCount;
+  }
+
+  int toCharOffset(int byteOffset) {
+    if (ascii) {
+      return byteOffset;
+    }
+    if (byteOffset < bytePosition) {
+      bytePosition = 0;
+      charPosition = 0;
+    }
+    for (; bytePosition < byteOffset; bytePosition++) {
+      int b = source[bytePosition];
+      if ((b & 0xC0) != 0x80) {
+        // Not a continuation byte: a new character
+        charPosition++;
+      }
+      if ((b & 0xF8) == 0xF0) {
+        // 4 bytes sequences are decoded into a surrogate pair
+        charPosition++;
+      }
+    }
+    return charPosition;
+  }
+
+}
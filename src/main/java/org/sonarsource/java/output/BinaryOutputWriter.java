@@ -0,0 +1,63 @@
+package org.sonarsource.java.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.sonarsource.java.extracting.FunctionInfo;
+
+/**
+ * Length-prefixed binary records, in big-endian order:
+ * <pre>
+ * file   := MAGIC version:int32 record*
+ * record := length:int32 name:string path:string start:int32 end:int32 content:string
+ * string := length:int32 UTF-8 bytes
+ * </pre>
+ * The record length excludes its own 4 bytes, so a reader can skip records without decoding them. Offsets are
+ * character offsets in the source file, the content is the normalized method.
+ */
+class BinaryOutputWriter extends PackedOutputWriter {
+
+  static final byte[] MAGIC = {'J', 'M', 'X', 'B'};
+  static final int VERSION = 1;
+
+  /**
+   * Records are encoded on the heap, then copied to the output buffer in one go
+   */
+  private final ByteArrayOutputStream record = new ByteArrayOutputStream(1 << 12);
+  private final DataOutputStream data = new DataOutputStream(record);
+
+  BinaryOutputWriter(Path outputFile, boolean gzip, PrintStream messages) throws IOException {
+    super(outputFile, gzip, messages);
+    data.write(MAGIC);
+    data.writeInt(VERSION);
+    flushRecord();
+  }
+
+  @Override
+  void writeRecord(Path sourcePath, FunctionInfo function) throws IOException {
+    byte[] name = function.name().getBytes(StandardCharsets.UTF_8);
+    byte[] path = sourcePath.toString().getBytes(StandardCharsets.UTF_8);
+    byte[] content = function.normalizedContent().getBytes(StandardCharsets.UTF_8);
+    data.writeInt(4 + name.length + 4 + path.length + 4 + 4 + 4 + content.length);
+    writeBytes(name);
+    writeBytes(path);
+    data.writeInt(function.startOffset());
+    data.writeInt(function.endOffset());
+    writeBytes(content);
+    flushRecord();
+  }
+
+  private void flushRecord() throws IOException {
+    record.writeTo(out);
+    record.reset();
+  }
+
+  private void writeBytes(byte[] bytes) throws IOException {
+    data.writeInt(bytes.length);
+    data.write(bytes);
+  }
+
+}
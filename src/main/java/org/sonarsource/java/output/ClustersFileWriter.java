@@ -0,0 +1,48 @@
+package org.sonarsource.java.output;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.sonarsource.java.extracting.FunctionInfo;
+
+/**
+ * Writes the near-duplicate cluster of each method to a tab-separated file, next to the methods themselves: one line
+ * per method, with its source path, name, start and end offsets, and cluster id.
+ */
+public class ClustersFileWriter implements Closeable {
+
+  public static final String CLUSTERS_FILE = "clusters.tsv";
+
+  private final BufferedWriter writer;
+
+  public ClustersFileWriter(Path outputDir) throws IOException {
+    writer = Files.newBufferedWriter(outputDir.resolve(CLUSTERS_FILE), StandardCharsets.UTF_8);
+  }
+
+  public void write(Path sourcePath, List<FunctionInfo> functions, int[] clusterIds) throws IOException {
+    String path = sourcePath.toString();
+    for (int i = 0; i < clusterIds.length; i++) {
+      FunctionInfo function = functions.get(i);
+      writer.write(path);
+      writer.write('\t');
+      writer.write(function.name());
+      writer.write('\t');
+      writer.write(Integer.toString(function.startOffset()));
+      writer.write('\t');
+      writer.write(Integer.toString(function.endOffset()));
+      writer.write('\t');
+      writer.write(Integer.toString(clusterIds[i]));
+      writer.write('\n');
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
+}
@@ -0,0 +1,32 @@
+package org.sonarsource.java.output;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.sonarsource.java.extracting.FunctionInfo;
+import org.sonarsource.java.utils.FilesUtil;
+
+/**
+ * One file per class in --oneline mode, otherwise one directory per class and one file per method
+ */
+public class FilesOutputWriter implements IOutputWriter {
+
+  private final Path outputDir;
+  private final boolean oneline;
+
+  public FilesOutputWriter(Path outputDir, boolean oneline) {
+    this.outputDir = outputDir;
+    this.oneline = oneline;
+  }
+
+  @Override
+  public void write(Path sourcePath, List<FunctionInfo> functions) throws IOException {
+    FilesUtil.writeMethodsToFile(functions, sourcePath, outputDir, oneline);
+  }
+
+  @Override
+  public void close() {
+    // Every file is closed once written
+  }
+
+}
@@ -0,0 +1,16 @@
+package org.sonarsource.java.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.sonarsource.java.extracting.FunctionInfo;
+
+/**
+ * Writes the methods extracted from the source files, always from a single thread
+ */
+public interface IOutputWriter extends Closeable {
+
+  void write(Path sourcePath, List<FunctionInfo> functions) throws IOException;
+
+}
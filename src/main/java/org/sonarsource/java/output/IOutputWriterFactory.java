@@ -0,0 +1,11 @@
+package org.sonarsource.java.output;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@FunctionalInterface
+public interface IOutputWriterFactory {
+
+  IOutputWriter open(Path outputDir) throws IOException;
+
+}
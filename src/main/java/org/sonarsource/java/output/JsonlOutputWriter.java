@@ -0,0 +1,61 @@
+package org.sonarsource.java.output;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.sonarsource.java.extracting.FunctionInfo;
+
+/**
+ * One JSON object per line:
+ * <pre>{"name":"m","path":"src/A.java","start":10,"end":42,"content":"void m() { }"}</pre>
+ * Offsets are character offsets in the source file, the content is the normalized method.
+ */
+class JsonlOutputWriter extends PackedOutputWriter {
+
+  private final StringBuilder line = new StringBuilder();
+
+  JsonlOutputWriter(Path outputFile, boolean gzip, PrintStream messages) throws IOException {
+    super(outputFile, gzip, messages);
+  }
+
+  @Override
+  void writeRecord(Path sourcePath, FunctionInfo function) throws IOException {
+    line.setLength(0);
+    line.append("{\"name\":");
+    appendString(line, function.name());
+    line.append(",\"path\":");
+    appendString(line, sourcePath.toString());
+    line.append(",\"start\":").append(function.startOffset());
+    line.append(",\"end\":").append(function.endOffset());
+    line.append(",\"content\":");
+    appendString(line, function.normalizedContent());
+    line.append("}\n");
+    out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  static void appendString(StringBuilder sb, String value) {
+    sb.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"' -> sb.append("\\\"");
+        case '\\' -> sb.append("\\\\");
+        case '\n' -> sb.append("\\n");
+        case '\r' -> sb.append("\\r");
+        case '\t' -> sb.append("\\t");
+        case '\b' -> sb.append("\\b");
+        case '\f' -> sb.append("\\f");
+        default -> {
+          if (c < 0x20) {
+            sb.append("\\u%04x".formatted((int) c));
+          } else {
+            sb.append(c);
+          }
+        }
+      }
+    }
+    sb.append('"');
+  }
+
+}
@@ -0,0 +1,26 @@
+package org.sonarsource.java.output;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+public enum OutputFormat {
+
+  FILES,
+  JSONL,
+  BINARY;
+
+  /**
+   * @param gzip to compress the packed formats
+   * @param out  where the packed formats print their summary once closed
+   */
+  public IOutputWriter open(Path outputDir, boolean oneline, boolean gzip, PrintStream out) throws IOException {
+    String extension = gzip ? ".gz" : "";
+    return switch (this) {
+      case FILES -> new FilesOutputWriter(outputDir, oneline);
+      case JSONL -> new JsonlOutputWriter(outputDir.resolve("methods.jsonl" + extension), gzip, out);
+      case BINARY -> new BinaryOutputWriter(outputDir.resolve("methods.bin" + extension), gzip, out);
+    };
+  }
+
+}
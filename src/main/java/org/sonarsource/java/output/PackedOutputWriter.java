@@ -0,0 +1,64 @@
+package org.sonarsource.java.output;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.sonarsource.java.events.WriteEvent;
+import org.sonarsource.java.extracting.FunctionInfo;
+
+/**
+ * Writes all the methods into a single file, through one channel and a large direct buffer, optionally gzip
+ * compressed on the fly
+ */
+abstract class PackedOutputWriter implements IOutputWriter {
+
+  private static final int BUFFER_SIZE = 4 << 20;
+  private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+  private final Path outputFile;
+  protected final OutputStream out;
+  private final PrintStream messages;
+  private long methodCount = 0;
+  private long fileCount = 0;
+
+  /**
+   * @param messages where the summary is printed once closed
+   */
+  PackedOutputWriter(Path outputFile, boolean gzip, PrintStream messages) throws IOException {
+    this.outputFile = outputFile;
+    this.messages = messages;
+    FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING);
+    OutputStream channelStream = new DirectBufferOutputStream(channel, BUFFER_SIZE);
+    // Small writes are batched before being deflated
+    out = gzip ? new BufferedOutputStream(new GZIPOutputStream(channelStream, GZIP_BUFFER_SIZE), GZIP_BUFFER_SIZE) : channelStream;
+  }
+
+  @Override
+  public void write(Path sourcePath, List<FunctionInfo> functions) throws IOException {
+    WriteEvent event = new WriteEvent();
+    event.begin();
+    for (FunctionInfo function : functions) {
+      writeRecord(sourcePath, function);
+    }
+    methodCount += functions.size();
+    fileCount++;
+    event.commit(sourcePath, functions);
+  }
+
+  abstract void writeRecord(Path sourcePath, FunctionInfo function) throws IOException;
+
+  @Override
+  public void close() throws IOException {
+    // Also finishes the gzip stream and closes the channel
+    out.close();
+    messages.println("Wrote " + methodCount + " methods of " + fileCount + " files to " + outputFile.toAbsolutePath());
+  }
+
+}
@@ -1,4 +1,13 @@
 package org.sonarsource.java.parsing;
 
-public record AstResult(Object ast) {
+/**
+ * @param ast    root of the parsed tree
+ * @param source encoded source the offsets of the tree refer to, or null when they are offsets in the source string
+ */
+public record AstResult(Object ast, byte[] source) {
+
+  public AstResult(Object ast) {
+    this(ast, null);
+  }
+
 }
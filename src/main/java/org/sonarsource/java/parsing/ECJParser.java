@@ -1,30 +1,38 @@
 package org.sonarsource.java.parsing;
 
-import java.time.Duration;
-import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
+import org.sonarsource.java.events.ParseEvent;
 import org.sonarsource.java.utils.PerformanceMetrics;
 
+/**
+ * Not thread-safe: the underlying {@link ASTParser} is mutated on every call.
+ * Use one instance per thread at a time, see {@link ParserPool}.
+ */
 public class ECJParser implements IParser {
 
-  private static final ASTParser parser;
+  private static final Map<String, String> COMPILER_OPTIONS;
 
   static {
-    parser = ASTParser.newParser(AST.getJLSLatest());
     Map<String, String> options = new HashMap<>(JavaCore.getOptions());
     JavaCore.setComplianceOptions("17", options);
-    parser.setCompilerOptions(options);
-    // We are not interested in semantic information
-    parser.setResolveBindings(false);
-    parser.setBindingsRecovery(false);
+    COMPILER_OPTIONS = Map.copyOf(options);
   }
 
+  private final ASTParser parser = ASTParser.newParser(AST.getJLSLatest());
+
   public AstResult parse(String unitName, String sourceCode, PerformanceMetrics metrics) {
-    Instant startTime = Instant.now();
+    ParseEvent event = new ParseEvent();
+    event.begin();
+    long startTime = System.nanoTime();
+    // createAST resets the parser to its defaults, so it has to be configured again for every unit
+    parser.setCompilerOptions(COMPILER_OPTIONS);
+    // We are not interested in semantic information
+    parser.setResolveBindings(false);
+    parser.setBindingsRecovery(false);
     parser.setUnitName(unitName);
     parser.setSource(sourceCode.toCharArray());
     try {
@@ -33,8 +41,9 @@ public class ECJParser implements IParser {
       System.err.println("ECJ: Unable to parse file" + e.getMessage());
       return null;
     } finally {
-      Duration processingTime = Duration.between(startTime, Instant.now());
-      metrics.recordAstGenerationTime(processingTime.toNanos());
+      long processingTime = System.nanoTime() - startTime;
+      metrics.recordAstGenerationTime(processingTime);
+      event.commit(sourceCode, 0, sourceCode.length(), 0);
     }
   }
 
@@ -0,0 +1,287 @@
+package org.sonarsource.java.parsing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import org.eclipse.jdt.core.compiler.IScanner;
+import org.eclipse.jdt.core.compiler.ITerminalSymbols;
+import org.eclipse.jdt.core.compiler.InvalidInputException;
+
+/**
+ * Single lexical pass over a compilation unit, following just enough of the structure to tell method and
+ * constructor bodies apart from type bodies, initializers and expressions.
+ * <p>Boundaries follow the DOM conventions: a method starts at its javadoc when there is one, otherwise at its
+ * first modifier, annotation or type, and ends after its closing brace. As in the DOM-based extraction, methods
+ * without body and methods declared inside other methods are not reported.</p>
+ */
+class MethodBoundaryScanner {
+
+  // Deprecated without replacement: the internal TerminalTokens are numbered differently from the public scanner
+  @SuppressWarnings("deprecation")
+  private static final int IDENTIFIER = ITerminalSymbols.TokenNameIdentifier;
+
+  private final IScanner scanner;
+  private final char[] source;
+  private final List<ScannedMethod> methods = new ArrayList<>();
+  private final Deque<Frame> frames = new ArrayDeque<>();
+  private int[] commentStarts = new int[32];
+  private int[] commentEnds = new int[32];
+  private int commentCount = 0;
+
+  // Body of the method being scanned, in which only the braces are matched
+  private int methodDepth = 0;
+  private int methodStart;
+  private String methodName;
+
+  MethodBoundaryScanner(IScanner scanner, char[] source) {
+    this.scanner = scanner;
+    this.source = source;
+  }
+
+  ScannedUnit scan() throws InvalidInputException {
+    frames.push(new Frame(true, false));
+    int token;
+    while ((token = scanner.getNextToken()) != ITerminalSymbols.TokenNameEOF) {
+      switch (token) {
+        case ITerminalSymbols.TokenNameCOMMENT_LINE, ITerminalSymbols.TokenNameCOMMENT_BLOCK, ITerminalSymbols.TokenNameCOMMENT_MARKDOWN:
+          addComment(true);
+          break;
+        case ITerminalSymbols.TokenNameCOMMENT_JAVADOC:
+          addComment(false);
+          if (methodDepth == 0 && frames.peek().headerStart < 0) {
+            frames.peek().javadocStart = scanner.getCurrentTokenStartPosition();
+          }
+          break;
+        default:
+          if (methodDepth > 0) {
+            scanMethodBody(token);
+          } else {
+            scanDeclarations(token);
+          }
+      }
+    }
+    return new ScannedUnit(methods, Arrays.copyOf(commentStarts, commentCount), Arrays.copyOf(commentEnds, commentCount));
+  }
+
+  private void addComment(boolean excludeLineTerminator) {
+    if (commentCount == commentStarts.length) {
+      commentStarts = Arrays.copyOf(commentStarts, commentCount * 2);
+      commentEnds = Arrays.copyOf(commentEnds, commentCount * 2);
+    }
+    int start = scanner.getCurrentTokenStartPosition();
+    int end = scanner.getCurrentTokenEndPosition() + 1;
+    if (excludeLineTerminator) {
+      // The scanner includes the line terminator in line comments, the DOM does not
+      while (end > start && (source[end - 1] == '\n' || source[end - 1] == '\r')) {
+        end--;
+      }
+    }
+    commentStarts[commentCount] = start;
+    commentEnds[commentCount] = end;
+    commentCount++;
+  }
+
+  private void scanMethodBody(int token) {
+    if (token == ITerminalSymbols.TokenNameLBRACE) {
+      methodDepth++;
+    } else if (token == ITerminalSymbols.TokenNameRBRACE && --methodDepth == 0) {
+      methods.add(new ScannedMethod(methodName, methodStart, scanner.getCurrentTokenEndPosition() + 1));
+      frames.peek().reset();
+    }
+  }
+
+  private void scanDeclarations(int token) {
+    Frame frame = frames.peek();
+    if (token == ITerminalSymbols.TokenNameLBRACE) {
+      openBrace(frame);
+      return;
+    }
+    if (token == ITerminalSymbols.TokenNameRBRACE) {
+      closeBrace();
+      return;
+    }
+    if (frame.headerStart < 0) {
+      frame.headerStart = scanner.getCurrentTokenStartPosition();
+    }
+    boolean closedNewParen = false;
+    switch (token) {
+      case ITerminalSymbols.TokenNameLPAREN:
+        if (frame.parenDepth == 0 && frame.lastToken == IDENTIFIER) {
+          frame.paramsOwnerStart = frame.lastIdentifierStart;
+          frame.paramsOwnerEnd = frame.lastIdentifierEnd;
+          frame.defaultAfterParams = false;
+        }
+        frame.newParens.push(frame.pendingNew);
+        frame.pendingNew = false;
+        frame.parenDepth++;
+        break;
+      case ITerminalSymbols.TokenNameRPAREN:
+        if (!frame.newParens.isEmpty()) {
+          frame.parenDepth--;
+          closedNewParen = frame.newParens.pop();
+        }
+        break;
+      case ITerminalSymbols.TokenNameSEMICOLON:
+        if (frame.parenDepth == 0) {
+          frame.enumConstants = false;
+          frame.reset();
+          return;
+        }
+        break;
+      case ITerminalSymbols.TokenNameCOMMA:
+        if (frame.parenDepth == 0 && frame.enumConstants) {
+          frame.reset();
+          return;
+        }
+        break;
+      case ITerminalSymbols.TokenNameEQUAL:
+        if (frame.parenDepth == 0) {
+          frame.assignment = true;
+        }
+        break;
+      case ITerminalSymbols.TokenNamenew:
+        frame.pendingNew = true;
+        break;
+      case ITerminalSymbols.TokenNamedefault:
+        if (frame.parenDepth == 0 && frame.paramsOwnerStart >= 0) {
+          // Annotation member default value
+          frame.defaultAfterParams = true;
+        }
+        break;
+      case ITerminalSymbols.TokenNameclass, ITerminalSymbols.TokenNameinterface, ITerminalSymbols.TokenNameenum,
+        ITerminalSymbols.TokenNameRestrictedIdentifierrecord:
+        if (frame.parenDepth == 0 && frame.lastToken != ITerminalSymbols.TokenNameDOT) {
+          frame.typeDeclaration = token;
+        }
+        break;
+      case IDENTIFIER:
+        if (frame.typeDeclaration != 0 && frame.typeNameStart < 0) {
+          frame.typeNameStart = scanner.getCurrentTokenStartPosition();
+          frame.typeNameEnd = scanner.getCurrentTokenEndPosition() + 1;
+        }
+        frame.lastIdentifierStart = scanner.getCurrentTokenStartPosition();
+        frame.lastIdentifierEnd = scanner.getCurrentTokenEndPosition() + 1;
+        break;
+      default:
+        break;
+    }
+    frame.closedNewParen = closedNewParen;
+    frame.lastToken = token;
+  }
+
+  private void openBrace(Frame frame) {
+    if (frame.closedNewParen) {
+      // Anonymous class body
+      frames.push(new Frame(true, false));
+    } else if (frame.enumConstants && frame.parenDepth == 0) {
+      // Enum constant body
+      frames.push(new Frame(true, false));
+    } else if (frame.parenDepth > 0 || frame.assignment) {
+      // Array initializer, lambda body or switch inside an expression
+      frames.push(new Frame(false, false));
+    } else if (frame.typeDeclaration != 0) {
+      Frame typeBody = new Frame(true, true);
+      typeBody.enumConstants = frame.typeDeclaration == ITerminalSymbols.TokenNameenum;
+      if (frame.typeDeclaration == ITerminalSymbols.TokenNameRestrictedIdentifierrecord) {
+        typeBody.recordNameStart = frame.typeNameStart;
+        typeBody.recordNameEnd = frame.typeNameEnd;
+      }
+      frames.push(typeBody);
+    } else if (frame.typeBody && frame.paramsOwnerStart >= 0 && !frame.defaultAfterParams) {
+      startMethod(frame, frame.paramsOwnerStart, frame.paramsOwnerEnd);
+    } else if (frame.typeBody && isCompactConstructor(frame)) {
+      startMethod(frame, frame.lastIdentifierStart, frame.lastIdentifierEnd);
+    } else {
+      // Initializer or statement block
+      frames.push(new Frame(false, true));
+    }
+  }
+
+  private void closeBrace() {
+    if (frames.size() == 1) {
+      // Unbalanced closing brace
+      return;
+    }
+    Frame closed = frames.pop();
+    Frame parent = frames.peek();
+    if (closed.endsDeclaration) {
+      parent.reset();
+    } else {
+      parent.lastToken = ITerminalSymbols.TokenNameRBRACE;
+      parent.closedNewParen = false;
+    }
+  }
+
+  private boolean isCompactConstructor(Frame frame) {
+    int length = frame.recordNameEnd - frame.recordNameStart;
+    return frame.recordNameStart >= 0
+      && frame.lastToken == IDENTIFIER
+      && frame.lastIdentifierEnd - frame.lastIdentifierStart == length
+      && Arrays.equals(source, frame.lastIdentifierStart, frame.lastIdentifierEnd, source, frame.recordNameStart, frame.recordNameEnd);
+  }
+
+  private void startMethod(Frame frame, int nameStart, int nameEnd) {
+    methodDepth = 1;
+    methodStart = frame.javadocStart >= 0 ? frame.javadocStart : frame.headerStart;
+    methodName = new String(source, nameStart, nameEnd - nameStart);
+  }
+
+  /**
+   * Brace-delimited region: type body, or any other block outside method bodies.
+   * Tracks the header of the declaration or statement being scanned, up to its separator.
+   */
+  private static final class Frame {
+
+    final boolean typeBody;
+    // Whether the closing brace also ends the declaration or statement of the enclosing frame
+    final boolean endsDeclaration;
+    boolean enumConstants;
+    int recordNameStart = -1;
+    int recordNameEnd = -1;
+
+    int headerStart;
+    int javadocStart;
+    int lastToken;
+    int lastIdentifierStart;
+    int lastIdentifierEnd;
+    int parenDepth;
+    final Deque<Boolean> newParens = new ArrayDeque<>();
+    boolean pendingNew;
+    boolean closedNewParen;
+    boolean assignment;
+    int typeDeclaration;
+    int typeNameStart;
+    int typeNameEnd;
+    int paramsOwnerStart;
+    int paramsOwnerEnd;
+    boolean defaultAfterParams;
+
+    Frame(boolean typeBody, boolean endsDeclaration) {
+      this.typeBody = typeBody;
+      this.endsDeclaration = endsDeclaration;
+      reset();
+    }
+
+    void reset() {
+      headerStart = -1;
+      javadocStart = -1;
+      lastToken = -1;
+      lastIdentifierStart = -1;
+      lastIdentifierEnd = -1;
+      parenDepth = 0;
+      newParens.clear();
+      pendingNew = false;
+      closedNewParen = false;
+      assignment = false;
+      typeDeclaration = 0;
+      typeNameStart = -1;
+      typeNameEnd = -1;
+      paramsOwnerStart = -1;
+      paramsOwnerEnd = -1;
+      defaultAfterParams = false;
+    }
+  }
+
+}
@@ -0,0 +1,37 @@
+package org.sonarsource.java.parsing;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Pool of parsers.
+ * The underlying parsers are stateful and not thread-safe, so each parse takes an idle parser, or a new configured
+ * one from the factory when all of them are busy, and gives it back once done. There are never more parsers than
+ * threads parsing at the same time, and they outlive these threads: a pool kept across runs, as in the daemon mode,
+ * keeps its warmed-up parsers.
+ */
+public class ParserPool implements IParser {
+
+  private final Supplier<IParser> parserFactory;
+  private final Queue<IParser> idleParsers = new ConcurrentLinkedQueue<>();
+
+  public ParserPool(Supplier<IParser> parserFactory) {
+    this.parserFactory = parserFactory;
+  }
+
+  @Override
+  public AstResult parse(String unitName, String sourceCode, PerformanceMetrics metrics) {
+    IParser parser = idleParsers.poll();
+    if (parser == null) {
+      parser = parserFactory.get();
+    }
+    try {
+      return parser.parse(unitName, sourceCode, metrics);
+    } finally {
+      idleParsers.offer(parser);
+    }
+  }
+
+}
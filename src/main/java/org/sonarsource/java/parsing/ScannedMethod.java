@@ -0,0 +1,7 @@
+package org.sonarsource.java.parsing;
+
+/**
+ * Method or constructor found by the {@link ScannerParser}, {@code end} being exclusive.
+ */
+public record ScannedMethod(String name, int start, int end) {
+}
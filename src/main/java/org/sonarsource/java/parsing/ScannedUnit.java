@@ -0,0 +1,10 @@
+package org.sonarsource.java.parsing;
+
+import java.util.List;
+
+/**
+ * Result of the {@link ScannerParser}: the methods of a compilation unit and the ranges of all its comments,
+ * sorted by start offset, {@code commentEnds} being exclusive.
+ */
+public record ScannedUnit(List<ScannedMethod> methods, int[] commentStarts, int[] commentEnds) {
+}
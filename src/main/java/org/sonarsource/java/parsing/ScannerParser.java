@@ -0,0 +1,39 @@
+package org.sonarsource.java.parsing;
+
+import org.eclipse.jdt.core.ToolFactory;
+import org.eclipse.jdt.core.compiler.IScanner;
+import org.eclipse.jdt.core.compiler.InvalidInputException;
+import org.sonarsource.java.events.ParseEvent;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * "Fast boundaries" parser: finds the method and constructor boundaries, their names and the comment ranges
+ * in a single pass of the JDT token scanner, without building the DOM.
+ * The result is a {@link ScannedUnit}.
+ * <p>Not thread-safe: the scanner is reused from one file to the other.
+ * Use one instance per thread at a time, see {@link ParserPool}.</p>
+ */
+public class ScannerParser implements IParser {
+
+  private final IScanner scanner = ToolFactory.createScanner(true, false, false, "17", "17");
+
+  @Override
+  public AstResult parse(String unitName, String sourceCode, PerformanceMetrics metrics) {
+    ParseEvent event = new ParseEvent();
+    event.begin();
+    long startTime = System.nanoTime();
+    try {
+      char[] source = sourceCode.toCharArray();
+      scanner.setSource(source);
+      return new AstResult(new MethodBoundaryScanner(scanner, source).scan());
+    } catch (InvalidInputException | RuntimeException e) {
+      System.err.println("Scanner: Unable to scan file" + e.getMessage());
+      return null;
+    } finally {
+      long processingTime = System.nanoTime() - startTime;
+      metrics.recordAstGenerationTime(processingTime);
+      event.commit(sourceCode, 0, sourceCode.length(), 0);
+    }
+  }
+
+}
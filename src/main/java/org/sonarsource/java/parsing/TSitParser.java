@@ -1,33 +1,67 @@
 package org.sonarsource.java.parsing;
 
-import java.time.Duration;
-import java.time.Instant;
+import java.nio.charset.StandardCharsets;
+import org.sonarsource.java.events.ParseEvent;
 import org.sonarsource.java.utils.PerformanceMetrics;
+import org.treesitter.TSInputEncoding;
 import org.treesitter.TSLanguage;
 import org.treesitter.TSParser;
+import org.treesitter.TSTree;
 import org.treesitter.TreeSitterJava;
 
+/**
+ * The source is encoded to UTF-8 once and handed to Tree-sitter as is, so the byte offsets of the returned tree
+ * refer to the {@link AstResult#source()} bytes.
+ * <p>Not thread-safe: the native {@link TSParser} is stateful.
+ * Use one instance per thread at a time, see {@link ParserPool}.</p>
+ */
 public class TSitParser implements IParser {
 
-  private static final TSParser parser;
+  private static final TSLanguage LANGUAGE = new TreeSitterJava();
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
 
-  static {
+  private final TSParser parser;
+  private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+
+  public TSitParser() {
     parser = new TSParser();
-    TSLanguage language = new TreeSitterJava();
-    parser.setLanguage(language);
+    parser.setLanguage(LANGUAGE);
+  }
+
+  public static TSLanguage language() {
+    return LANGUAGE;
   }
 
   @Override
   public AstResult parse(String unitName, String sourceCode, PerformanceMetrics metrics) {
-    Instant startTime = Instant.now();
+    ParseEvent event = new ParseEvent();
+    event.begin();
+    long startTime = System.nanoTime();
     try {
-      return new AstResult(parser.parseString(null, sourceCode).getRootNode());
+      byte[] source = sourceCode.getBytes(StandardCharsets.UTF_8);
+      TSTree tree = parser.parse(readBuffer, null, (buffer, offset, position) -> read(source, buffer, offset),
+        TSInputEncoding.TSInputEncodingUTF8);
+      if (tree == null) {
+        System.err.println("TreeSitter: Unable to parse file " + unitName);
+        return null;
+      }
+      return new AstResult(tree.getRootNode(), source);
     } catch (Exception e) {
       System.err.println("TreeSitter: Unable to parse file" + e.getMessage());
       return null;
     } finally {
-      Duration processingTime = Duration.between(startTime, Instant.now());
-      metrics.recordAstGenerationTime(processingTime.toNanos());
+      long processingTime = System.nanoTime() - startTime;
+      metrics.recordAstGenerationTime(processingTime);
+      event.commit(sourceCode, 0, sourceCode.length(), 0);
+    }
+  }
+
+  private static int read(byte[] source, byte[] buffer, int offset) {
+    int length = Math.min(buffer.length, source.length - offset);
+    if (length <= 0) {
+      return 0;
     }
+    System.arraycopy(source, offset, buffer, 0, length);
+    return length;
   }
 }
@@ -0,0 +1,208 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.sonarsource.java.utils.PerformanceMetrics;
+import org.sonarsource.java.utils.StageMetrics;
+
+/**
+ * Streams the files of a directory tree as they are found, in the same order as {@link Files#walk}, so that the
+ * extraction starts with the first file instead of waiting for the whole tree to be listed.
+ * <p>A pool of threads lists the subdirectories ahead of the iteration, up to {@value #MAX_PREFETCHED_DIRECTORIES}
+ * directories not iterated yet. Directories excluded by the {@link PathFilter} are never listed and, like
+ * {@link Files#walk}, symbolic links to directories are not followed.</p>
+ */
+public final class DirectoryWalker implements Iterable<Path>, AutoCloseable {
+
+  static final String WALK_STAGE = "walk";
+
+  private static final int MAX_PREFETCHED_DIRECTORIES = 1024;
+
+  private final Path root;
+  private final PathFilter filter;
+  private final PerformanceMetrics metrics;
+  private final StageMetrics stage;
+  private final ExecutorService executor;
+  private final AtomicInteger prefetchedDirectories = new AtomicInteger();
+
+  /**
+   * @param threads number of directories listed in parallel
+   */
+  public DirectoryWalker(Path root, PathFilter filter, int threads, PerformanceMetrics metrics) {
+    this.root = root;
+    this.filter = filter;
+    this.metrics = metrics;
+    this.stage = metrics.stage(WALK_STAGE);
+    this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "directory-walker");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @throws UncheckedIOException while iterating, when a directory cannot be listed
+   */
+  @Override
+  public Iterator<Path> iterator() {
+    return new Walk();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Either a file to extract or a subdirectory to descend into
+   */
+  private record Entry(Path file, Directory directory) {
+  }
+
+  private final class Walk implements Iterator<Path> {
+
+    private final long startTime = System.nanoTime();
+    private final Deque<Iterator<Entry>> directories = new ArrayDeque<>();
+    private Path next;
+    private boolean finished = false;
+
+    Walk() {
+      directories.push(new Directory(root).entries().iterator());
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && !directories.isEmpty()) {
+        Iterator<Entry> entries = directories.peek();
+        if (!entries.hasNext()) {
+          directories.pop();
+        } else {
+          Entry entry = entries.next();
+          if (entry.directory() != null) {
+            directories.push(entry.directory().entries().iterator());
+          } else {
+            next = entry.file();
+          }
+        }
+      }
+      if (next == null && !finished) {
+        finished = true;
+        stage.recordWallTime(System.nanoTime() - startTime);
+      }
+      return next != null;
+    }
+
+    @Override
+    public Path next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Path file = next;
+      next = null;
+      return file;
+    }
+  }
+
+  private final class Directory {
+
+    private final Path path;
+    private final AtomicBoolean listingStarted = new AtomicBoolean();
+    private final CompletableFuture<List<Entry>> entries = new CompletableFuture<>();
+
+    Directory(Path path) {
+      this.path = path;
+    }
+
+    void prefetch() {
+      if (prefetchedDirectories.get() < MAX_PREFETCHED_DIRECTORIES && listingStarted.compareAndSet(false, true)) {
+        prefetchedDirectories.incrementAndGet();
+        executor.execute(this::list);
+      }
+    }
+
+    /**
+     * Lists the directory on the calling thread if it was not prefetched
+     */
+    List<Entry> entries() {
+      if (listingStarted.compareAndSet(false, true)) {
+        list();
+      } else {
+        prefetchedDirectories.decrementAndGet();
+      }
+      try {
+        return entries.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof IOException ioException) {
+          throw new UncheckedIOException(ioException);
+        }
+        throw e;
+      }
+    }
+
+    private void list() {
+      long listingStart = System.nanoTime();
+      List<Entry> found = new ArrayList<>();
+      List<Directory> subdirectories = new ArrayList<>();
+      int fileCount = 0;
+      try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+        for (Path child : children) {
+          BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+          Path relativePath = root.relativize(child);
+          if (attributes.isDirectory()) {
+            if (!filter.excludesDirectory(child, relativePath)) {
+              Directory subdirectory = new Directory(child);
+              subdirectories.add(subdirectory);
+              found.add(new Entry(null, subdirectory));
+            }
+          } else if (filter.includesFile(relativePath) && isRegularFile(child, attributes)) {
+            long size = attributes.isSymbolicLink() ? Files.size(child) : attributes.size();
+            if (filter.exceedsSizeLimit(size)) {
+              metrics.recordOversizedFile();
+            } else {
+              found.add(new Entry(child, null));
+              fileCount++;
+            }
+          }
+        }
+      } catch (IOException e) {
+        entries.completeExceptionally(e);
+        return;
+      } catch (DirectoryIteratorException e) {
+        entries.completeExceptionally(e.getCause());
+        return;
+      } catch (RuntimeException e) {
+        entries.completeExceptionally(e);
+        return;
+      }
+      stage.recordItems(fileCount, System.nanoTime() - listingStart);
+      entries.complete(found);
+      subdirectories.forEach(Directory::prefetch);
+    }
+  }
+
+  /**
+   * Symbolic links to regular files are extracted, as with {@link Files#isRegularFile}
+   */
+  private static boolean isRegularFile(Path file, BasicFileAttributes attributes) {
+    return attributes.isRegularFile() || (attributes.isSymbolicLink() && Files.isRegularFile(file));
+  }
+
+}
@@ -0,0 +1,365 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.sonarsource.java.cache.ExtractionCache;
+import org.sonarsource.java.dedup.Fingerprint;
+import org.sonarsource.java.dedup.MethodDeduplicator;
+import org.sonarsource.java.dedup.NearDuplicateClusterer;
+import org.sonarsource.java.events.EventContext;
+import org.sonarsource.java.extracting.FunctionInfo;
+import org.sonarsource.java.extracting.IFunctionExtractor;
+import org.sonarsource.java.parsing.AstResult;
+import org.sonarsource.java.output.ClustersFileWriter;
+import org.sonarsource.java.output.IOutputWriter;
+import org.sonarsource.java.output.IOutputWriterFactory;
+import org.sonarsource.java.parsing.IParser;
+import org.sonarsource.java.utils.PerformanceMetrics;
+import org.sonarsource.java.utils.StageMetrics;
+
+/**
+ * Read, parse/extract and write pipeline.
+ * <p>A single reader thread loads the files, a pool of CPU workers parses them and extracts their methods, and
+ * a single writer thread writes the results. Stages are joined by bounded queues, so a slow stage applies
+ * backpressure to the previous ones and the number of files held in memory stays constant whatever the size
+ * of the input.</p>
+ * <p>Results are written in the input order, so the output is the same as a sequential run. The workers compute the
+ * fingerprints and signatures of the methods, but the duplicates are dropped and the clusters assigned by the writer,
+ * so the first copy of a duplicate in the input order is the one kept.</p>
+ */
+public class ExtractionPipeline {
+
+  static final String READ_STAGE = "read";
+  static final String EXTRACT_STAGE = "parse/extract";
+  static final String WRITE_STAGE = "write";
+
+  /**
+   * Capacity of the read queue, per CPU worker
+   */
+  private static final int QUEUE_CAPACITY_PER_THREAD = 4;
+  public static final long DEFAULT_WRITE_BUFFER_BYTES = 64L * 1024 * 1024;
+  /**
+   * Estimated memory held by a file or a method besides its texts, so that files without methods count as well
+   */
+  private static final long ITEM_OVERHEAD_BYTES = 64;
+
+  private static final SourceFile END_OF_SOURCES = new SourceFile(-1, null, null);
+  private static final ExtractedFile END_OF_RESULTS = new ExtractedFile(null, List.of(), null, null);
+
+  private final IParser parser;
+  private final IFunctionExtractor functionExtractor;
+  private final int minLines;
+  private final boolean oneline;
+  private final int threads;
+  private final PerformanceMetrics metrics;
+  private final ExtractionCache cache;
+  private final IOutputWriterFactory outputWriters;
+  private final long writeBufferBytes;
+  private final MethodDeduplicator deduplicator;
+  private final NearDuplicateClusterer clusterer;
+  private final PrintStream out;
+  private final boolean console;
+
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private final List<Future<?>> stages = new CopyOnWriteArrayList<>();
+  private final AtomicLong fileCount = new AtomicLong();
+  private final AtomicInteger runningWorkers = new AtomicInteger();
+
+  public ExtractionPipeline(IParser parser, IFunctionExtractor functionExtractor, int minLines, boolean oneline, int threads,
+    PerformanceMetrics metrics) {
+    this(parser, functionExtractor, minLines, oneline, threads, metrics, PipelineOptions.defaults(oneline));
+  }
+
+  public ExtractionPipeline(IParser parser, IFunctionExtractor functionExtractor, int minLines, boolean oneline, int threads,
+    PerformanceMetrics metrics, PipelineOptions options) {
+    this.parser = parser;
+    this.functionExtractor = functionExtractor;
+    this.minLines = minLines;
+    this.oneline = oneline;
+    this.threads = threads;
+    this.metrics = metrics;
+    this.cache = options.cache();
+    this.outputWriters = options.outputWriters();
+    this.writeBufferBytes = options.writeBufferBytes();
+    this.deduplicator = options.deduplicator();
+    this.clusterer = options.clusterer();
+    this.out = options.out();
+    this.console = options.console();
+  }
+
+  private record SourceFile(long sequence, Path path, String code) {
+  }
+
+  /**
+   * @param fingerprints the fingerprint of each method, computed by the workers for the duplicates to be dropped in
+   *                     order by the writer, null without deduplication
+   * @param bandKeys     the near-duplicate band keys of each method, computed by the workers for the clusters to be
+   *                     assigned in order by the writer, null without clustering
+   */
+  private record ExtractedFile(Path path, List<FunctionInfo> functions, Fingerprint[] fingerprints, long[][] bandKeys) {
+
+    long estimatedSize() {
+      long size = ITEM_OVERHEAD_BYTES;
+      if (fingerprints != null) {
+        size += 2 * ITEM_OVERHEAD_BYTES * fingerprints.length;
+      }
+      if (bandKeys != null) {
+        for (long[] keys : bandKeys) {
+          size += ITEM_OVERHEAD_BYTES + 8L * keys.length;
+        }
+      }
+      if (!functions.isEmpty()) {
+        // The methods share the source of the file, 2 bytes per char at most
+        size += 2L * functions.get(0).source().length();
+      }
+      for (FunctionInfo function : functions) {
+        size += ITEM_OVERHEAD_BYTES + 2L * function.normalizedContent().length();
+      }
+      return size;
+    }
+  }
+
+  PrintStream out() {
+    return out;
+  }
+
+  boolean oneline() {
+    return oneline;
+  }
+
+  public void run(Iterable<Path> javaFiles, Path outputDir) throws IOException {
+    run(javaFiles, path -> Files.readString(path, StandardCharsets.UTF_8), outputDir);
+  }
+
+  /**
+   * @param sourceReader loads the content of each file, e.g. from the filesystem or from a git commit
+   */
+  public void run(Iterable<Path> javaFiles, ISourceReader sourceReader, Path outputDir) throws IOException {
+    BlockingQueue<SourceFile> readQueue = new ArrayBlockingQueue<>(threads * QUEUE_CAPACITY_PER_THREAD);
+    SequencedQueue<ExtractedFile> writeQueue = new SequencedQueue<>(writeBufferBytes, ExtractedFile::estimatedSize);
+    runningWorkers.set(threads);
+    long totalFiles = javaFiles instanceof Collection<?> collection ? collection.size() : -1;
+
+    // Java 17 has no virtual threads: the I/O stages get one dedicated platform thread each
+    ExecutorService ioExecutor = Executors.newFixedThreadPool(2);
+    ExecutorService cpuExecutor = Executors.newFixedThreadPool(threads);
+    ProgressReporter progressReporter = new ProgressReporter(metrics, totalFiles, out, console);
+    try {
+      submit(ioExecutor, () -> readFiles(javaFiles, sourceReader, readQueue));
+      for (int i = 0; i < threads; i++) {
+        submit(cpuExecutor, () -> extractFiles(readQueue, writeQueue));
+      }
+      submit(ioExecutor, () -> writeFiles(writeQueue, outputDir));
+      for (Future<?> stage : stages) {
+        await(stage);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(e);
+    } finally {
+      progressReporter.close();
+      ioExecutor.shutdownNow();
+      cpuExecutor.shutdownNow();
+    }
+    rethrowFailure();
+  }
+
+  private Void readFiles(Iterable<Path> javaFiles, ISourceReader sourceReader, BlockingQueue<SourceFile> readQueue)
+    throws IOException, InterruptedException {
+    StageMetrics stage = metrics.stage(READ_STAGE);
+    long stageStart = System.nanoTime();
+    long sequence = 0;
+    for (Path path : javaFiles) {
+      long startTime = System.nanoTime();
+      String code = sourceReader.read(path);
+      stage.recordItem(System.nanoTime() - startTime);
+      readQueue.put(new SourceFile(sequence++, path, code));
+    }
+    fileCount.set(sequence);
+    for (int i = 0; i < threads; i++) {
+      readQueue.put(END_OF_SOURCES);
+    }
+    stage.recordWallTime(System.nanoTime() - stageStart);
+    return null;
+  }
+
+  private Void extractFiles(BlockingQueue<SourceFile> readQueue, SequencedQueue<ExtractedFile> writeQueue) throws InterruptedException {
+    StageMetrics stage = metrics.stage(EXTRACT_STAGE);
+    long stageStart = System.nanoTime();
+    while (true) {
+      stage.recordQueueDepth(readQueue.size());
+      SourceFile sourceFile = readQueue.take();
+      if (sourceFile == END_OF_SOURCES) {
+        break;
+      }
+      long startTime = System.nanoTime();
+      EventContext.enterFile(sourceFile.path());
+      List<FunctionInfo> functions;
+      try {
+        functions = cache == null ? extract(sourceFile) : extractWithCache(sourceFile);
+      } finally {
+        EventContext.exitFile();
+      }
+      Fingerprint[] fingerprints = deduplicator == null ? null : MethodDeduplicator.fingerprints(functions);
+      long[][] bandKeys = clusterer == null ? null : NearDuplicateClusterer.bandKeys(functions);
+      long time = System.nanoTime() - startTime;
+      stage.recordItem(time);
+      metrics.recordFile(sourceFile.path().toString(), sourceFile.code().length(), functions.size(), time);
+      writeQueue.put(sourceFile.sequence(), new ExtractedFile(sourceFile.path(), functions, fingerprints, bandKeys));
+    }
+    stage.recordWallTime(System.nanoTime() - stageStart);
+    if (runningWorkers.decrementAndGet() == 0) {
+      // All the files have been read once the workers receive their end marker
+      writeQueue.put(fileCount.get(), END_OF_RESULTS);
+    }
+    return null;
+  }
+
+  private List<FunctionInfo> extract(SourceFile sourceFile) {
+    AstResult astResult = parser.parse(sourceFile.path().toFile().getName(), sourceFile.code(), metrics);
+    if (astResult == null) {
+      return List.of();
+    }
+    return functionExtractor.extract(astResult, sourceFile.code(), minLines, oneline, metrics);
+  }
+
+  private List<FunctionInfo> extractWithCache(SourceFile sourceFile) {
+    String key = cache.key(sourceFile.code());
+    List<FunctionInfo> functions = cache.get(key, sourceFile.code());
+    if (functions != null) {
+      metrics.recordCacheHit();
+      metrics.recordMethodsCollected(functions.size());
+      return functions;
+    }
+    metrics.recordCacheMiss();
+    functions = extract(sourceFile);
+    cache.put(key, functions);
+    return functions;
+  }
+
+  /**
+   * Writes the results in batches: all the files extracted in sequence since the previous write are taken at once
+   */
+  private Void writeFiles(SequencedQueue<ExtractedFile> writeQueue, Path outputDir) throws IOException, InterruptedException {
+    StageMetrics stage = metrics.stage(WRITE_STAGE);
+    long stageStart = System.nanoTime();
+    List<ExtractedFile> batch = new ArrayList<>();
+    try (IOutputWriter outputWriter = outputWriters.open(outputDir);
+      ClustersFileWriter clustersWriter = clusterer == null ? null : new ClustersFileWriter(outputDir)) {
+      boolean endOfResults = false;
+      while (!endOfResults) {
+        stage.recordQueueDepth(writeQueue.size());
+        batch.clear();
+        writeQueue.takeAll(batch);
+        long startTime = System.nanoTime();
+        int written = 0;
+        for (ExtractedFile extractedFile : batch) {
+          if (extractedFile == END_OF_RESULTS) {
+            endOfResults = true;
+            break;
+          }
+          if (deduplicator != null) {
+            extractedFile = dropDuplicates(extractedFile);
+          }
+          if (!extractedFile.functions().isEmpty()) {
+            long fileStartTime = System.nanoTime();
+            outputWriter.write(extractedFile.path(), extractedFile.functions());
+            if (clustersWriter != null) {
+              int[] clusterIds = clusterer.assign(extractedFile.bandKeys(), metrics);
+              clustersWriter.write(extractedFile.path(), extractedFile.functions(), clusterIds);
+            }
+            metrics.recordWriteTime(System.nanoTime() - fileStartTime);
+          }
+          written++;
+        }
+        stage.recordItems(written, System.nanoTime() - startTime);
+      }
+    }
+    stage.recordWallTime(System.nanoTime() - stageStart);
+    return null;
+  }
+
+  private ExtractedFile dropDuplicates(ExtractedFile extractedFile) {
+    boolean[] firstSeen = deduplicator.firstSeen(extractedFile.fingerprints(), metrics);
+    List<FunctionInfo> functions = new ArrayList<>();
+    List<long[]> bandKeys = new ArrayList<>();
+    for (int i = 0; i < firstSeen.length; i++) {
+      if (firstSeen[i]) {
+        functions.add(extractedFile.functions().get(i));
+        if (extractedFile.bandKeys() != null) {
+          bandKeys.add(extractedFile.bandKeys()[i]);
+        }
+      }
+    }
+    return new ExtractedFile(extractedFile.path(), functions, null,
+      extractedFile.bandKeys() == null ? null : bandKeys.toArray(long[][]::new));
+  }
+
+  /**
+   * The first failing stage stops the whole pipeline, otherwise the other stages would stay blocked on their queues
+   */
+  private void submit(ExecutorService executor, Callable<Void> stage) {
+    Future<Void> future = executor.submit(() -> {
+      try {
+        return stage.call();
+      } catch (Exception | Error e) {
+        fail(e);
+        throw e;
+      }
+    });
+    stages.add(future);
+    if (failure.get() != null) {
+      future.cancel(true);
+    }
+  }
+
+  private void fail(Throwable t) {
+    if (failure.compareAndSet(null, t)) {
+      stages.forEach(stage -> stage.cancel(true));
+    }
+  }
+
+  private static void await(Future<?> stage) throws InterruptedException {
+    try {
+      stage.get();
+    } catch (ExecutionException | CancellationException e) {
+      // The failure is recorded by the stage itself
+    }
+  }
+
+  private void rethrowFailure() throws IOException {
+    Throwable t = failure.get();
+    if (t == null) {
+      return;
+    }
+    if (t instanceof IOException ioException) {
+      throw ioException;
+    }
+    if (t instanceof RuntimeException runtimeException) {
+      throw runtimeException;
+    }
+    if (t instanceof Error error) {
+      throw error;
+    }
+    throw new IllegalStateException("Extraction pipeline was interrupted", t);
+  }
+
+}
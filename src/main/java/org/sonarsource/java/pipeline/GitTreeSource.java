@@ -0,0 +1,113 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.sonarsource.java.utils.GitUtils;
+
+/**
+ * The .java files of a revision, read straight from the git object database: nothing is checked out, so it works
+ * on bare repositories as well.
+ * <p>Paths are relative to the root of the repository. They are listed lazily by a {@link TreeWalk} while the
+ * pipeline reads them, so a file can only be read after it has been listed, from the thread iterating. Files whose
+ * content is missing, because of a partial clone, are skipped.</p>
+ */
+public class GitTreeSource implements Iterable<Path>, ISourceReader, AutoCloseable {
+
+  private final Git git;
+  private final ObjectReader objectReader;
+  private final ObjectId treeId;
+  private final Map<Path, ObjectId> listedBlobs = new HashMap<>();
+
+  public GitTreeSource(Path repoDir, String revision) throws IOException {
+    this.git = GitUtils.openRepository(repoDir);
+    try {
+      this.treeId = GitUtils.resolveTree(git.getRepository(), revision);
+    } catch (IllegalArgumentException e) {
+      git.close();
+      throw e;
+    }
+    this.objectReader = git.getRepository().newObjectReader();
+  }
+
+  @Override
+  public Iterator<Path> iterator() {
+    TreeWalk treeWalk = new TreeWalk(git.getRepository(), objectReader);
+    try {
+      treeWalk.addTree(treeId);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    treeWalk.setRecursive(true);
+    treeWalk.setFilter(PathSuffixFilter.create(".java"));
+    return new Iterator<>() {
+      private Path next = advance();
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Path next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        Path current = next;
+        next = advance();
+        return current;
+      }
+
+      private Path advance() {
+        try {
+          while (treeWalk.next()) {
+            FileMode mode = treeWalk.getFileMode(0);
+            // Symbolic links and submodules are not source files
+            if (!FileMode.REGULAR_FILE.equals(mode) && !FileMode.EXECUTABLE_FILE.equals(mode)) {
+              continue;
+            }
+            Path path = Path.of(treeWalk.getPathString());
+            ObjectId blobId = treeWalk.getObjectId(0);
+            if (!objectReader.has(blobId)) {
+              // Filtered out by a partial clone
+              System.err.println("Skipping " + path + ": its content was not fetched");
+              continue;
+            }
+            listedBlobs.put(path, blobId);
+            return path;
+          }
+          treeWalk.close();
+          return null;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    };
+  }
+
+  @Override
+  public String read(Path path) throws IOException {
+    ObjectId blobId = listedBlobs.remove(path);
+    if (blobId == null) {
+      throw new IOException("File not listed from the git tree: " + path);
+    }
+    return GitUtils.readBlob(objectReader, blobId);
+  }
+
+  @Override
+  public void close() {
+    objectReader.close();
+    git.close();
+  }
+
+}
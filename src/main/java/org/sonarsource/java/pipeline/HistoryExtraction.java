@@ -0,0 +1,143 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.sonarsource.java.utils.GitUtils;
+
+/**
+ * Extracts the methods of every revision of a commit range.
+ * <p>The methods are extracted once per distinct git blob, whatever the number of commits and paths sharing it,
+ * into {@value #BLOBS_DIR}/&lt;blob id&gt;. The {@value #INDEX_FILE} file maps each (commit, path) to its blob:
+ * commits are listed from the oldest to the newest, each one with the .java files that differ from its first
+ * parent, or with all its .java files when its parent is outside the range. Deleted files are mapped to
+ * {@value #DELETED}.</p>
+ */
+public class HistoryExtraction {
+
+  public static final String BLOBS_DIR = "blobs";
+  public static final String INDEX_FILE = "history.tsv";
+  public static final String DELETED = "deleted";
+
+  private final ExtractionPipeline pipeline;
+
+  public HistoryExtraction(ExtractionPipeline pipeline) {
+    this.pipeline = pipeline;
+  }
+
+  public record Summary(int commitCount, int fileCount, int blobCount) {
+  }
+
+  /**
+   * @param range either "base..head", for the commits reachable from head but not from base, or a single revision
+   *              for its whole history
+   */
+  public Summary run(Path repoDir, String range, Path outputDir) throws IOException {
+    try (Git git = GitUtils.openRepository(repoDir);
+      ObjectReader objectReader = git.getRepository().newObjectReader()) {
+      Repository repository = git.getRepository();
+      List<ObjectId> blobIds = new ArrayList<>();
+      int commitCount = 0;
+      int fileCount = 0;
+      try (RevWalk revWalk = new RevWalk(objectReader);
+        BufferedWriter index = Files.newBufferedWriter(outputDir.resolve(INDEX_FILE), StandardCharsets.UTF_8)) {
+        markRange(repository, revWalk, range);
+        Set<ObjectId> seenBlobs = new HashSet<>();
+        for (RevCommit commit : revWalk) {
+          commitCount++;
+          for (DiffEntry entry : changedJavaFiles(revWalk, objectReader, commit)) {
+            fileCount++;
+            if (entry.getChangeType() == DiffEntry.ChangeType.DELETE) {
+              writeIndexLine(index, commit, entry.getOldPath(), DELETED);
+              continue;
+            }
+            ObjectId blobId = entry.getNewId().toObjectId();
+            writeIndexLine(index, commit, entry.getNewPath(), blobId.name());
+            if (seenBlobs.add(blobId)) {
+              blobIds.add(blobId);
+            }
+          }
+        }
+      }
+      pipeline.out().println("Found " + blobIds.size() + " distinct .java blobs in " + commitCount + " commits");
+
+      // The blob id is the output name, the content is the same for every path and commit sharing it
+      List<Path> blobFiles = blobIds.stream().map(blobId -> Path.of(blobId.name() + ".java")).toList();
+      Path blobsDir = Files.createDirectories(outputDir.resolve(BLOBS_DIR));
+      pipeline.run(blobFiles, path -> GitUtils.readBlob(objectReader, ObjectId.fromString(blobName(path))), blobsDir);
+      return new Summary(commitCount, fileCount, blobIds.size());
+    }
+  }
+
+  private static void markRange(Repository repository, RevWalk revWalk, String range) throws IOException {
+    int separator = range.indexOf("..");
+    String head = separator < 0 ? range : range.substring(separator + 2);
+    revWalk.markStart(revWalk.parseCommit(resolveCommit(repository, head)));
+    if (separator >= 0) {
+      revWalk.markUninteresting(revWalk.parseCommit(resolveCommit(repository, range.substring(0, separator))));
+    }
+    revWalk.sort(RevSort.TOPO);
+    revWalk.sort(RevSort.REVERSE, true);
+  }
+
+  private static ObjectId resolveCommit(Repository repository, String revision) throws IOException {
+    ObjectId commitId = repository.resolve(revision + "^{commit}");
+    if (commitId == null) {
+      throw new IllegalArgumentException("Unknown revision: " + revision);
+    }
+    return commitId;
+  }
+
+  /**
+   * Only the subtrees that differ from the first parent are walked, so the cost depends on the size of the change
+   */
+  private static List<DiffEntry> changedJavaFiles(RevWalk revWalk, ObjectReader objectReader, RevCommit commit)
+    throws IOException {
+    try (TreeWalk treeWalk = new TreeWalk(objectReader)) {
+      RevCommit parent = commit.getParentCount() > 0 ? commit.getParent(0) : null;
+      if (parent != null && !parent.has(RevFlag.UNINTERESTING)) {
+        treeWalk.addTree(revWalk.parseCommit(parent).getTree());
+      } else {
+        treeWalk.addTree(new EmptyTreeIterator());
+      }
+      treeWalk.addTree(commit.getTree());
+      treeWalk.setRecursive(true);
+      treeWalk.setFilter(AndTreeFilter.create(PathSuffixFilter.create(".java"), TreeFilter.ANY_DIFF));
+      return DiffEntry.scan(treeWalk);
+    }
+  }
+
+  private static void writeIndexLine(BufferedWriter index, RevCommit commit, String path, String blob) throws IOException {
+    index.write(commit.name());
+    index.write('\t');
+    index.write(path);
+    index.write('\t');
+    index.write(blob);
+    index.newLine();
+  }
+
+  private static String blobName(Path path) {
+    return path.getFileName().toString().replaceAll("\\.java$", "");
+  }
+
+}
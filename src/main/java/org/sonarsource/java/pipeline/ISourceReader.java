@@ -0,0 +1,14 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Loads the content of the source files fed to the {@link ExtractionPipeline}
+ */
+@FunctionalInterface
+public interface ISourceReader {
+
+  String read(Path path) throws IOException;
+
+}
@@ -0,0 +1,88 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.sonarsource.java.utils.FilesUtil;
+import org.sonarsource.java.utils.GitDiff;
+import org.sonarsource.java.utils.GitUtils;
+
+/**
+ * Refreshes the output of a previous extraction, made on the base revision, to match the new revision.
+ * <p>Only the .java files added or modified between the two revisions are parsed again, their content being read
+ * from the new revision. The outputs of the modified and deleted files are removed beforehand, so no stale method
+ * file is left behind. The outputs of all the other files are left untouched.</p>
+ * <p>Outputs are named after the source files, so a changed or deleted file cannot be refreshed when an unchanged file
+ * of the new revision has the same name: the run is refused, rather than removing the outputs of the other file.
+ * Names only shared by changed and deleted files, as for a file moved to another package, are refreshed, since all
+ * the files writing to them are extracted again. So are the package-info and module-info files, which declare no
+ * method: their outputs are empty whatever the file writing them.</p>
+ */
+public class IncrementalExtraction {
+
+  private static final Set<String> WITHOUT_METHODS = Set.of("package-info", "module-info");
+
+  private final ExtractionPipeline pipeline;
+
+  public IncrementalExtraction(ExtractionPipeline pipeline) {
+    this.pipeline = pipeline;
+  }
+
+  public GitDiff run(Path repoDir, String baseRevision, String newRevision, Path outputDir) throws IOException {
+    try (Git git = GitUtils.openRepository(repoDir);
+      ObjectReader objectReader = git.getRepository().newObjectReader()) {
+      GitDiff diff = GitUtils.diffJavaFiles(git.getRepository(), baseRevision, newRevision);
+      checkNoSharedOutputs(diff, GitUtils.listJavaFiles(git.getRepository(), newRevision));
+      pipeline.out().println("Found " + diff.changedFiles().size() + " added or modified and "
+        + diff.deletedFiles().size() + " deleted .java files between " + baseRevision + " and " + newRevision);
+
+      for (String deletedFile : diff.deletedFiles()) {
+        FilesUtil.deleteMethodsFiles(Path.of(deletedFile), outputDir, pipeline.oneline());
+      }
+      for (String changedFile : diff.changedFiles().keySet()) {
+        FilesUtil.deleteMethodsFiles(Path.of(changedFile), outputDir, pipeline.oneline());
+      }
+
+      Map<String, ObjectId> blobIds = diff.changedFiles();
+      List<Path> changedFiles = blobIds.keySet().stream().map(Path::of).toList();
+      pipeline.run(changedFiles, path -> GitUtils.readBlob(objectReader, blobIds.get(toGitPath(path))), outputDir);
+      return diff;
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException when a changed or deleted file has the same outputs as an unchanged file of the
+   *                                  new revision
+   */
+  private static void checkNoSharedOutputs(GitDiff diff, List<String> newFiles) {
+    Set<String> unchangedOutputs = newFiles.stream()
+      .filter(file -> !diff.changedFiles().containsKey(file))
+      .map(file -> FilesUtil.outputFileName(Path.of(file)))
+      .collect(Collectors.toSet());
+    for (String file : diff.changedFiles().keySet()) {
+      checkNoSharedOutputs(file, unchangedOutputs);
+    }
+    for (String file : diff.deletedFiles()) {
+      checkNoSharedOutputs(file, unchangedOutputs);
+    }
+  }
+
+  private static void checkNoSharedOutputs(String file, Set<String> unchangedOutputs) {
+    String outputFileName = FilesUtil.outputFileName(Path.of(file));
+    if (unchangedOutputs.contains(outputFileName) && !WITHOUT_METHODS.contains(outputFileName)) {
+      throw new IllegalArgumentException("The outputs of " + file + " are shared with another file of the same name "
+        + "and cannot be refreshed with --base, extract the whole revision instead");
+    }
+  }
+
+  private static String toGitPath(Path path) {
+    return path.toString().replace('\\', '/');
+  }
+
+}
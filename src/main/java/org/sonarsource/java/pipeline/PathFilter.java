@@ -0,0 +1,111 @@
+package org.sonarsource.java.pipeline;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Selects the files of a {@link DirectoryWalker} with globs matched against the path relative to the walked directory,
+ * e.g. {@code src/main/java/A.java}.
+ * <p>A glob starting with {@code **}{@code /} also matches at the top of the directory, so {@code **}{@code /target}
+ * matches both {@code target} and {@code module/target}. Excluded directories are skipped without being listed.</p>
+ * <p>The build output directories are told apart from packages of the same name by the build file next to them.</p>
+ */
+public final class PathFilter {
+
+  public static final List<String> DEFAULT_INCLUDES = List.of("**/*.java");
+  /**
+   * Version control, dependencies and generated sources, none of which can be a Java package
+   */
+  public static final List<String> DEFAULT_EXCLUDES = List.of("**/.git", "**/.svn", "**/.hg", "**/node_modules",
+    "**/generated-sources", "**/generated-test-sources");
+  /**
+   * Build output directories, only excluded next to a {@link #BUILD_FILES build file}: they can be Java packages too,
+   * e.g. {@code com/google/devtools/build}
+   */
+  public static final Set<String> BUILD_OUTPUT_DIRECTORIES = Set.of("target", "build");
+  private static final List<String> BUILD_FILES = List.of("pom.xml", "build.gradle", "build.gradle.kts", "build.xml");
+
+  private final List<PathMatcher> includes;
+  private final List<PathMatcher> excludes;
+  private final boolean excludeBuildOutput;
+  private final long maxFileBytes;
+
+  /**
+   * @param maxFileBytes larger files are skipped, negative for no limit
+   */
+  public PathFilter(List<String> includes, List<String> excludes, long maxFileBytes) {
+    this(includes, excludes, false, maxFileBytes);
+  }
+
+  /**
+   * @param excludeBuildOutput to skip the {@link #BUILD_OUTPUT_DIRECTORIES} next to a build file
+   * @param maxFileBytes       larger files are skipped, negative for no limit
+   */
+  public PathFilter(List<String> includes, List<String> excludes, boolean excludeBuildOutput, long maxFileBytes) {
+    this.includes = matchers(includes);
+    this.excludes = matchers(excludes);
+    this.excludeBuildOutput = excludeBuildOutput;
+    this.maxFileBytes = maxFileBytes;
+  }
+
+  public static PathFilter defaults() {
+    return new PathFilter(DEFAULT_INCLUDES, DEFAULT_EXCLUDES, true, -1);
+  }
+
+  /**
+   * @throws IllegalArgumentException when a glob is invalid
+   */
+  private static List<PathMatcher> matchers(List<String> globs) {
+    List<PathMatcher> matchers = new ArrayList<>();
+    for (String glob : globs) {
+      matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+      if (glob.startsWith("**/")) {
+        matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob.substring(3)));
+      }
+    }
+    return matchers;
+  }
+
+  /**
+   * @param directory    the directory, to look for a build file next to it
+   * @param relativePath path of the directory relative to the walked one, never empty
+   */
+  public boolean excludesDirectory(Path directory, Path relativePath) {
+    return matches(excludes, relativePath) || (excludeBuildOutput && isBuildOutput(directory));
+  }
+
+  private static boolean isBuildOutput(Path directory) {
+    if (!BUILD_OUTPUT_DIRECTORIES.contains(directory.getFileName().toString())) {
+      return false;
+    }
+    for (String buildFile : BUILD_FILES) {
+      if (Files.isRegularFile(directory.resolveSibling(buildFile))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean includesFile(Path relativePath) {
+    return matches(includes, relativePath) && !matches(excludes, relativePath);
+  }
+
+  public boolean exceedsSizeLimit(long size) {
+    return maxFileBytes >= 0 && size > maxFileBytes;
+  }
+
+  private static boolean matches(List<PathMatcher> matchers, Path path) {
+    for (PathMatcher matcher : matchers) {
+      if (matcher.matches(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,34 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.PrintStream;
+import org.sonarsource.java.cache.ExtractionCache;
+import org.sonarsource.java.dedup.MethodDeduplicator;
+import org.sonarsource.java.dedup.NearDuplicateClusterer;
+import org.sonarsource.java.output.FilesOutputWriter;
+import org.sonarsource.java.output.IOutputWriterFactory;
+
+/**
+ * Optional behaviors of an {@link ExtractionPipeline}
+ *
+ * @param cache            where to look up the methods of a file before parsing it, may be null
+ * @param outputWriters    opens the writer of each run, e.g. a packed file instead of one file per method
+ * @param writeBufferBytes memory the extracted methods waiting to be written can use, before the workers block
+ * @param deduplicator     drops the methods whose normalized content was already extracted, may be null
+ * @param clusterer        assigns a near-duplicate cluster to each method, written to a clusters file, may be null
+ * @param out              where the progress and the summaries of the run are printed
+ * @param console          whether out is a console, where the progress line is rewritten in place rather than
+ *                         printed at a slower rate
+ */
+public record PipelineOptions(ExtractionCache cache, IOutputWriterFactory outputWriters, long writeBufferBytes,
+  MethodDeduplicator deduplicator, NearDuplicateClusterer clusterer, PrintStream out, boolean console) {
+
+  /**
+   * One file per method or class, no cache, no deduplication and no clustering, printing to the standard output
+   */
+  public static PipelineOptions defaults(boolean oneline) {
+    return new PipelineOptions(null, outputDir -> new FilesOutputWriter(outputDir, oneline),
+      ExtractionPipeline.DEFAULT_WRITE_BUFFER_BYTES, null, null, System.out,
+      System.console() != null);
+  }
+
+}
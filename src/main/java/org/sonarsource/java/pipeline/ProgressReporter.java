@@ -0,0 +1,75 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+/**
+ * Prints the progress of the pipeline at a fixed rate, rather than a line per file.
+ * On a console the line is rewritten in place, otherwise a new line is printed at a slower rate.
+ */
+class ProgressReporter implements AutoCloseable {
+
+  private static final Duration CONSOLE_INTERVAL = Duration.ofSeconds(1);
+  private static final Duration LOG_INTERVAL = Duration.ofSeconds(10);
+
+  private final PerformanceMetrics metrics;
+  private final long totalFiles;
+  private final PrintStream out;
+  private final boolean console;
+  private final Instant startTime = Instant.now();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "progress");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * @param totalFiles number of files to process, negative when unknown
+   * @param out        where the progress is printed
+   * @param console      whether out is a console
+   */
+  ProgressReporter(PerformanceMetrics metrics, long totalFiles, PrintStream out, boolean console) {
+    this.metrics = metrics;
+    this.totalFiles = totalFiles;
+    this.out = out;
+    this.console = console;
+    long interval = (console ? CONSOLE_INTERVAL : LOG_INTERVAL).toMillis();
+    scheduler.scheduleAtFixedRate(this::print, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  String progressLine() {
+    long written = metrics.stage(ExtractionPipeline.WRITE_STAGE).getItemCount();
+    double seconds = Duration.between(startTime, Instant.now()).toMillis() / 1000.0;
+    return "Progress: %d%s files read, %d extracted, %d written, %d methods, %.0f files/s".formatted(
+      metrics.stage(ExtractionPipeline.READ_STAGE).getItemCount(),
+      totalFiles >= 0 ? ("/" + totalFiles) : "",
+      metrics.stage(ExtractionPipeline.EXTRACT_STAGE).getItemCount(),
+      written,
+      metrics.getMethodsCollectedCount(),
+      seconds == 0 ? 0 : written / seconds);
+  }
+
+  private void print() {
+    if (console) {
+      out.print("\r" + progressLine());
+      out.flush();
+    } else {
+      out.println(progressLine());
+    }
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    if (console) {
+      // Leaves the final state on the console
+      out.println("\r" + progressLine());
+    }
+  }
+
+}
@@ -0,0 +1,79 @@
+package org.sonarsource.java.pipeline;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Queue handing out its items in sequence order, whatever the order they were put in, bounded by the total weight
+ * of the items it holds (e.g. their size in memory).
+ * <p>A producer only blocks while the queue is full, and the next item to be taken is always accepted: otherwise
+ * the consumer could wait for it forever.</p>
+ */
+class SequencedQueue<T> {
+
+  private final long maxWeight;
+  private final ToLongFunction<T> weigher;
+  private final Map<Long, T> items = new HashMap<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition spaceAvailable = lock.newCondition();
+  private final Condition nextAvailable = lock.newCondition();
+  private long next = 0;
+  private long weight = 0;
+
+  SequencedQueue(long maxWeight, ToLongFunction<T> weigher) {
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+  }
+
+  void put(long sequence, T item) throws InterruptedException {
+    long itemWeight = weigher.applyAsLong(item);
+    lock.lock();
+    try {
+      while (sequence != next && weight + itemWeight > maxWeight) {
+        spaceAvailable.await();
+      }
+      items.put(sequence, item);
+      weight += itemWeight;
+      if (sequence == next) {
+        nextAvailable.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits for the next item, then takes it along with all the following ones already available
+   */
+  void takeAll(List<T> batch) throws InterruptedException {
+    lock.lock();
+    try {
+      T item;
+      while ((item = items.remove(next)) == null) {
+        nextAvailable.await();
+      }
+      do {
+        batch.add(item);
+        weight -= weigher.applyAsLong(item);
+        next++;
+      } while ((item = items.remove(next)) != null);
+      spaceAvailable.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int size() {
+    lock.lock();
+    try {
+      return items.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
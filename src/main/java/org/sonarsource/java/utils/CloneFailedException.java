@@ -0,0 +1,15 @@
+package org.sonarsource.java.utils;
+
+/**
+ * The remote repository could not be reached or cloned, as opposed to invalid arguments: the same clone may succeed
+ * later
+ */
+public class CloneFailedException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public CloneFailedException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+}
@@ -0,0 +1,15 @@
+package org.sonarsource.java.utils;
+
+/**
+ * How much of a remote repository to fetch
+ *
+ * @param depth          number of commits of history to fetch, 0 for the whole history
+ * @param ref            the only branch or tag to fetch, null for the default branch of the remote
+ * @param blobLimitBytes larger blobs are not fetched, when the server supports partial clones; negative to fetch
+ *                       every blob. Only for bare clones, a checkout needs every blob of the revision.
+ */
+public record CloneOptions(int depth, String ref, long blobLimitBytes) {
+
+  public static final CloneOptions FULL = new CloneOptions(0, null, -1);
+
+}
@@ -0,0 +1,9 @@
+package org.sonarsource.java.utils;
+
+/**
+ * Time spent by a worker on a single file, from parsing to the extracted methods
+ *
+ * @param size size of the file, in characters
+ */
+public record FileTiming(String path, long size, int methodCount, long nanos) {
+}
@@ -6,6 +6,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.stream.Stream;
+import org.sonarsource.java.events.WriteEvent;
 import org.sonarsource.java.extracting.FunctionInfo;
 
 public class FilesUtil {
@@ -19,7 +21,9 @@ public class FilesUtil {
    * Otherwise, a directory is created for each class and inside a file for each method
    */
   public static void writeMethodsToFile(List<FunctionInfo> functions, Path path, Path outputDir, boolean oneline) throws IOException {
-    String outputFileName = path.getFileName().toString().replaceAll("\\.java$", "");
+    WriteEvent event = new WriteEvent();
+    event.begin();
+    String outputFileName = outputFileName(path);
     if (oneline) {
       // If methods are oneliners we create a file for each class with all methods inside
       Path classFile = outputDir.resolve(outputFileName + ".txt");
@@ -27,7 +31,7 @@ public class FilesUtil {
       for (FunctionInfo function : functions) {
         sb.append(function.normalizedContent()).append("\n\n");
       }
-      writeContent(classFile, sb.toString(), functions.size());
+      writeContent(classFile, sb.toString());
     } else {
       // If methods are not oneliners we create a directory for each class and inside
       // a file for each method
@@ -35,17 +39,46 @@ public class FilesUtil {
       for (int i = 0; i < functions.size(); i++) {
         String methodFileName = outputFileName + "_" + (i + 1) + ".txt";
         Path methodOutputPath = classDir.resolve(methodFileName);
-        writeContent(methodOutputPath, functions.get(i).normalizedContent(), 1);
+        writeContent(methodOutputPath, functions.get(i).normalizedContent());
       }
     }
+    event.commit(path, functions);
+  }
 
+  /**
+   * Deletes what {@link #writeMethodsToFile} wrote for the given source file, if anything
+   */
+  public static void deleteMethodsFiles(Path path, Path outputDir, boolean oneline) throws IOException {
+    String outputFileName = outputFileName(path);
+    if (oneline) {
+      Files.deleteIfExists(outputDir.resolve(outputFileName + ".txt"));
+    } else {
+      Path classDir = outputDir.resolve(outputFileName);
+      if (Files.isDirectory(classDir)) {
+        try (Stream<Path> methodFiles = Files.list(classDir)) {
+          for (Path methodFile : methodFiles.toList()) {
+            Files.delete(methodFile);
+          }
+        }
+        Files.delete(classDir);
+      }
+    }
   }
 
-  public static void writeContent(Path outputPath, String content, int size) {
+  /**
+   * @return the name of the outputs of the source file: source files with the same name share their outputs
+   */
+  public static String outputFileName(Path path) {
+    return path.getFileName().toString().replaceAll("\\.java$", "");
+  }
+
+  /**
+   * Progress is reported by the pipeline, only failures are logged here
+   */
+  public static void writeContent(Path outputPath, String content) {
     try {
       Files.writeString(outputPath, content, StandardCharsets.UTF_8,
         StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-      System.out.println("Wrote " + size + " methods text to " + outputPath.toAbsolutePath());
     } catch (IOException e) {
       System.err.println("Was not able to write to " + outputPath.toAbsolutePath());
     }
@@ -0,0 +1,14 @@
+package org.sonarsource.java.utils;
+
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * .java files that differ between two commits, as paths relative to the root of the repository
+ *
+ * @param changedFiles added or modified files, with the id of their content in the new commit
+ * @param deletedFiles files that do not exist anymore in the new commit
+ */
+public record GitDiff(Map<String, ObjectId> changedFiles, List<String> deletedFiles) {
+}
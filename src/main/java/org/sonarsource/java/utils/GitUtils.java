@@ -2,13 +2,36 @@ package org.sonarsource.java.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.FilterSpec;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 public class GitUtils {
 
@@ -33,33 +56,178 @@ public class GitUtils {
   }
 
   public static Path cloneRepository(String repoUrl) {
+    return cloneRepository(repoUrl, false, CloneOptions.FULL, System.out);
+  }
+
+  /**
+   * @param bare to only fetch the git objects, without checking out a working tree
+   * @param out  where the progress of the clone is printed
+   * @return the temporary directory of the clone, see {@link #deleteClone(Path)}
+   * @throws IllegalArgumentException when the repository has no such branch or tag
+   * @throws CloneFailedException     when the repository cannot be reached or cloned
+   */
+  public static Path cloneRepository(String repoUrl, boolean bare, CloneOptions options, PrintStream out) {
     URI uri = URI.create(repoUrl);
     String repoName = new File(uri.getPath()).getName().replace(".git", "");
     String prefix = "cloned-" + repoName + "-";
     try {
       Path tempDir = Files.createTempDirectory(prefix);
-      System.out.println("Cloning repository to: " + tempDir);
+      out.println("Cloning repository to: " + tempDir);
 
-      clone(repoUrl, tempDir);
+      Instant startTime = Instant.now();
+      try {
+        clone(repoUrl, tempDir, bare, options);
+      } catch (RuntimeException e) {
+        deleteClone(tempDir);
+        throw e;
+      }
+      out.println("Cloned repository in " + Duration.between(startTime, Instant.now()).toMillis() + " ms");
 
       return tempDir;
     } catch (IOException e) {
-      System.err.println("Could not create temp dir: " + prefix);
-      throw new RuntimeException(e);
+      throw new CloneFailedException("Could not create temp dir: " + prefix, e);
     }
   }
 
-  private static void clone(String repoUrl, Path tempDir) {
+  /**
+   * Deletes the directory of a clone and everything inside
+   */
+  public static void deleteClone(Path directory) throws IOException {
+    emptyDirectory(directory);
+    Files.deleteIfExists(directory);
+  }
+
+  static void clone(String repoUrl, Path directory, boolean bare, CloneOptions options) {
     try {
       var cmd = Git.cloneRepository()
         .setURI(repoUrl)
-        .setDirectory(tempDir.toFile())
-        .call();
-      cmd.close();
-    } catch (GitAPIException e) {
-      System.err.println("Could not clone repo: " + repoUrl);
-      System.exit(1);
+        .setDirectory(directory.toFile())
+        .setBare(bare);
+      if (options.depth() > 0) {
+        cmd.setDepth(options.depth());
+      }
+      String ref = resolveRemoteRef(repoUrl, options.ref());
+      if (ref != null) {
+        // A single branch or tag, without the tags pointing to the rest of the history
+        cmd.setBranch(ref)
+          .setCloneAllBranches(false)
+          .setBranchesToClone(List.of(ref))
+          .setNoTags();
+      }
+      if (options.blobLimitBytes() >= 0) {
+        FilterSpec filterSpec = FilterSpec.fromFilterLine("blob:limit=" + options.blobLimitBytes());
+        cmd.setTransportConfigCallback(transport -> transport.setFilterSpec(filterSpec));
+        try {
+          cmd.call().close();
+          return;
+        } catch (TransportException e) {
+          System.err.println("Partial clone failed, fetching every blob instead: " + e.getMessage());
+          cmd.setTransportConfigCallback(null);
+          emptyDirectory(directory);
+        }
+      }
+      cmd.call().close();
+    } catch (GitAPIException | IOException e) {
+      throw new CloneFailedException("Could not clone repo: " + repoUrl, e);
+    }
+  }
+
+  private static void emptyDirectory(Path directory) throws IOException {
+    if (!Files.exists(directory)) {
+      return;
     }
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        if (!path.equals(directory)) {
+          Files.delete(path);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the full name of the ref to clone, or null to let the clone fetch every branch
+   */
+  private static String resolveRemoteRef(String repoUrl, String ref) throws GitAPIException {
+    Map<String, Ref> remoteRefs = Git.lsRemoteRepository()
+      .setRemote(repoUrl)
+      .callAsMap();
+    if (ref == null) {
+      Ref head = remoteRefs.get(Constants.HEAD);
+      return head != null && head.isSymbolic() ? head.getTarget().getName() : null;
+    }
+    for (String candidate : List.of(ref, Constants.R_HEADS + ref, Constants.R_TAGS + ref)) {
+      if (remoteRefs.containsKey(candidate)) {
+        return candidate;
+      }
+    }
+    throw new IllegalArgumentException("No branch or tag " + ref + " in " + repoUrl);
+  }
+
+  /**
+   * @throws IllegalArgumentException when the directory is not a git repository
+   */
+  public static Git openRepository(Path repoDir) throws IOException {
+    try {
+      return Git.open(repoDir.toFile());
+    } catch (RepositoryNotFoundException e) {
+      throw new IllegalArgumentException("Provided path " + repoDir + " is not a git repository", e);
+    }
+  }
+
+  /**
+   * Compares the trees of the two revisions, without looking at the working tree.
+   * Renames are reported as a deletion plus an addition.
+   */
+  public static GitDiff diffJavaFiles(Repository repository, String baseRevision, String newRevision) throws IOException {
+    Map<String, ObjectId> changedFiles = new LinkedHashMap<>();
+    List<String> deletedFiles = new ArrayList<>();
+    try (TreeWalk treeWalk = new TreeWalk(repository)) {
+      treeWalk.addTree(resolveTree(repository, baseRevision));
+      treeWalk.addTree(resolveTree(repository, newRevision));
+      treeWalk.setRecursive(true);
+      treeWalk.setFilter(AndTreeFilter.create(PathSuffixFilter.create(".java"), TreeFilter.ANY_DIFF));
+      for (DiffEntry entry : DiffEntry.scan(treeWalk)) {
+        if (entry.getChangeType() == DiffEntry.ChangeType.DELETE) {
+          deletedFiles.add(entry.getOldPath());
+        } else {
+          changedFiles.put(entry.getNewPath(), entry.getNewId().toObjectId());
+        }
+      }
+    }
+    return new GitDiff(changedFiles, deletedFiles);
+  }
+
+  /**
+   * @return the paths of the .java files of the revision, relative to the root of the repository
+   * @throws IllegalArgumentException if the revision does not exist
+   */
+  public static List<String> listJavaFiles(Repository repository, String revision) throws IOException {
+    List<String> paths = new ArrayList<>();
+    try (TreeWalk treeWalk = new TreeWalk(repository)) {
+      treeWalk.addTree(resolveTree(repository, revision));
+      treeWalk.setRecursive(true);
+      treeWalk.setFilter(PathSuffixFilter.create(".java"));
+      while (treeWalk.next()) {
+        paths.add(treeWalk.getPathString());
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the revision does not exist
+   */
+  public static ObjectId resolveTree(Repository repository, String revision) throws IOException {
+    ObjectId treeId = repository.resolve(revision + "^{tree}");
+    if (treeId == null) {
+      throw new IllegalArgumentException("Unknown revision: " + revision);
+    }
+    return treeId;
+  }
+
+  public static String readBlob(ObjectReader reader, ObjectId blobId) throws IOException {
+    return new String(reader.open(blobId, Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE), StandardCharsets.UTF_8);
   }
 
 }
@@ -0,0 +1,82 @@
+package org.sonarsource.java.utils;
+
+/**
+ * Histogram of durations in nanoseconds, with log-linear buckets: each power of two is split into
+ * {@value #SUB_BUCKETS} buckets, so percentiles are within 1/{@value #SUB_BUCKETS} of the recorded values.
+ * <p>Not thread-safe: each thread records into its own histogram, and they are merged when reporting.</p>
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final long[] counts = new long[BUCKETS];
+  private long count = 0;
+  private long sum = 0;
+  private long max = 0;
+
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts[bucket(value)]++;
+    count++;
+    sum += value;
+    max = Math.max(max, value);
+  }
+
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+    count += other.count;
+    sum += other.sum;
+    max = Math.max(max, other.max);
+  }
+
+  public long count() {
+    return count;
+  }
+
+  public long sum() {
+    return sum;
+  }
+
+  public long max() {
+    return max;
+  }
+
+  /**
+   * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+   * @return the highest value of the bucket holding the given quantile, 0 when nothing was recorded
+   */
+  public long percentile(double quantile) {
+    long rank = Math.max(1, (long) Math.ceil(quantile * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(max, highestValue(i));
+      }
+    }
+    return max;
+  }
+
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long highestValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long lowest = (1L << exponent) | ((long) (bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS));
+    return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+}
@@ -1,35 +1,285 @@
 package org.sonarsource.java.utils;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Metrics of a run. Durations are in nanoseconds, measured with {@link System#nanoTime()}.
+ * <p>Latencies are recorded per thread, without any shared counter, and merged when read: they are exact once the
+ * recording threads are done.</p>
+ */
 public class PerformanceMetrics {
 
-  private final AtomicLong totalAstGenerationTime = new AtomicLong(0);
-  private final AtomicInteger astGeneratedCount = new AtomicInteger(0);
+  /**
+   * Number of slowest files reported
+   */
+  public static final int SLOWEST_FILES = 10;
+
+  public enum Phase {
+    PARSE("parse"),
+    EXTRACT("extract"),
+    NORMALIZE("normalize"),
+    WRITE("write");
+
+    private final String label;
+
+    Phase(String label) {
+      this.label = label;
+    }
+  }
+
+  private static final Comparator<FileTiming> BY_TIME = Comparator.comparingLong(FileTiming::nanos);
+
+  private final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<Recorder> recorder = ThreadLocal.withInitial(this::newRecorder);
   private final AtomicInteger methodsCollectedCount = new AtomicInteger(0);
-  private final AtomicLong totalExtractionTime = new AtomicLong(0);
-  private final AtomicLong totalNormalizationTime = new AtomicLong(0);
+  private final AtomicInteger cacheHitCount = new AtomicInteger(0);
+  private final AtomicInteger cacheMissCount = new AtomicInteger(0);
+  private final AtomicInteger oversizedFileCount = new AtomicInteger(0);
+  private final AtomicLong uniqueMethodCount = new AtomicLong(0);
+  private final AtomicLong duplicateMethodCount = new AtomicLong(0);
+  private final AtomicLong clusteredMethodCount = new AtomicLong(0);
+  private final AtomicLong nearDuplicateCount = new AtomicLong(0);
+  private final Map<String, StageMetrics> stages = new LinkedHashMap<>();
+  private final Map<String, Long> rejectedMethods = new TreeMap<>();
+
+  /**
+   * Latencies and slowest files seen by a single thread
+   */
+  private static final class Recorder {
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+    private final PriorityQueue<FileTiming> slowestFiles = new PriorityQueue<>(SLOWEST_FILES + 1, BY_TIME);
+
+    Recorder() {
+      for (int i = 0; i < latencies.length; i++) {
+        latencies[i] = new LatencyHistogram();
+      }
+    }
+
+    void addFile(FileTiming file) {
+      if (slowestFiles.size() < SLOWEST_FILES) {
+        slowestFiles.add(file);
+      } else if (file.nanos() > slowestFiles.peek().nanos()) {
+        slowestFiles.poll();
+        slowestFiles.add(file);
+      }
+    }
+  }
+
+  private Recorder newRecorder() {
+    Recorder newRecorder = new Recorder();
+    recorders.add(newRecorder);
+    return newRecorder;
+  }
+
+  private void recordLatency(Phase phase, long time) {
+    recorder.get().latencies[phase.ordinal()].record(time);
+  }
 
   public void recordAstGenerationTime(long time) {
-    totalAstGenerationTime.addAndGet(time);
-    astGeneratedCount.incrementAndGet();
+    recordLatency(Phase.PARSE, time);
   }
 
   public void recordMethodsCollected(int count) {
     methodsCollectedCount.addAndGet(count);
   }
 
+  public int getMethodsCollectedCount() {
+    return methodsCollectedCount.get();
+  }
+
   public void recordExtractionTime(long time) {
-    totalExtractionTime.addAndGet(time);
+    recordLatency(Phase.EXTRACT, time);
   }
 
   public void recordNormalizationTime(long time) {
-    totalNormalizationTime.addAndGet(time);
+    recordLatency(Phase.NORMALIZE, time);
+  }
+
+  public void recordWriteTime(long time) {
+    recordLatency(Phase.WRITE, time);
+  }
+
+  /**
+   * Keeps the file if it is one of the {@value #SLOWEST_FILES} slowest ones seen so far by the current thread
+   */
+  public void recordFile(String path, long size, int methodCount, long time) {
+    recorder.get().addFile(new FileTiming(path, size, methodCount, time));
+  }
+
+  /**
+   * @return the latencies of the phase, merged over all threads
+   */
+  public LatencyHistogram getLatencies(Phase phase) {
+    LatencyHistogram merged = new LatencyHistogram();
+    for (Recorder threadRecorder : recorders) {
+      merged.add(threadRecorder.latencies[phase.ordinal()]);
+    }
+    return merged;
+  }
+
+  /**
+   * @return the {@value #SLOWEST_FILES} slowest files, slowest first
+   */
+  public List<FileTiming> getSlowestFiles() {
+    List<FileTiming> files = new ArrayList<>();
+    for (Recorder threadRecorder : recorders) {
+      files.addAll(threadRecorder.slowestFiles);
+    }
+    files.sort(BY_TIME.reversed());
+    return files.subList(0, Math.min(SLOWEST_FILES, files.size()));
+  }
+
+  public void recordCacheHit() {
+    cacheHitCount.incrementAndGet();
+  }
+
+  public void recordCacheMiss() {
+    cacheMissCount.incrementAndGet();
+  }
+
+  public int getCacheHitCount() {
+    return cacheHitCount.get();
+  }
+
+  public int getCacheMissCount() {
+    return cacheMissCount.get();
+  }
+
+  /**
+   * @param filter the filter term, or {@code --ml}, which rejected the methods
+   */
+  public void recordRejectedMethods(String filter, int count) {
+    synchronized (rejectedMethods) {
+      rejectedMethods.merge(filter, (long) count, Long::sum);
+    }
+  }
+
+  /**
+   * @return the number of methods rejected by each filter, by filter
+   */
+  public Map<String, Long> getRejectedMethods() {
+    synchronized (rejectedMethods) {
+      return new TreeMap<>(rejectedMethods);
+    }
+  }
+
+  public void recordOversizedFile() {
+    oversizedFileCount.incrementAndGet();
+  }
+
+  public int getOversizedFileCount() {
+    return oversizedFileCount.get();
+  }
+
+  public void recordUniqueMethods(int count) {
+    uniqueMethodCount.addAndGet(count);
+  }
+
+  public void recordDuplicateMethods(int count) {
+    duplicateMethodCount.addAndGet(count);
+  }
+
+  public long getUniqueMethodCount() {
+    return uniqueMethodCount.get();
+  }
+
+  public long getDuplicateMethodCount() {
+    return duplicateMethodCount.get();
+  }
+
+  /**
+   * @param joined how many of the methods joined an existing cluster rather than starting a new one
+   */
+  public void recordClusteredMethods(int count, int joined) {
+    clusteredMethodCount.addAndGet(count);
+    nearDuplicateCount.addAndGet(joined);
+  }
+
+  public long getClusteredMethodCount() {
+    return clusteredMethodCount.get();
+  }
+
+  public long getNearDuplicateCount() {
+    return nearDuplicateCount.get();
+  }
+
+  /**
+   * @return the metrics of the given pipeline stage, created on first access
+   */
+  public StageMetrics stage(String name) {
+    synchronized (stages) {
+      return stages.computeIfAbsent(name, StageMetrics::new);
+    }
   }
 
   @Override
   public String toString() {
+    StringBuilder sb = new StringBuilder(summary());
+    if (oversizedFileCount.get() > 0) {
+      sb.append("Files over the size limit: %d skipped%n".formatted(oversizedFileCount.get()));
+    }
+    if (cacheHitCount.get() + cacheMissCount.get() > 0) {
+      sb.append("Extraction cache: %d hits, %d misses%n".formatted(cacheHitCount.get(), cacheMissCount.get()));
+    }
+    Map<String, Long> rejected = getRejectedMethods();
+    if (!rejected.isEmpty()) {
+      sb.append("Methods rejected by filters:\n");
+      rejected.forEach((filter, count) -> sb.append("  %s: %d%n".formatted(filter, count)));
+    }
+    if (uniqueMethodCount.get() + duplicateMethodCount.get() > 0) {
+      sb.append("Deduplication: %d unique methods, %d duplicates dropped%n".formatted(uniqueMethodCount.get(),
+        duplicateMethodCount.get()));
+    }
+    if (clusteredMethodCount.get() > 0) {
+      sb.append("Near-duplicates: %d methods in %d clusters%n".formatted(clusteredMethodCount.get(),
+        clusteredMethodCount.get() - nearDuplicateCount.get()));
+    }
+    synchronized (stages) {
+      for (StageMetrics stage : stages.values()) {
+        sb.append(stage).append("\n");
+      }
+    }
+    appendLatencies(sb);
+    return sb.toString();
+  }
+
+  private void appendLatencies(StringBuilder sb) {
+    sb.append("Latencies (p50 / p90 / p99 / max):\n");
+    for (Phase phase : Phase.values()) {
+      LatencyHistogram latencies = getLatencies(phase);
+      if (latencies.count() > 0) {
+        sb.append("  %-9s %s / %s / %s / %s over %d%n".formatted(phase.label, millis(latencies.percentile(0.5)),
+          millis(latencies.percentile(0.9)), millis(latencies.percentile(0.99)), millis(latencies.max()), latencies.count()));
+      }
+    }
+    List<FileTiming> slowestFiles = getSlowestFiles();
+    if (!slowestFiles.isEmpty()) {
+      sb.append("Slowest files:\n");
+      for (FileTiming file : slowestFiles) {
+        sb.append("  %s  %s (%d chars, %d methods)%n".formatted(millis(file.nanos()), file.path(), file.size(),
+          file.methodCount()));
+      }
+    }
+  }
+
+  private static String millis(long nanos) {
+    return "%.3f ms".formatted(nanos / 1_000_000.0);
+  }
+
+  private String summary() {
+    LatencyHistogram parse = getLatencies(Phase.PARSE);
+    LatencyHistogram extract = getLatencies(Phase.EXTRACT);
+    LatencyHistogram normalize = getLatencies(Phase.NORMALIZE);
     return """
       Performance Metrics:
       --------------------
@@ -39,13 +289,13 @@ public class PerformanceMetrics {
       Total Extraction Time: %d ns ~ %.2f ms
       --of which normalization time: %d ns ~ %.2f ms
       """.formatted(
-      totalAstGenerationTime.get(),
-      totalAstGenerationTime.get() / 1_000_000.0,
-      astGeneratedCount.get(),
+      parse.sum(),
+      parse.sum() / 1_000_000.0,
+      parse.count(),
       methodsCollectedCount.get(),
-      totalExtractionTime.get(),
-      totalExtractionTime.get() / 1_000_000.0,
-      totalNormalizationTime.get(),
-      totalNormalizationTime.get() / 1_000_000.0);
+      extract.sum(),
+      extract.sum() / 1_000_000.0,
+      normalize.sum(),
+      normalize.sum() / 1_000_000.0);
   }
 }
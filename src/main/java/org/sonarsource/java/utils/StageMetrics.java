@@ -0,0 +1,72 @@
+package org.sonarsource.java.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of a single pipeline stage: throughput and depth of the queue feeding it.
+ */
+public class StageMetrics {
+
+  private final String name;
+  private final AtomicLong itemCount = new AtomicLong(0);
+  private final AtomicLong totalBusyTime = new AtomicLong(0);
+  private final AtomicLong wallTime = new AtomicLong(0);
+  private final AtomicLong queueDepthSum = new AtomicLong(0);
+  private final AtomicLong queueDepthSamples = new AtomicLong(0);
+  private final AtomicInteger maxQueueDepth = new AtomicInteger(0);
+
+  StageMetrics(String name) {
+    this.name = name;
+  }
+
+  public void recordItem(long busyTime) {
+    itemCount.incrementAndGet();
+    totalBusyTime.addAndGet(busyTime);
+  }
+
+  public void recordItems(int count, long busyTime) {
+    itemCount.addAndGet(count);
+    totalBusyTime.addAndGet(busyTime);
+  }
+
+  public void recordQueueDepth(int depth) {
+    queueDepthSum.addAndGet(depth);
+    queueDepthSamples.incrementAndGet();
+    maxQueueDepth.accumulateAndGet(depth, Math::max);
+  }
+
+  /**
+   * When the stage runs on several threads, the longest running one gives the wall time of the stage
+   */
+  public void recordWallTime(long time) {
+    wallTime.accumulateAndGet(time, Math::max);
+  }
+
+  public long getItemCount() {
+    return itemCount.get();
+  }
+
+  public double getThroughput() {
+    long wall = wallTime.get();
+    return wall == 0 ? 0 : itemCount.get() / (wall / 1_000_000_000.0);
+  }
+
+  public int getMaxQueueDepth() {
+    return maxQueueDepth.get();
+  }
+
+  @Override
+  public String toString() {
+    String stage = "Stage %s: %d files, busy %.2f ms, throughput %.2f files/s".formatted(
+      name,
+      itemCount.get(),
+      totalBusyTime.get() / 1_000_000.0,
+      getThroughput());
+    long samples = queueDepthSamples.get();
+    if (samples == 0) {
+      return stage;
+    }
+    return stage + ", queue depth avg %.2f / max %d".formatted((double) queueDepthSum.get() / samples, maxQueueDepth.get());
+  }
+}
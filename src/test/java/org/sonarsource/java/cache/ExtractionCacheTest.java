@@ -0,0 +1,163 @@
+package org.sonarsource.java.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.java.extracting.ECJFunctionExtractor;
+import org.sonarsource.java.extracting.FunctionInfo;
+import org.sonarsource.java.output.FilesOutputWriter;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.ParserPool;
+import org.sonarsource.java.pipeline.ExtractionPipeline;
+import org.sonarsource.java.pipeline.PipelineOptions;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExtractionCacheTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testEntriesAreSharedBetweenInstancesWithTheSameSettings() throws IOException {
+    String longContent = "x".repeat(100_000);
+    String source = "class A { void m() { } " + longContent + " }";
+    var functions = List.of(
+      new FunctionInfo("m", source, "void m() { }", 10, 22),
+      new FunctionInfo("\u00e9", source, longContent, 23, 100_023));
+
+    var cache = new ExtractionCache(tempDir, 1024 * 1024, "ecj");
+    String key = cache.key(source);
+    assertNull(cache.get(key, source));
+    cache.put(key, functions);
+
+    List<FunctionInfo> cached = new ExtractionCache(tempDir, 1024 * 1024, "ecj").get(key, source);
+    assertEquals(functions, cached);
+    assertEquals(longContent, cached.get(1).content());
+    assertEquals(List.of(), getAfterPut(cache, cache.key("class B { }"), List.of()));
+
+    var otherSettings = new ExtractionCache(tempDir, 1024 * 1024, "ts");
+    assertNotEquals(key, otherSettings.key(source));
+    assertNull(otherSettings.get(otherSettings.key(source), source));
+  }
+
+  @Test
+  void testLeastRecentlyUsedEntriesAreEvicted() throws IOException, InterruptedException {
+    var cache = new ExtractionCache(tempDir, 10_000, "ecj");
+    String source = "a".repeat(1000);
+    var functions = List.of(new FunctionInfo("m", source, source, 0, 1000));
+    String firstKey = cache.key("0");
+    cache.put(firstKey, functions);
+    for (int i = 1; i < 30; i++) {
+      // Keep the first entry recently used, modification times are used to order the entries
+      Thread.sleep(2);
+      cache.get(firstKey, source);
+      Thread.sleep(2);
+      cache.put(cache.key(Integer.toString(i)), functions);
+    }
+
+    assertTrue(cache.sizeBytes() <= 10_000);
+    assertEquals(functions, cache.get(firstKey, source));
+    assertNull(cache.get(cache.key("1"), source));
+    assertEquals(cache.sizeBytes(), new ExtractionCache(tempDir, 10_000, "ecj").sizeBytes());
+  }
+
+  @Test
+  void testDamagedEntriesAreMisses() throws IOException {
+    var cache = new ExtractionCache(tempDir, 1024 * 1024, "ecj");
+    String source = "class A { void m() { } }";
+    String key = cache.key(source);
+    var functions = List.of(new FunctionInfo("m", source, "void m() { }", 10, 22));
+    cache.put(key, functions);
+    Path entry = entry(tempDir);
+
+    // A huge count, a negative length, a huge length, a truncated entry
+    for (byte[] damaged : List.of(entryBytes(Integer.MAX_VALUE), entryBytes(1, -5), entryBytes(1, Integer.MAX_VALUE),
+      entryBytes(1, 1))) {
+      Files.write(entry, damaged);
+      assertNull(cache.get(key, source));
+      assertFalse(Files.exists(entry));
+      cache.put(key, functions);
+      assertEquals(functions, cache.get(key, source));
+    }
+
+    // Offsets out of the source
+    String longerSource = source + " ".repeat(100);
+    cache.put(key, List.of(new FunctionInfo("m", longerSource, "void m() { }", 10, 100)));
+    assertNull(cache.get(key, source));
+    assertFalse(Files.exists(entry));
+  }
+
+  @Test
+  void testReplacedEntriesAreCountedOnce() throws IOException {
+    var cache = new ExtractionCache(tempDir, 1024 * 1024, "ecj");
+    String source = "class A { void m() { } }";
+    var functions = List.of(new FunctionInfo("m", source, "void m() { }", 10, 22));
+    cache.put(cache.key(source), functions);
+    long entrySize = cache.sizeBytes();
+    cache.put(cache.key(source), functions);
+
+    assertEquals(entrySize, cache.sizeBytes());
+    assertEquals(entrySize, Files.size(entry(tempDir)));
+  }
+
+  private static Path entry(Path cacheDir) throws IOException {
+    try (Stream<Path> paths = Files.walk(cacheDir)) {
+      return paths.filter(path -> path.toString().endsWith(".bin")).findFirst().orElseThrow();
+    }
+  }
+
+  private static byte[] entryBytes(int... ints) throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    try (var out = new DataOutputStream(bytes)) {
+      for (int value : ints) {
+        out.writeInt(value);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  @Test
+  void testPipelineSkipsParsingOnHits() throws IOException {
+    Path source = tempDir.resolve("A.java");
+    Files.writeString(source, "class A { void m() { int x = 1; } }");
+    Path cacheDir = tempDir.resolve("cache");
+
+    var firstRun = run(source, cacheDir, tempDir.resolve("out1"));
+    assertEquals(0, firstRun.getCacheHitCount());
+    assertEquals(1, firstRun.getCacheMissCount());
+
+    var secondRun = run(source, cacheDir, tempDir.resolve("out2"));
+    assertEquals(1, secondRun.getCacheHitCount());
+    assertEquals(0, secondRun.getCacheMissCount());
+    assertTrue(secondRun.toString().contains("Number of AST Generated: 0"));
+    assertEquals(Files.readString(tempDir.resolve("out1/A.txt")), Files.readString(tempDir.resolve("out2/A.txt")));
+  }
+
+  private static List<FunctionInfo> getAfterPut(ExtractionCache cache, String key, List<FunctionInfo> functions) {
+    cache.put(key, functions);
+    return cache.get(key, "");
+  }
+
+  private static PerformanceMetrics run(Path source, Path cacheDir, Path outputDir) throws IOException {
+    var metrics = new PerformanceMetrics();
+    Files.createDirectories(outputDir);
+    new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, true, 1, metrics,
+      new PipelineOptions(new ExtractionCache(cacheDir, 1024 * 1024, "ecj"), dir -> new FilesOutputWriter(dir, true),
+        ExtractionPipeline.DEFAULT_WRITE_BUFFER_BYTES, null, null, System.out, false))
+      .run(List.of(source), outputDir);
+    return metrics;
+  }
+
+}
@@ -0,0 +1,155 @@
+package org.sonarsource.java.daemon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExtractionDaemonTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testJobsRunConcurrentlyWithTheirOwnMetrics() throws IOException, InterruptedException {
+    Path sources = Files.createDirectories(tempDir.resolve("src"));
+    Files.writeString(sources.resolve("A.java"), "class A { void m() { int x = 1; } }");
+
+    try (var daemon = new ExtractionDaemon(0, 2, tempDir.resolve("tokens"))) {
+      daemon.start();
+      List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+      for (String parser : List.of("--ecj", "--ts", "--ts-query", "--fast")) {
+        responses.add(post(daemon, "--local", sources.toString(), tempDir.resolve("out" + parser).toString(), parser, "--oneline"));
+      }
+      for (var response : responses) {
+        assertEquals(200, response.join().statusCode());
+        assertTrue(response.join().body().contains("Total Methods Collected: 1"));
+      }
+      for (String parser : List.of("--ecj", "--ts", "--ts-query", "--fast")) {
+        assertEquals("void m() { int x = 1; }\n\n", Files.readString(tempDir.resolve("out" + parser).resolve("A.txt")));
+      }
+
+      // The summary of the packed formats is part of the output of the job
+      Path packedOutput = tempDir.resolve("packed");
+      var packed = post(daemon, "--local", sources.toString(), packedOutput.toString(), "--format", "jsonl").join();
+      assertEquals(200, packed.statusCode());
+      assertTrue(packed.body().contains("Wrote 1 methods of 1 files"));
+
+      var invalid = post(daemon, "--local", sources.toString(), tempDir.resolve("out--ecj").toString()).join();
+      assertEquals(400, invalid.statusCode());
+      assertTrue(invalid.body().contains("already exists"));
+      var list = withToken(daemon, HttpRequest.newBuilder(jobs(daemon))).GET().build();
+      assertEquals(200, HttpClient.newHttpClient().send(list, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+  }
+
+  @Test
+  void testRequestsFromWebPagesOrWithoutTheTokenAreForbidden() throws IOException {
+    Path sources = Files.createDirectories(tempDir.resolve("src"));
+    Files.writeString(sources.resolve("A.java"), "class A { void m() { int x = 1; } }");
+    Path output = tempDir.resolve("out");
+    String body = String.join("\n", "--local", sources.toString(), output.toString());
+
+    Path tokenFile;
+    try (var daemon = new ExtractionDaemon(0, 1, tempDir.resolve("tokens"))) {
+      daemon.start();
+      tokenFile = daemon.tokenFile();
+      if (tokenFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)));
+      }
+      var client = HttpClient.newHttpClient();
+      var crossOrigin = withToken(daemon, HttpRequest.newBuilder(jobs(daemon))).header("Origin", "http://example.com")
+        .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+      assertEquals(403, client.sendAsync(crossOrigin, HttpResponse.BodyHandlers.ofString()).join().statusCode());
+      var withoutToken = HttpRequest.newBuilder(jobs(daemon)).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+      assertEquals(403, client.sendAsync(withoutToken, HttpResponse.BodyHandlers.ofString()).join().statusCode());
+      var wrongToken = HttpRequest.newBuilder(jobs(daemon)).header(ExtractionDaemon.TOKEN_HEADER, "0")
+        .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+      assertEquals(403, client.sendAsync(wrongToken, HttpResponse.BodyHandlers.ofString()).join().statusCode());
+      // As sent by a browser after a DNS rebinding, which the HTTP client does not allow to forge
+      assertTrue(rawGet(daemon, "attacker.example.com").startsWith("HTTP/1.1 403"));
+      assertTrue(rawGet(daemon, "localhost:" + daemon.port()).startsWith("HTTP/1.1 200"));
+      assertFalse(Files.exists(output));
+    }
+    assertFalse(Files.exists(tokenFile));
+  }
+
+  @Test
+  void testClonesAreDeletedAndCloneFailuresAreServerErrors() throws IOException, GitAPIException {
+    // A unique name, to find the clone among the other temporary files
+    String repoName = "repo-" + UUID.randomUUID();
+    Path repoDir = Files.createDirectories(tempDir.resolve(repoName));
+    try (Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+      Files.writeString(repoDir.resolve("A.java"), "class A { void m() { int x = 1; } }");
+      git.add().addFilepattern(".").call();
+      git.commit().setMessage("commit").setSign(false).call();
+    }
+
+    try (var daemon = new ExtractionDaemon(0, 1, tempDir.resolve("tokens"))) {
+      daemon.start();
+      var cloned = post(daemon, "--git", repoDir.toUri().toString(), tempDir.resolve("out").toString()).join();
+      assertEquals(200, cloned.statusCode());
+      assertTrue(cloned.body().contains("Total Methods Collected: 1"));
+
+      Path missingRepo = tempDir.resolve("missing-" + repoName);
+      var failed = post(daemon, "--git", missingRepo.toUri().toString(), tempDir.resolve("out2").toString()).join();
+      assertEquals(500, failed.statusCode());
+      assertTrue(failed.body().contains("Could not clone repo"));
+    }
+    try (Stream<Path> tempFiles = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+      assertTrue(tempFiles.noneMatch(path -> path.getFileName().toString().contains(repoName)));
+    }
+  }
+
+  private static String rawGet(ExtractionDaemon daemon, String host) throws IOException {
+    try (var socket = new Socket(InetAddress.getLoopbackAddress(), daemon.port())) {
+      OutputStream out = socket.getOutputStream();
+      out.write(("GET /jobs HTTP/1.1\r\nHost: " + host + "\r\n" + ExtractionDaemon.TOKEN_HEADER + ": "
+        + Files.readString(daemon.tokenFile()) + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      InputStream in = socket.getInputStream();
+      return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+    }
+  }
+
+  private static CompletableFuture<HttpResponse<String>> post(ExtractionDaemon daemon, String... args) {
+    var request = withToken(daemon, HttpRequest.newBuilder(jobs(daemon)))
+      .POST(HttpRequest.BodyPublishers.ofString(String.join("\n", args))).build();
+    return HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private static HttpRequest.Builder withToken(ExtractionDaemon daemon, HttpRequest.Builder request) {
+    try {
+      return request.header(ExtractionDaemon.TOKEN_HEADER, Files.readString(daemon.tokenFile()));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static URI jobs(ExtractionDaemon daemon) {
+    return URI.create("http://127.0.0.1:" + daemon.port() + "/jobs");
+  }
+
+}
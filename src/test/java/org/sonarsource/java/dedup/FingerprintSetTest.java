@@ -0,0 +1,71 @@
+package org.sonarsource.java.dedup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FingerprintSetTest {
+
+  @Test
+  void testFingerprints() {
+    assertEquals(Fingerprint.of("void m() { }"), Fingerprint.of(new StringBuilder("void m() { }")));
+    assertNotEquals(Fingerprint.of("void m() { }"), Fingerprint.of("void n() { }"));
+    // Same chars at another position of a block, and texts differing only in length
+    assertNotEquals(Fingerprint.of("ab"), Fingerprint.of("ba"));
+    assertNotEquals(Fingerprint.of(""), Fingerprint.of("\0"));
+  }
+
+  @Test
+  void testAddGrowsTheTables() {
+    var set = new FingerprintSet();
+    long initialBytes = set.capacityBytes();
+    for (int i = 0; i < 200_000; i++) {
+      assertTrue(set.add(Fingerprint.of("method" + i)));
+    }
+    for (int i = 0; i < 200_000; i += 1000) {
+      assertFalse(set.add(Fingerprint.of("method" + i)));
+    }
+    assertTrue(set.add(new Fingerprint(0, 0)));
+    assertFalse(set.add(new Fingerprint(0, 0)));
+    assertEquals(200_001, set.size());
+    assertTrue(set.capacityBytes() > initialBytes);
+  }
+
+  @Test
+  void testConcurrentAddsKeepOneCopy() throws InterruptedException, ExecutionException {
+    var set = new FingerprintSet();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> added = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        added.add(executor.submit(() -> {
+          int count = 0;
+          for (int i = 0; i < 50_000; i++) {
+            if (set.add(Fingerprint.of("method" + i))) {
+              count++;
+            }
+          }
+          return count;
+        }));
+      }
+      int total = 0;
+      for (Future<Integer> future : added) {
+        total += future.get();
+      }
+      assertEquals(50_000, total);
+      assertEquals(50_000, set.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,117 @@
+package org.sonarsource.java.dedup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.java.extracting.ECJFunctionExtractor;
+import org.sonarsource.java.extracting.FunctionInfo;
+import org.sonarsource.java.output.ClustersFileWriter;
+import org.sonarsource.java.output.FilesOutputWriter;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.ParserPool;
+import org.sonarsource.java.pipeline.ExtractionPipeline;
+import org.sonarsource.java.pipeline.PipelineOptions;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class NearDuplicateClustererTest {
+
+  private static final String SUM = "int sum(int[] values) { int total = 0; for (int i = 0; i < values.length; i++) "
+    + "{ total += values[i]; } return total; }";
+  private static final String RENAMED_SUM = "int add(int[] xs) { int s = 10; for (int k = 0; k < xs.length; k++) "
+    + "{ s += xs[k]; } return s; }";
+  private static final String PRINT = "void print(List<String> lines) { if (lines.isEmpty()) { throw new "
+    + "IllegalStateException(\"empty\"); } lines.forEach(System.out::println); }";
+
+  private static final String[] TOKENS = {"if ", "for ", "while ", "return ", "new ", "throw ", "try ", "catch ",
+    "( ", ") ", "{ ", "} ", "; ", "+ ", "- ", "* ", "/ ", "= ", "< ", "> ", "x ", "1 ", "this ", "null "};
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testClonesDifferingByIdentifiersAndLiteralsShareACluster() {
+    var clusterer = new NearDuplicateClusterer(1 << 20);
+    var metrics = new PerformanceMetrics();
+
+    int[] clusterIds = clusterer.assign(List.of(function(SUM), function(PRINT), function(RENAMED_SUM)), metrics);
+
+    assertArrayEquals(new int[] {0, 1, 0}, clusterIds);
+    assertEquals(3, metrics.getClusteredMethodCount());
+    assertEquals(1, metrics.getNearDuplicateCount());
+  }
+
+  @Test
+  void testFullIndexStillAssignsClusters() {
+    // Smallest index possible: a single table per segment
+    var clusterer = new NearDuplicateClusterer(0);
+    var metrics = new PerformanceMetrics();
+    var random = new SplittableRandom(42);
+    for (int i = 0; i < 5000; i++) {
+      StringBuilder body = new StringBuilder("void m() { ");
+      for (int j = 0; j < 40; j++) {
+        body.append(TOKENS[random.nextInt(TOKENS.length)]);
+      }
+      clusterer.assign(List.of(function(body.append("}").toString())), metrics);
+    }
+
+    assertEquals(5000, metrics.getClusteredMethodCount());
+    assertNotEquals(0, clusterer.droppedBandCount());
+  }
+
+  @Test
+  void testClustersAreWrittenNextToTheMethods() throws IOException {
+    Path file = tempDir.resolve("A.java");
+    Files.writeString(file, "class A { " + SUM + " " + PRINT + " " + RENAMED_SUM + " }");
+    Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+
+    new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, true, 1, new PerformanceMetrics(),
+      new PipelineOptions(null, dir -> new FilesOutputWriter(dir, true), 0, null, new NearDuplicateClusterer(1 << 20),
+        System.out, false))
+      .run(List.of(file), outputDir);
+
+    List<String> lines = Files.readAllLines(outputDir.resolve(ClustersFileWriter.CLUSTERS_FILE));
+    assertEquals(3, lines.size());
+    assertEquals(file + "\tsum\t10\t" + (10 + SUM.length()) + "\t0", lines.get(0));
+    assertEquals("print", lines.get(1).split("\t")[1]);
+    assertEquals("1", lines.get(1).split("\t")[4]);
+    assertEquals("0", lines.get(2).split("\t")[4]);
+  }
+
+  @Test
+  void testClustersDoNotDependOnTheNumberOfThreads() throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      Path file = tempDir.resolve("A" + i + ".java");
+      // Near-duplicates spread over the files, each one could start its cluster
+      Files.writeString(file, "class A" + i + " { " + (i % 2 == 0 ? SUM : RENAMED_SUM).replace("0", Integer.toString(i))
+        + " " + PRINT.replace("empty", "empty " + i) + " }");
+      files.add(file);
+    }
+
+    assertEquals(clusters(files, 1), clusters(files, 4));
+  }
+
+  private List<String> clusters(List<Path> files, int threads) throws IOException {
+    Path outputDir = Files.createDirectories(tempDir.resolve("out" + threads));
+    new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, true, threads,
+      new PerformanceMetrics(),
+      new PipelineOptions(null, dir -> new FilesOutputWriter(dir, true), 0, null, new NearDuplicateClusterer(1 << 20),
+        System.out, false))
+      .run(files, outputDir);
+    return Files.readAllLines(outputDir.resolve(ClustersFileWriter.CLUSTERS_FILE));
+  }
+
+  private static FunctionInfo function(String content) {
+    return new FunctionInfo("m", content, content, 0, content.length());
+  }
+
+}
@@ -0,0 +1,71 @@
+package org.sonarsource.java.events;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.java.extracting.ECJFunctionExtractor;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.ParserPool;
+import org.sonarsource.java.pipeline.ExtractionPipeline;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExtractorEventTest {
+
+  private static final List<String> EVENTS = List.of("org.sonarsource.java.Parse", "org.sonarsource.java.Extract",
+    "org.sonarsource.java.Normalize", "org.sonarsource.java.Write");
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testEveryPhaseEmitsEvents() throws IOException {
+    Path file = tempDir.resolve("A.java");
+    String code = "class A {\n  void caf\u00e9() { }\n  void m() { /* comment */ }\n}\n";
+    Files.writeString(file, code);
+    Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      EVENTS.forEach(name -> recording.enable(name).withoutThreshold());
+      recording.start();
+      new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, false, 1, new PerformanceMetrics())
+        .run(List.of(file), outputDir);
+      recording.stop();
+      Path dump = tempDir.resolve("recording.jfr");
+      recording.dump(dump);
+      events = RecordingFile.readAllEvents(dump);
+    }
+
+    Map<String, List<RecordedEvent>> byName = events.stream()
+      .filter(event -> event.getString("path") != null && event.getString("path").equals(file.toString()))
+      .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+    assertEquals(1, byName.get("org.sonarsource.java.Parse").size());
+    assertEquals(code.getBytes(StandardCharsets.UTF_8).length, byName.get("org.sonarsource.java.Parse").get(0).getLong("size"));
+    assertEquals(2, byName.get("org.sonarsource.java.Extract").get(0).getInt("methodCount"));
+    assertEquals(2, byName.get("org.sonarsource.java.Normalize").size());
+    assertEquals("void caf\u00e9() { }".length() + 1, byName.get("org.sonarsource.java.Normalize").get(0).getLong("size"));
+    RecordedEvent write = byName.get("org.sonarsource.java.Write").get(0);
+    assertEquals(2, write.getInt("methodCount"));
+    assertTrue(write.getDuration().toNanos() >= 0);
+  }
+
+  @Test
+  void testUtf8Length() {
+    String text = "a\u00e9\u20AC\uD83D\uDE00";
+    assertEquals(text.getBytes(StandardCharsets.UTF_8).length, ExtractorEvent.utf8Length(text, 0, text.length()));
+    assertEquals(2, ExtractorEvent.utf8Length(text, 1, 2));
+  }
+
+}
@@ -57,7 +57,7 @@ class ECJFunctionExtractorTest {
       .map(e -> Arguments.of(e.getKey(), e.getValue()));
   }
 
-  private static Map<String, String> getNormalizationSamples() {
+  static Map<String, String> getNormalizationSamples() {
     Map<String, String> samples = new LinkedHashMap<>(); // keep order
 
     samples.put("""
@@ -0,0 +1,108 @@
+package org.sonarsource.java.extracting;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.IParser;
+import org.sonarsource.java.parsing.TSitParser;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MethodFilterTest {
+
+  private static final String CODE = """
+    class C {
+      private int x;
+      C() { }
+      public int getX() { return x; }
+      public void setX(int x) { this.x = x; }
+      void setOther(int y) { this.x = x; }
+      @org.junit.jupiter.api.Test
+      void testSomething() {
+        int a = 1;
+        int b = 2;
+      }
+      @Generated("tool") public static int generated() { return 1; }
+      private synchronized void longOne() {
+        // comment
+        int a = 1;
+
+        int b = 2;
+      }
+      /**
+       * Counted from its return type,
+       * by both parsers
+       */
+      int documented() {
+        return 1;
+      }
+    }
+    """;
+
+  @ParameterizedTest(name = "{0}")
+  @CsvSource(delimiter = '|', value = {
+    "constructor | C",
+    "method | getX setX setOther testSomething generated longOne documented",
+    "accessor | getX setX",
+    "!accessor !constructor | setOther testSomething generated longOne documented",
+    "public | getX setX generated",
+    "static public | generated",
+    "@Test | testSomething",
+    "!@Test !@Generated method | getX setX setOther longOne documented",
+    "name~set.* | setX setOther",
+    "lines>=4 | testSomething longOne",
+    "lines<4 lines>1 | documented",
+    "lines=6 | longOne",
+    "lines<=1 synchronized | ''",
+  })
+  void testBothExtractorsSelectTheSameMethods(String filter, String expected) {
+    List<String> expectedNames = expected.isEmpty() ? List.of() : List.of(expected.split(" "));
+    assertEquals(expectedNames, names(new ECJFunctionExtractor(MethodFilter.parse(filter)), new ECJParser(), 0));
+    assertEquals(expectedNames, names(new TSitFunctionExtractor(MethodFilter.parse(filter)), new TSitParser(), 0));
+    assertEquals(expectedNames, names(new TSitQueryFunctionExtractor(MethodFilter.parse(filter)), new TSitParser(), 0));
+  }
+
+  @Test
+  void testRejectionsAreCountedByTerm() {
+    var metrics = new PerformanceMetrics();
+    var extractor = new ECJFunctionExtractor(MethodFilter.parse("!constructor !accessor"));
+    // setOther, generated and documented are rejected from their line span, longOne spans 6 lines but has 4 once
+    // normalized
+    extractor.extract(new ECJParser().parse("C", CODE, metrics), CODE, 5, false, metrics);
+
+    assertEquals(Map.of("!constructor", 1L, "!accessor", 2L, "--ml 5", 4L), metrics.getRejectedMethods());
+    assertEquals(1, metrics.getMethodsCollectedCount());
+    assertEquals(List.of("longOne"), names(new TSitFunctionExtractor(), new TSitParser(), 6));
+  }
+
+  @Test
+  void testLinesEndedByCarriageReturnsAreCounted() {
+    String code = "class C {\r  void m() {\r    int a = 1;\r  }\r}";
+    var metrics = new PerformanceMetrics();
+    for (var extractor : List.of(new TSitFunctionExtractor(MethodFilter.parse("lines=3")), new TSitQueryFunctionExtractor())) {
+      assertEquals(1, extractor.extract(new TSitParser().parse("C", code, metrics), code, 3, false, metrics).size());
+    }
+  }
+
+  @Test
+  void testInvalidFilters() {
+    assertThrows(IllegalArgumentException.class, () -> MethodFilter.parse(" "));
+    assertThrows(IllegalArgumentException.class, () -> MethodFilter.parse("lines>>3"));
+    assertThrows(IllegalArgumentException.class, () -> MethodFilter.parse("name~("));
+    assertThrows(IllegalArgumentException.class, () -> MethodFilter.parse("volatile"));
+    assertEquals("!@Test lines<=200", MethodFilter.parse("  !@Test\tlines<=200 ").toString());
+  }
+
+  private static List<String> names(IFunctionExtractor extractor, IParser parser, int minLines) {
+    var metrics = new PerformanceMetrics();
+    return extractor.extract(parser.parse("C", CODE, metrics), CODE, minLines, false, metrics).stream()
+      .map(FunctionInfo::name)
+      .toList();
+  }
+
+}
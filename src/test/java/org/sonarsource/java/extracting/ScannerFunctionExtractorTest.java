@@ -0,0 +1,88 @@
+package org.sonarsource.java.extracting;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.ScannerParser;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScannerFunctionExtractorTest {
+
+  ECJParser ecjParser = new ECJParser();
+  ScannerParser scannerParser = new ScannerParser();
+
+  @ParameterizedTest(name = "Scanner output should match the DOM output for input: {0}")
+  @MethodSource("provideSamples")
+  void testSameOutputAsDom(String method) {
+    String code = "class C { " + method + " }";
+    assertSameOutputAsDom(code, true);
+    assertSameOutputAsDom(code, false);
+  }
+
+  @Test
+  void testMethodBoundaries() {
+    String code = """
+      package p;
+      import java.util.function.Supplier;
+      @SuppressWarnings({"unchecked", "rawtypes"})
+      class C {
+        int f = 1; // trailing f
+        /* block before */
+        /** javadoc */
+        // line after javadoc
+        @Deprecated
+        public void a() { String s = "}"; char c = '{'; }
+        /** doc b */ void b() {}
+        void d() {} /* trailing d */ /** doc e */
+        <T extends Comparable<T>> void e(T t) throws Exception {}
+        static {
+          new Thread() { public void run() { } }.start();
+          class Local { void local() {} }
+        }
+        /** doc f */
+        C() {}
+        Supplier<Object> supplier = () -> new Object() { public String toString() { return ""; } };
+        Object[] anonymous = { new Object() { public int hashCode() { return 1; } } };
+        int[] array = new int[] { 1, 2 };
+        class Inner { void g() { new Object() { void notExtracted() {} }; } }
+        enum En { A { void i() {} }, B(new Object() { void j() {} }) { }; En() {} En(Object o) {} void k() {} }
+        record R(int x) { R { } R(String s) { this(1); } void record() {} }
+        interface I { default void l() {} void m(); }
+        @interface An { int v() default 1; int[] w() default { 1 }; }
+        void textBlock() { String s = \"""
+          }
+          \"""; }
+        abstract void noBody();
+      }
+      """;
+    assertSameOutputAsDom(code, false);
+    var pm = new PerformanceMetrics();
+    List<String> names = new ScannerFunctionExtractor().extract(scannerParser.parse("C", code, pm), code, 0, false, pm)
+      .stream()
+      .map(FunctionInfo::name)
+      .toList();
+    assertEquals(List.of("a", "b", "d", "e", "run", "local", "C", "toString", "hashCode", "g", "i", "j", "En", "En", "k",
+      "R", "R", "record", "l", "textBlock"), names);
+  }
+
+  private void assertSameOutputAsDom(String code, boolean oneline) {
+    var pm = new PerformanceMetrics();
+    List<FunctionInfo> expected = new ECJFunctionExtractor().extract(ecjParser.parse("C", code, pm), code, 0, oneline, pm);
+    List<FunctionInfo> actual = new ScannerFunctionExtractor().extract(scannerParser.parse("C", code, pm), code, 0, oneline, pm);
+    assertEquals(expected, actual);
+  }
+
+  private static Stream<String> provideSamples() {
+    return ECJFunctionExtractorTest.getNormalizationSamples()
+      .keySet()
+      .stream()
+      .filter(Objects::nonNull);
+  }
+
+}
@@ -12,6 +12,7 @@ import org.sonarsource.java.parsing.TSitParser;
 import org.sonarsource.java.utils.PerformanceMetrics;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TSFunctionExtractorTest {
 
@@ -43,6 +44,33 @@ class TSFunctionExtractorTest {
     assertEquals(0, functions.size());
   }
 
+  @Test
+  void testNonAsciiSource() {
+    // Tree-sitter offsets are UTF-8 byte offsets, which differ from char offsets on non-ASCII sources
+    var code = """
+      class C {
+        public void caf\u00e9() { String s = "\u00e9\u00e8 \uD83D\uDE00"; /* \u00fc */ }
+        public void m2() {
+          // \u00e7a
+          return;
+        }
+      }
+      """;
+    var pm = new PerformanceMetrics();
+    var ast = parser.parse("Test", code, pm);
+    List<FunctionInfo> functions = extractor.extract(ast, code, 0, false, pm);
+    assertEquals(2, functions.size());
+    assertEquals("caf\u00e9", functions.get(0).name());
+    assertEquals("public void caf\u00e9() { String s = \"\u00e9\u00e8 \uD83D\uDE00\";  }", functions.get(0).normalizedContent());
+    assertEquals("m2", functions.get(1).name());
+    assertEquals("public void m2() {\n    \n    return;\n  }", functions.get(1).normalizedContent());
+    for (FunctionInfo function : functions) {
+      // Offsets are converted to char offsets, like the other extractors
+      assertTrue(function.content().startsWith("public void " + function.name() + "()"));
+      assertTrue(function.content().endsWith("}"));
+    }
+  }
+
   private static Stream<Arguments> provideNormalizationSamples() {
     return getNormalizationSamples()
       .entrySet()
@@ -50,7 +78,7 @@ class TSFunctionExtractorTest {
       .map(e -> Arguments.of(e.getKey(), e.getValue()));
   }
 
-  private static Map<String, String> getNormalizationSamples() {
+  static Map<String, String> getNormalizationSamples() {
     Map<String, String> samples = new LinkedHashMap<>(); // keep order
 
     samples.put("""
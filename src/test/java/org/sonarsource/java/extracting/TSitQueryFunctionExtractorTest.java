@@ -0,0 +1,61 @@
+package org.sonarsource.java.extracting;
+
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.sonarsource.java.parsing.TSitParser;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TSitQueryFunctionExtractorTest {
+
+  TSitParser parser = new TSitParser();
+
+  @ParameterizedTest(name = "Query output should match the tree walker output for input: {0}")
+  @MethodSource("provideSamples")
+  void testSameOutputAsTreeWalker(String method) {
+    String code = "class C { " + method + " }";
+    assertSameOutputAsTreeWalker(code, true);
+    assertSameOutputAsTreeWalker(code, false);
+  }
+
+  @Test
+  void testMethodsAndConstructors() {
+    String code = """
+      abstract class C {
+        /** doc */
+        C() { }
+        public C(int i) throws Exception { /* inside */ }
+        void noModifier() { }
+        @Override public String toString() { return ""; }
+        void outer() { new Object() { void notExtracted() { } }; }
+        abstract void noBody();
+        class Inner { <T> void generic(T t) { } }
+        interface I { default void defaultMethod() { } void m(); }
+      }
+      """;
+    assertSameOutputAsTreeWalker(code, false);
+    var pm = new PerformanceMetrics();
+    List<String> names = new TSitQueryFunctionExtractor().extract(parser.parse("C", code, pm), code, 0, false, pm)
+      .stream()
+      .map(FunctionInfo::name)
+      .toList();
+    assertEquals(List.of("C", "C", "noModifier", "toString", "outer", "generic", "defaultMethod"), names);
+  }
+
+  private void assertSameOutputAsTreeWalker(String code, boolean oneline) {
+    var pm = new PerformanceMetrics();
+    var ast = parser.parse("C", code, pm);
+    List<FunctionInfo> expected = new TSitFunctionExtractor().extract(ast, code, 0, oneline, pm);
+    List<FunctionInfo> actual = new TSitQueryFunctionExtractor().extract(ast, code, 0, oneline, pm);
+    assertEquals(expected, actual);
+  }
+
+  private static Stream<String> provideSamples() {
+    return TSFunctionExtractorTest.getNormalizationSamples().keySet().stream();
+  }
+
+}
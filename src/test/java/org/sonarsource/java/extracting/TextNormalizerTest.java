@@ -0,0 +1,83 @@
+package org.sonarsource.java.extracting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TextNormalizerTest {
+
+  /**
+   * Line breaks, the whitespace of regular expressions, other whitespace, control chars and a surrogate pair
+   */
+  private static final String ALPHABET = "ab{};\n\r \t\u000B\f\u001C\u2003\u00A0\u0001\uD83D\uDE00";
+
+  @Test
+  void testSameOutputAsLineByLineNormalization() {
+    var random = new SplittableRandom(7);
+    for (int n = 0; n < 20_000; n++) {
+      StringBuilder text = new StringBuilder();
+      int length = random.nextInt(40);
+      for (int i = 0; i < length; i++) {
+        text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+      }
+      // Comment ranges, possibly empty, adjacent or sticking out of the method
+      int offset = 100;
+      List<int[]> comments = new ArrayList<>();
+      for (int position = random.nextInt(10); position < length + 5; position += 1 + random.nextInt(10)) {
+        int end = position + random.nextInt(6);
+        comments.add(new int[] {offset + position, offset + end});
+        position = end;
+      }
+      int[] starts = comments.stream().mapToInt(c -> c[0]).toArray();
+      int[] ends = comments.stream().mapToInt(c -> c[1]).toArray();
+      var index = new CommentIndex(starts, ends, starts.length);
+      String methodText = text.toString();
+      String source = "x".repeat(offset) + methodText + "x".repeat(10);
+
+      String expected = referenceCleanJavaCode(referenceStripComments(methodText, offset, starts, ends));
+      assertEquals(expected, TextNormalizer.normalizeMethodText(source, offset, offset + length, index, 0, false));
+      assertEquals(referenceOneLine(expected), TextNormalizer.normalizeMethodText(source, offset, offset + length, index, 0,
+        true));
+      assertEquals(referenceOneLine(methodText), TextNormalizer.normalizeOneLine(methodText));
+    }
+  }
+
+  @Test
+  void testMinLinesCountsNonBlankLines() {
+    String methodText = "void m() {\n\n  \t\r\n  run();\n}";
+    CommentIndex none = new CommentIndex();
+
+    assertEquals("void m() {\n  run();\n}", TextNormalizer.normalizeMethodText(methodText, 0, methodText.length(), none, 3,
+      false));
+    assertEquals("void m() { run();}", TextNormalizer.normalizeMethodText(methodText, 0, methodText.length(), none, 3, true));
+    assertNull(TextNormalizer.normalizeMethodText(methodText, 0, methodText.length(), none, 4, false));
+  }
+
+  private static String referenceStripComments(String methodText, int offset, int[] starts, int[] ends) {
+    StringBuilder cleaned = new StringBuilder(methodText);
+    for (int i = starts.length - 1; i >= 0; i--) {
+      if (starts[i] >= offset && ends[i] <= offset + methodText.length()) {
+        cleaned.delete(starts[i] - offset, ends[i] - offset);
+      }
+    }
+    return cleaned.toString();
+  }
+
+  private static String referenceCleanJavaCode(String code) {
+    StringBuilder cleaned = new StringBuilder();
+    code.lines().map(String::stripTrailing).filter(line -> !line.isEmpty()).forEach(line -> cleaned.append(line).append("\n"));
+    if (!cleaned.isEmpty()) {
+      cleaned.setLength(cleaned.length() - 1);
+    }
+    return cleaned.toString();
+  }
+
+  private static String referenceOneLine(String text) {
+    return text.replaceAll("[\\n\\r]+", "").replaceAll("\\s+", " ").trim();
+  }
+
+}
@@ -0,0 +1,104 @@
+package org.sonarsource.java.output;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.java.extracting.ECJFunctionExtractor;
+import org.sonarsource.java.extracting.FunctionInfo;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.ParserPool;
+import org.sonarsource.java.pipeline.ExtractionPipeline;
+import org.sonarsource.java.pipeline.PipelineOptions;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PackedOutputWriterTest {
+
+  private static final FunctionInfo METHOD = new FunctionInfo("caf\u00e9", "class A { void caf\u00e9(){} }",
+    "void caf\u00e9() {\n\t\"\\\" \u0001 }", 10, 23);
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testJsonl() throws IOException {
+    try (IOutputWriter writer = OutputFormat.JSONL.open(tempDir, false, false, System.out)) {
+      writer.write(Path.of("src", "A.java"), List.of(METHOD, METHOD));
+    }
+
+    String expected = "{\"name\":\"caf\u00e9\",\"path\":\"src/A.java\",\"start\":10,\"end\":23,"
+      + "\"content\":\"void caf\u00e9() {\\n\\t\\\"\\\\\\\" \\u0001 }\"}\n";
+    assertEquals(expected + expected, Files.readString(tempDir.resolve("methods.jsonl"), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testGzipBinary() throws IOException {
+    try (IOutputWriter writer = OutputFormat.BINARY.open(tempDir, false, true, System.out)) {
+      writer.write(Path.of("A.java"), List.of(METHOD));
+      writer.write(Path.of("p", "B.java"), List.of(METHOD));
+    }
+
+    try (DataInputStream in = new DataInputStream(new GZIPInputStream(Files.newInputStream(tempDir.resolve("methods.bin.gz"))))) {
+      assertArrayEquals(BinaryOutputWriter.MAGIC, in.readNBytes(4));
+      assertEquals(BinaryOutputWriter.VERSION, in.readInt());
+      assertEquals(List.of("A.java", "p/B.java"), List.of(readRecord(in), readRecord(in)));
+      assertEquals(-1, in.read());
+    }
+  }
+
+  @Test
+  void testSameClassNamesAreAllWritten() throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Path file = Files.createDirectories(tempDir.resolve("p" + i)).resolve("A.java");
+      Files.writeString(file, "class A { void m" + i + "() { } }");
+      files.add(file);
+    }
+    Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+
+    new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, false, 2, new PerformanceMetrics(),
+      new PipelineOptions(null, dir -> OutputFormat.JSONL.open(dir, false, true, System.out),
+        ExtractionPipeline.DEFAULT_WRITE_BUFFER_BYTES, null, null, System.out, false))
+      .run(files, outputDir);
+
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(outputDir.resolve("methods.jsonl.gz")))) {
+      List<String> lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+      assertEquals(3, lines.size());
+      for (int i = 0; i < 3; i++) {
+        assertEquals("{\"name\":\"m" + i + "\",\"path\":\"" + files.get(i) + "\",\"start\":10,\"end\":23,\"content\":\"void m" + i + "() { }\"}",
+          lines.get(i));
+      }
+    }
+  }
+
+  /**
+   * @return the path of the record, after checking the other fields
+   */
+  private static String readRecord(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    String name = readString(in);
+    String path = readString(in);
+    assertEquals(METHOD.startOffset(), in.readInt());
+    assertEquals(METHOD.endOffset(), in.readInt());
+    String content = readString(in);
+    assertEquals(METHOD.name(), name);
+    assertEquals(METHOD.normalizedContent(), content);
+    assertEquals(4 * 5 + (name + path + content).getBytes(StandardCharsets.UTF_8).length, length);
+    return path;
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,66 @@
+package org.sonarsource.java.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.junit.jupiter.api.Test;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParserPoolTest {
+
+  @Test
+  void testOneParserPerThread() throws Exception {
+    Set<IParser> created = ConcurrentHashMap.newKeySet();
+    var pool = new ParserPool(() -> {
+      var parser = new ECJParser();
+      created.add(parser);
+      return parser;
+    });
+    var pm = new PerformanceMetrics();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> lengths = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        String sourceCode = "class C" + i + " { void m() { int x = " + i + "; } }";
+        lengths.add(executor.submit(() -> ((CompilationUnit) pool.parse("C", sourceCode, pm).ast()).getLength()));
+      }
+      for (int i = 0; i < lengths.size(); i++) {
+        String sourceCode = "class C" + i + " { void m() { int x = " + i + "; } }";
+        assertEquals(sourceCode.length(), lengths.get(i).get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(created.size() <= 4);
+  }
+
+  @Test
+  void testParsersOutliveTheThreadsUsingThem() throws Exception {
+    Set<IParser> created = ConcurrentHashMap.newKeySet();
+    var pool = new ParserPool(() -> {
+      var parser = new ECJParser();
+      created.add(parser);
+      return parser;
+    });
+    var pm = new PerformanceMetrics();
+    for (int run = 0; run < 5; run++) {
+      // A new executor for each run, as the extraction pipeline does
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        executor.submit(() -> pool.parse("C", "class C { }", pm)).get();
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    assertEquals(1, created.size());
+  }
+
+}
@@ -0,0 +1,99 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DirectoryWalkerTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testFilesAreFoundInTheOrderOfFilesWalk() throws IOException {
+    for (int i = 0; i < 30; i++) {
+      Path dir = Files.createDirectories(tempDir.resolve("d" + (i % 3)).resolve("p" + i));
+      Files.writeString(dir.resolve("A" + i + ".java"), "class A { }");
+      Files.writeString(dir.resolve("B" + i + ".java"), "class B { }");
+      Files.writeString(dir.resolve("README.md"), "");
+    }
+    Files.writeString(tempDir.resolve("Root.java"), "class Root { }");
+
+    List<Path> expected;
+    try (Stream<Path> paths = Files.walk(tempDir)) {
+      expected = paths.filter(Files::isRegularFile).filter(p -> p.toString().endsWith(".java")).toList();
+    }
+    assertEquals(61, expected.size());
+    assertEquals(expected, walk(new PathFilter(PathFilter.DEFAULT_INCLUDES, List.of(), -1), new PerformanceMetrics()));
+  }
+
+  @Test
+  void testExcludedDirectoriesAndFilesAreSkipped() throws IOException {
+    write("src/main/java/A.java", "src/test/java/ATest.java", "target/generated-sources/G.java", ".git/X.java",
+      "module/pom.xml", "module/build/B.java", "module/node_modules/N.java", "module/src/C.java");
+
+    assertEquals(List.of("module/src/C.java", "src/main/java/A.java", "src/test/java/ATest.java"),
+      relativePaths(walk(PathFilter.defaults(), new PerformanceMetrics())));
+
+    var filter = new PathFilter(List.of("src/**"), List.of("**/test"), -1);
+    assertEquals(List.of("src/main/java/A.java"), relativePaths(walk(filter, new PerformanceMetrics())));
+  }
+
+  @Test
+  void testBuildOutputIsOnlyExcludedNextToABuildFile() throws IOException {
+    write("pom.xml", "target/classes/T.java", "src/main/java/com/x/build/Foo.java",
+      "src/main/java/com/x/target/Bar.java", "gradle/build.gradle", "gradle/build/G.java");
+
+    assertEquals(List.of("src/main/java/com/x/build/Foo.java", "src/main/java/com/x/target/Bar.java"),
+      relativePaths(walk(PathFilter.defaults(), new PerformanceMetrics())));
+    assertEquals(4, walk(new PathFilter(PathFilter.DEFAULT_INCLUDES, List.of(), -1), new PerformanceMetrics()).size());
+  }
+
+  @Test
+  void testFilesOverTheSizeLimitAreSkipped() throws IOException {
+    Files.writeString(tempDir.resolve("Small.java"), "class S { }");
+    Files.writeString(tempDir.resolve("Large.java"), "class L { }" + " ".repeat(100));
+    var metrics = new PerformanceMetrics();
+
+    assertEquals(List.of(tempDir.resolve("Small.java")), walk(new PathFilter(PathFilter.DEFAULT_INCLUDES, List.of(), 100), metrics));
+    assertEquals(1, metrics.getOversizedFileCount());
+  }
+
+  @Test
+  void testMissingDirectoryFails() {
+    try (var walker = new DirectoryWalker(tempDir.resolve("missing"), PathFilter.defaults(), 2, new PerformanceMetrics())) {
+      assertThrows(UncheckedIOException.class, walker::iterator);
+    }
+  }
+
+  private void write(String... relativePaths) throws IOException {
+    for (String relativePath : relativePaths) {
+      Path file = tempDir.resolve(relativePath);
+      Files.createDirectories(file.getParent());
+      Files.writeString(file, "class A { }");
+    }
+  }
+
+  private List<Path> walk(PathFilter filter, PerformanceMetrics metrics) {
+    List<Path> files = new ArrayList<>();
+    try (var walker = new DirectoryWalker(tempDir, filter, 4, metrics)) {
+      walker.forEach(files::add);
+    }
+    return files;
+  }
+
+  private List<String> relativePaths(List<Path> files) {
+    return files.stream().map(file -> tempDir.relativize(file).toString().replace('\\', '/')).sorted().toList();
+  }
+
+}
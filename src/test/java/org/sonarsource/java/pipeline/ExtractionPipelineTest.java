@@ -0,0 +1,105 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.sonarsource.java.dedup.MethodDeduplicator;
+import org.sonarsource.java.extracting.ECJFunctionExtractor;
+import org.sonarsource.java.output.FilesOutputWriter;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.ParserPool;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExtractionPipelineTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testAllFilesAreWrittenInOrder() throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      // Same file name in different directories: the last one must win, as in a sequential run
+      Path dir = Files.createDirectories(tempDir.resolve("src").resolve("p" + i));
+      Path file = dir.resolve("A.java");
+      Files.writeString(file, "class A { void m" + i + "() { int x = " + i + "; } }");
+      files.add(file);
+    }
+    Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+    var metrics = new PerformanceMetrics();
+
+    new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, true, 4, metrics)
+      .run(files, outputDir);
+
+    assertEquals("void m49() { int x = 49; }\n\n", Files.readString(outputDir.resolve("A.txt")));
+    assertEquals(50, metrics.stage("read").getItemCount());
+    assertEquals(50, metrics.stage("parse/extract").getItemCount());
+    assertEquals(50, metrics.stage("write").getItemCount());
+  }
+
+  @Test
+  void testWorkersWaitForTheWriterWithoutWriteBuffer() throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      Path file = tempDir.resolve("A" + i + ".java");
+      Files.writeString(file, "class A" + i + " { void m() { } }");
+      files.add(file);
+    }
+    Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+    var metrics = new PerformanceMetrics();
+
+    new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, true, 4, metrics,
+      new PipelineOptions(null, dir -> new FilesOutputWriter(dir, true), 0, null, null, System.out, false))
+      .run(files, outputDir);
+
+    assertEquals(20, metrics.stage("write").getItemCount());
+    for (int i = 0; i < 20; i++) {
+      assertEquals("void m() { }\n\n", Files.readString(outputDir.resolve("A" + i + ".txt")));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 4})
+  void testDuplicateMethodsAreWrittenOnce(int threads) throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      Path file = tempDir.resolve("A" + i + ".java");
+      // Same body, formatted differently in each file
+      Files.writeString(file, "class A" + i + " { void m() {" + " ".repeat(i + 1) + "run(); }  void m" + i + "() { } }");
+      files.add(file);
+    }
+    Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+    var metrics = new PerformanceMetrics();
+
+    // The first copy in the input order is kept, whichever worker extracted it first
+    new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, true, threads, metrics,
+      new PipelineOptions(null, dir -> new FilesOutputWriter(dir, true), 0, new MethodDeduplicator(), null, System.out,
+        false))
+      .run(files, outputDir);
+
+    assertEquals("void m() { run(); }\n\nvoid m0() { }\n\n", Files.readString(outputDir.resolve("A0.txt")));
+    assertEquals("void m1() { }\n\n", Files.readString(outputDir.resolve("A1.txt")));
+    assertEquals(11, metrics.getUniqueMethodCount());
+    assertEquals(9, metrics.getDuplicateMethodCount());
+  }
+
+  @Test
+  void testReadFailureStopsThePipeline() throws IOException {
+    Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+    var pipeline = new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, true, 2,
+      new PerformanceMetrics());
+    List<Path> files = List.of(tempDir.resolve("Missing.java"));
+
+    assertThrows(IOException.class, () -> pipeline.run(files, outputDir));
+  }
+
+}
@@ -0,0 +1,64 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.java.extracting.ECJFunctionExtractor;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.ParserPool;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GitTreeSourceTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testFilesAreReadFromABareRepository() throws IOException, GitAPIException {
+    Path repoDir = Files.createDirectories(tempDir.resolve("repo"));
+    try (Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+      write(repoDir, "a/A.java", "class A { void a() { int x = 1; } }");
+      write(repoDir, "a/b/B.java", "class B { void b() { } }");
+      write(repoDir, "README.md", "readme");
+      git.add().addFilepattern(".").call();
+      git.commit().setMessage("commit").setSign(false).call();
+    }
+    Path bareDir = tempDir.resolve("bare.git");
+    Git.cloneRepository().setURI(repoDir.toUri().toString()).setDirectory(bareDir.toFile()).setBare(true).call().close();
+
+    List<Path> listed = new ArrayList<>();
+    Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+    try (var gitTree = new GitTreeSource(bareDir, "HEAD")) {
+      gitTree.forEach(listed::add);
+      new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, true, 2, new PerformanceMetrics())
+        .run(gitTree, gitTree, outputDir);
+    }
+
+    assertEquals(List.of(Path.of("a/A.java"), Path.of("a/b/B.java")), listed);
+    assertEquals("void a() { int x = 1; }\n\n", Files.readString(outputDir.resolve("A.txt")));
+    assertEquals("void b() { }\n\n", Files.readString(outputDir.resolve("B.txt")));
+  }
+
+  @Test
+  void testUnknownRevision() throws GitAPIException {
+    Git.init().setDirectory(tempDir.toFile()).call().close();
+
+    assertThrows(IllegalArgumentException.class, () -> new GitTreeSource(tempDir, "HEAD"));
+  }
+
+  private static void write(Path repoDir, String path, String content) throws IOException {
+    Path file = repoDir.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, content);
+  }
+
+}
@@ -0,0 +1,117 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.java.extracting.ECJFunctionExtractor;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.ParserPool;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HistoryExtractionTest {
+
+  private static final String A1 = "class A { void a1() { } }";
+  private static final String A2 = "class A { void a2() { } }";
+  private static final String B = "class B { void b() { } }";
+
+  @TempDir
+  Path tempDir;
+
+  private final List<String> commits = new ArrayList<>();
+
+  @Test
+  void testEachDistinctBlobIsParsedOnce() throws IOException, GitAPIException {
+    Path repoDir = createRepository();
+    Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+    var metrics = new PerformanceMetrics();
+
+    var summary = new HistoryExtraction(pipeline(metrics)).run(repoDir, "HEAD", outputDir);
+
+    assertEquals(new HistoryExtraction.Summary(4, 7, 3), summary);
+    assertEquals(3, metrics.stage("parse/extract").getItemCount());
+    assertEquals(List.of(
+      indexLine(0, "A.java", A1),
+      indexLine(0, "p/B.java", B),
+      indexLine(1, "A.java", A2),
+      indexLine(2, "C.java", A1),
+      indexLine(2, "p/B.java", HistoryExtraction.DELETED),
+      indexLine(3, "A.java", A1),
+      indexLine(3, "p/B.java", B)), Files.readAllLines(outputDir.resolve(HistoryExtraction.INDEX_FILE)));
+    assertEquals("void a1() { }\n\n", Files.readString(outputDir.resolve("blobs").resolve(blobId(A1) + ".txt")));
+    assertEquals("void a2() { }\n\n", Files.readString(outputDir.resolve("blobs").resolve(blobId(A2) + ".txt")));
+  }
+
+  @Test
+  void testCommitRange() throws IOException, GitAPIException {
+    Path repoDir = createRepository();
+    Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+
+    var summary = new HistoryExtraction(pipeline(new PerformanceMetrics())).run(repoDir, commits.get(1) + "..HEAD", outputDir);
+
+    // The parent of the first commit is outside the range, so all its files are listed
+    assertEquals(new HistoryExtraction.Summary(2, 4, 3), summary);
+    assertEquals(List.of(
+      indexLine(2, "A.java", A2),
+      indexLine(2, "C.java", A1),
+      indexLine(3, "A.java", A1),
+      indexLine(3, "p/B.java", B)), Files.readAllLines(outputDir.resolve(HistoryExtraction.INDEX_FILE)));
+  }
+
+  /**
+   * Commits: add A and B, modify A, delete B and add C with the original content of A, revert A and restore B
+   */
+  private Path createRepository() throws IOException, GitAPIException {
+    Path repoDir = Files.createDirectories(tempDir.resolve("repo"));
+    try (Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+      write(repoDir, "A.java", A1);
+      write(repoDir, "p/B.java", B);
+      commit(git);
+      write(repoDir, "A.java", A2);
+      commit(git);
+      Files.delete(repoDir.resolve("p/B.java"));
+      write(repoDir, "C.java", A1);
+      commit(git);
+      write(repoDir, "A.java", A1);
+      write(repoDir, "p/B.java", B);
+      commit(git);
+    }
+    return repoDir;
+  }
+
+  private void commit(Git git) throws GitAPIException {
+    git.add().addFilepattern(".").call();
+    git.add().addFilepattern(".").setUpdate(true).call();
+    commits.add(git.commit().setMessage("commit " + commits.size()).setSign(false).call().getName());
+  }
+
+  private String indexLine(int commit, String path, String content) {
+    String blob = HistoryExtraction.DELETED.equals(content) ? content : blobId(content);
+    return commits.get(commit) + "\t" + path + "\t" + blob;
+  }
+
+  private static String blobId(String content) {
+    return new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8)).name();
+  }
+
+  private static ExtractionPipeline pipeline(PerformanceMetrics metrics) {
+    return new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, true, 2, metrics);
+  }
+
+  private static void write(Path repoDir, String path, String content) throws IOException {
+    Path file = repoDir.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, content);
+  }
+
+}
@@ -0,0 +1,156 @@
+package org.sonarsource.java.pipeline;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.java.extracting.ECJFunctionExtractor;
+import org.sonarsource.java.parsing.ECJParser;
+import org.sonarsource.java.parsing.ParserPool;
+import org.sonarsource.java.utils.GitDiff;
+import org.sonarsource.java.utils.PerformanceMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IncrementalExtractionTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testOutputMatchesAFullExtractionOfTheNewRevision() throws IOException, GitAPIException {
+    Path repoDir = Files.createDirectories(tempDir.resolve("repo"));
+    try (Git git = Git.init().setDirectory(repoDir.toFile()).setInitialBranch("main").call()) {
+      write(repoDir, "src/A.java", "class A { void a1() { } void a2() { } void a3() { } }");
+      write(repoDir, "src/B.java", "class B { void b() { } }");
+      write(repoDir, "src/C.java", "class C { void c() { } }");
+      write(repoDir, "README.md", "readme");
+      String base = commit(git);
+
+      Path incrementalOutput = Files.createDirectories(tempDir.resolve("incremental"));
+      pipeline(false).run(javaFiles(repoDir), incrementalOutput);
+
+      write(repoDir, "src/A.java", "class A { void a1() { } }");
+      Files.delete(repoDir.resolve("src/B.java"));
+      write(repoDir, "src/D.java", "class D { void d() { } }");
+      write(repoDir, "README.md", "updated readme");
+      commit(git);
+      // Uncommitted changes must not be picked up
+      write(repoDir, "src/C.java", "class C { void uncommitted() { } }");
+
+      GitDiff diff = new IncrementalExtraction(pipeline(false)).run(repoDir, base, "HEAD", incrementalOutput);
+
+      assertEquals(List.of("src/A.java", "src/D.java"), List.copyOf(diff.changedFiles().keySet()));
+      assertEquals(List.of("src/B.java"), diff.deletedFiles());
+
+      write(repoDir, "src/C.java", "class C { void c() { } }");
+      Path fullOutput = Files.createDirectories(tempDir.resolve("full"));
+      pipeline(false).run(javaFiles(repoDir), fullOutput);
+      assertEquals(contents(fullOutput), contents(incrementalOutput));
+    }
+  }
+
+  @Test
+  void testFilesSharingTheirOutputsAreNotRefreshed() throws IOException, GitAPIException {
+    Path repoDir = Files.createDirectories(tempDir.resolve("repo"));
+    try (Git git = Git.init().setDirectory(repoDir.toFile()).setInitialBranch("main").call()) {
+      write(repoDir, "a/Foo.java", "class Foo { void a() { } }");
+      write(repoDir, "b/Foo.java", "class Foo { void b() { } }");
+      String base = commit(git);
+      Path output = Files.createDirectories(tempDir.resolve("output"));
+      pipeline(true).run(List.of(repoDir.resolve("b/Foo.java")), output);
+
+      write(repoDir, "a/Foo.java", "class Foo { void changed() { } }");
+      commit(git);
+      var incrementalExtraction = new IncrementalExtraction(pipeline(true));
+
+      var e = assertThrows(IllegalArgumentException.class, () -> incrementalExtraction.run(repoDir, base, "HEAD", output));
+      assertEquals("The outputs of a/Foo.java are shared with another file of the same name and cannot be refreshed "
+        + "with --base, extract the whole revision instead", e.getMessage());
+      assertEquals(Map.of("Foo.txt", "void b() { }\n\n"), contents(output));
+
+      Files.delete(repoDir.resolve("b/Foo.java"));
+      commit(git);
+      assertThrows(IllegalArgumentException.class, () -> incrementalExtraction.run(repoDir, "HEAD~1", "HEAD", output));
+    }
+  }
+
+  @Test
+  void testFilesMovedToAnotherPackageAreRefreshed() throws IOException, GitAPIException {
+    Path repoDir = Files.createDirectories(tempDir.resolve("repo"));
+    try (Git git = Git.init().setDirectory(repoDir.toFile()).setInitialBranch("main").call()) {
+      write(repoDir, "a/Foo.java", "class Foo { void foo() { } }");
+      write(repoDir, "a/package-info.java", "package a;");
+      write(repoDir, "b/package-info.java", "package b;");
+      String base = commit(git);
+      Path output = Files.createDirectories(tempDir.resolve("output"));
+      pipeline(true).run(javaFiles(repoDir), output);
+
+      Files.createDirectories(repoDir.resolve("c"));
+      Files.move(repoDir.resolve("a/Foo.java"), repoDir.resolve("c/Foo.java"));
+      write(repoDir, "c/Foo.java", "class Foo { void moved() { } }");
+      write(repoDir, "a/package-info.java", "/** Changed */ package a;");
+      commit(git);
+      new IncrementalExtraction(pipeline(true)).run(repoDir, base, "HEAD", output);
+
+      Path fullOutput = Files.createDirectories(tempDir.resolve("full"));
+      pipeline(true).run(javaFiles(repoDir), fullOutput);
+      assertEquals(contents(fullOutput), contents(output));
+      assertEquals("void moved() { }\n\n", contents(output).get("Foo.txt"));
+    }
+  }
+
+  @Test
+  void testUnknownRevision() throws IOException, GitAPIException {
+    Path repoDir = Files.createDirectories(tempDir.resolve("repo"));
+    try (Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+      write(repoDir, "A.java", "class A { }");
+      commit(git);
+    }
+    var incrementalExtraction = new IncrementalExtraction(pipeline(true));
+
+    assertThrows(IllegalArgumentException.class, () -> incrementalExtraction.run(repoDir, "unknown", "HEAD", tempDir));
+  }
+
+  private static ExtractionPipeline pipeline(boolean oneline) {
+    return new ExtractionPipeline(new ParserPool(ECJParser::new), new ECJFunctionExtractor(), 0, oneline, 2,
+      new PerformanceMetrics());
+  }
+
+  private static void write(Path repoDir, String path, String content) throws IOException {
+    Path file = repoDir.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, content);
+  }
+
+  private static String commit(Git git) throws GitAPIException {
+    git.add().addFilepattern(".").call();
+    git.add().addFilepattern(".").setUpdate(true).call();
+    return git.commit().setMessage("commit").setSign(false).call().getName();
+  }
+
+  private static List<Path> javaFiles(Path dir) throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      return paths.filter(p -> p.toString().endsWith(".java")).toList();
+    }
+  }
+
+  private static Map<String, String> contents(Path dir) throws IOException {
+    Map<String, String> contents = new TreeMap<>();
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : paths.filter(Files::isRegularFile).toList()) {
+        contents.put(dir.relativize(path).toString(), Files.readString(path));
+      }
+    }
+    return contents;
+  }
+
+}
@@ -0,0 +1,57 @@
+package org.sonarsource.java.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SequencedQueueTest {
+
+  @Test
+  void testItemsAreTakenInSequenceAndInBatches() throws InterruptedException {
+    var queue = new SequencedQueue<String>(100, String::length);
+    queue.put(2, "c");
+    queue.put(1, "b");
+    queue.put(4, "e");
+    queue.put(0, "a");
+
+    List<String> batch = new ArrayList<>();
+    queue.takeAll(batch);
+    assertEquals(List.of("a", "b", "c"), batch);
+    assertEquals(1, queue.size());
+  }
+
+  @Test
+  void testProducersBlockOnWeightButTheNextItemIsAlwaysAccepted() throws Exception {
+    var queue = new SequencedQueue<String>(3, String::length);
+    queue.put(1, "bbb");
+
+    CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> put(queue, 2, "c"));
+    assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+    // Over the limit, but the consumer waits for it
+    queue.put(0, "aaaa");
+
+    List<String> batch = new ArrayList<>();
+    queue.takeAll(batch);
+    blocked.get(5, TimeUnit.SECONDS);
+    queue.takeAll(batch);
+    assertEquals(List.of("aaaa", "bbb", "c"), batch);
+    assertFalse(blocked.isCompletedExceptionally());
+  }
+
+  private static void put(SequencedQueue<String> queue, long sequence, String item) {
+    try {
+      queue.put(sequence, item);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -0,0 +1,144 @@
+package org.sonarsource.java.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GitUtilsTest {
+
+  @TempDir
+  Path tempDir;
+
+  private String remoteUrl;
+
+  /**
+   * Bare remote with 5 commits on main, a tag on the 3rd one and a dev branch
+   */
+  @BeforeEach
+  void createRemote() throws IOException, GitAPIException {
+    Path workDir = tempDir.resolve("work");
+    try (Git git = Git.init().setDirectory(workDir.toFile()).setInitialBranch("main").call()) {
+      for (int i = 0; i < 5; i++) {
+        Files.writeString(workDir.resolve("A.java"), "class A { void m" + i + "() { } }");
+        Files.write(workDir.resolve("lib.jar"), new byte[10_000 + i]);
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("commit " + i).setSign(false).call();
+        if (i == 2) {
+          git.tag().setName("v1").setAnnotated(false).call();
+        }
+      }
+      git.checkout().setCreateBranch(true).setName("dev").call();
+      Files.writeString(workDir.resolve("A.java"), "class A { void dev() { } }");
+      git.commit().setAll(true).setMessage("dev").setSign(false).call();
+      git.checkout().setName("main").call();
+    }
+    Path remoteDir = tempDir.resolve("remote.git");
+    try (Git remote = Git.cloneRepository().setURI(workDir.toUri().toString()).setDirectory(remoteDir.toFile())
+      .setBare(true).setCloneAllBranches(true).call()) {
+      // Partial clones must be allowed by the server
+      remote.getRepository().getConfig().setBoolean("uploadpack", null, "allowfilter", true);
+      remote.getRepository().getConfig().save();
+    }
+    remoteUrl = remoteDir.toUri().toString();
+  }
+
+  @Test
+  void testCloneFetchesEveryBlobWhenPartialClonesAreNotAllowed() throws IOException {
+    try (Git remote = Git.open(Path.of(URI.create(remoteUrl)).toFile())) {
+      remote.getRepository().getConfig().setBoolean("uploadpack", null, "allowfilter", false);
+      remote.getRepository().getConfig().save();
+    }
+    Path cloneDir = tempDir.resolve("clone");
+    GitUtils.clone(remoteUrl, cloneDir, true, new CloneOptions(1, null, 1000));
+
+    try (Git git = Git.open(cloneDir.toFile()); ObjectReader reader = git.getRepository().newObjectReader();
+      TreeWalk treeWalk = TreeWalk.forPath(git.getRepository(), "lib.jar", git.getRepository().resolve("HEAD^{tree}"))) {
+      assertTrue(reader.has(treeWalk.getObjectId(0)));
+    }
+  }
+
+  @Test
+  void testShallowCloneOfTheDefaultBranch() throws IOException {
+    Path cloneDir = tempDir.resolve("clone");
+    GitUtils.clone(remoteUrl, cloneDir, true, new CloneOptions(1, null, -1));
+
+    try (Git git = Git.open(cloneDir.toFile())) {
+      Repository repository = git.getRepository();
+      assertEquals(List.of("refs/heads/main"), branchesAndTags(repository));
+      assertEquals(1, commitCount(repository));
+      assertEquals("class A { void m4() { } }", readHeadFile(repository, "A.java"));
+    }
+  }
+
+  @Test
+  void testCloneOfATagWithoutLargeBlobs() throws IOException {
+    Path cloneDir = tempDir.resolve("clone");
+    GitUtils.clone(remoteUrl, cloneDir, true, new CloneOptions(1, "v1", 1000));
+
+    try (Git git = Git.open(cloneDir.toFile())) {
+      Repository repository = git.getRepository();
+      assertEquals(List.of("refs/tags/v1"), branchesAndTags(repository));
+      assertEquals("class A { void m2() { } }", readHeadFile(repository, "A.java"));
+      try (ObjectReader reader = repository.newObjectReader(); TreeWalk treeWalk = TreeWalk.forPath(repository, "lib.jar",
+        repository.resolve("HEAD^{tree}"))) {
+        assertFalse(reader.has(treeWalk.getObjectId(0)));
+      }
+    }
+  }
+
+  @Test
+  void testFullCloneOfABranchWithCheckout() throws IOException {
+    Path cloneDir = tempDir.resolve("clone");
+    GitUtils.clone(remoteUrl, cloneDir, false, new CloneOptions(0, "dev", -1));
+
+    try (Git git = Git.open(cloneDir.toFile())) {
+      assertEquals(6, commitCount(git.getRepository()));
+    }
+    assertEquals("class A { void dev() { } }", Files.readString(cloneDir.resolve("A.java")));
+    assertTrue(Files.exists(cloneDir.resolve("lib.jar")));
+  }
+
+  private static List<String> branchesAndTags(Repository repository) throws IOException {
+    return repository.getRefDatabase().getRefs().stream()
+      .map(Ref::getName)
+      .filter(name -> name.startsWith(Constants.R_HEADS) || name.startsWith(Constants.R_TAGS))
+      .sorted()
+      .toList();
+  }
+
+  private static int commitCount(Repository repository) throws IOException {
+    int count = 0;
+    try (RevWalk revWalk = new RevWalk(repository)) {
+      revWalk.markStart(revWalk.parseCommit(repository.resolve(Constants.HEAD)));
+      for (var ignored : revWalk) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static String readHeadFile(Repository repository, String path) throws IOException {
+    try (ObjectReader reader = repository.newObjectReader();
+      TreeWalk treeWalk = TreeWalk.forPath(repository, path, repository.resolve("HEAD^{tree}"))) {
+      return GitUtils.readBlob(reader, treeWalk.getObjectId(0));
+    }
+  }
+
+}
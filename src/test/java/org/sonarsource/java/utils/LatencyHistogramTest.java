@@ -0,0 +1,47 @@
+package org.sonarsource.java.utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+  @Test
+  void testBucketsCoverEveryValue() {
+    for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 33, 1_000_000, Long.MAX_VALUE}) {
+      int bucket = LatencyHistogram.bucket(value);
+      assertTrue(value <= LatencyHistogram.highestValue(bucket), "value " + value);
+      assertTrue(bucket == 0 || value > LatencyHistogram.highestValue(bucket - 1), "value " + value);
+    }
+  }
+
+  @Test
+  void testPercentilesAreWithinTheBucketPrecision() {
+    SplittableRandom random = new SplittableRandom(42);
+    long[] values = new long[100_000];
+    LatencyHistogram first = new LatencyHistogram();
+    LatencyHistogram second = new LatencyHistogram();
+    for (int i = 0; i < values.length; i++) {
+      // Log-normal like latencies, from microseconds to seconds
+      values[i] = (long) Math.exp(7 + 7 * random.nextDouble() * random.nextDouble());
+      (i % 2 == 0 ? first : second).record(values[i]);
+    }
+    first.add(second);
+    Arrays.sort(values);
+
+    assertEquals(values.length, first.count());
+    assertEquals(Arrays.stream(values).sum(), first.sum());
+    assertEquals(values[values.length - 1], first.max());
+    for (double quantile : new double[] {0.5, 0.9, 0.99, 1}) {
+      long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+      long estimate = first.percentile(quantile);
+      assertTrue(estimate >= exact && estimate <= exact + exact / LatencyHistogram.SUB_BUCKETS,
+        quantile + ": " + estimate + " for " + exact);
+    }
+    assertEquals(0, new LatencyHistogram().percentile(0.99));
+  }
+
+}
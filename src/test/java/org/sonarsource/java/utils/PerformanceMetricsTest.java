@@ -0,0 +1,53 @@
+package org.sonarsource.java.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.sonarsource.java.utils.PerformanceMetrics.Phase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerformanceMetricsTest {
+
+  @Test
+  void testThreadRecordingsAreMerged() throws Exception {
+    var metrics = new PerformanceMetrics();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        int offset = thread;
+        futures.add(executor.submit(() -> {
+          for (int i = offset; i < 1000; i += 4) {
+            metrics.recordAstGenerationTime(i);
+            metrics.recordFile("F" + i + ".java", 10L * i, i % 7, i);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    LatencyHistogram parse = metrics.getLatencies(Phase.PARSE);
+    assertEquals(1000, parse.count());
+    assertEquals(999, parse.max());
+    assertEquals(999 * 1000 / 2, parse.sum());
+    assertEquals(0, metrics.getLatencies(Phase.WRITE).count());
+
+    List<FileTiming> slowest = metrics.getSlowestFiles();
+    assertEquals(IntStream.range(0, PerformanceMetrics.SLOWEST_FILES).mapToObj(i -> "F" + (999 - i) + ".java").toList(),
+      slowest.stream().map(FileTiming::path).toList());
+    assertEquals(9990, slowest.get(0).size());
+    assertTrue(metrics.toString().contains("Number of AST Generated: 1000"));
+    assertTrue(metrics.toString().contains("F999.java (9990 chars, 5 methods)"));
+  }
+
+}